@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.assets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up minted NFTs in a {@link SerialBitmap} and in a {@code HashSet} of
+ * {@link NftId}s holding the same serials. Run with
+ * {@code ./gradlew :integration-orchestrator:jmh}; the setup prints the heap the bitmap
+ * takes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerialBitmapBenchmark {
+
+	private static final String TOKEN_ID = "0.0.48243577";
+
+	@Param({ "1000000" })
+	public int serials;
+
+	private SerialBitmap bitmap;
+
+	private Set<NftId> nftIds;
+
+	@Setup
+	public void fill() {
+		bitmap = new SerialBitmap();
+		nftIds = new HashSet<>();
+		for (long serialNumber = 1; serialNumber <= serials; serialNumber++) {
+			bitmap.add(serialNumber);
+			nftIds.add(new NftId(TOKEN_ID, Long.toString(serialNumber)));
+		}
+		System.out.printf("%nSerialBitmap holds %d serials in %d bytes%n", bitmap.getCardinality(),
+				bitmap.getSizeInBytes());
+	}
+
+	@Benchmark
+	public boolean bitmapContains() {
+		return bitmap.contains(ThreadLocalRandom.current().nextLong(1, 2L * serials));
+	}
+
+	@Benchmark
+	public boolean hashSetContains() {
+		long serialNumber = ThreadLocalRandom.current().nextLong(1, 2L * serials);
+		return nftIds.contains(new NftId(TOKEN_ID, Long.toString(serialNumber)));
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes an ESG NFT details response into {@link EsgNftDetails} and into the untyped
+ * {@code Map} the ESG client used to return, on its own and followed by mapping it to
+ * {@link TokenDetails}. Run with {@code ./gradlew :integration-orchestrator:jmh}; the
+ * {@code gc} profiler reports the bytes allocated per response as
+ * {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EsgNftDetailsDecodingBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private byte[] response;
+
+	private NftAttributeNormalizer normalizer;
+
+	@Setup
+	public void loadResponse() throws IOException {
+		try (InputStream responseData = getClass().getResourceAsStream("/EsgOffsetApiResponse.json")) {
+			response = responseData.readAllBytes();
+		}
+		normalizer = new NftAttributeNormalizer(NftAttributeNormalizer.loadBundledDictionaries(objectMapper));
+	}
+
+	@Benchmark
+	public EsgNftDetails typedDetails() throws IOException {
+		return objectMapper.readValue(response, EsgNftDetails.class);
+	}
+
+	@Benchmark
+	public Map untypedDetails() throws IOException {
+		return objectMapper.readValue(response, Map.class);
+	}
+
+	@Benchmark
+	public TokenDetails typedDetailsNormalized() throws IOException {
+		return normalizer.normalize(objectMapper.readValue(response, EsgNftDetails.class));
+	}
+
+	@Benchmark
+	public TokenDetails untypedDetailsParsed() throws IOException {
+		return LegacyDetailsParser.parse(objectMapper.readValue(response, Map.class));
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalizes the attributes of an ESG NFT details response with the table-driven
+ * {@link NftAttributeNormalizer} and with the switch-based parser it replaced. Run with
+ * {@code ./gradlew :integration-orchestrator:jmh}; the {@code gc} profiler reports the
+ * bytes allocated per response as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NftAttributeNormalizerBenchmark {
+
+	private Map nftDetailsMap;
+
+	private EsgNftDetails nftDetails;
+
+	private NftAttributeNormalizer normalizer;
+
+	@Setup
+	public void loadResponse() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		try (InputStream response = getClass().getResourceAsStream("/EsgOffsetApiResponse.json")) {
+			byte[] body = response.readAllBytes();
+			nftDetailsMap = objectMapper.readValue(body, Map.class);
+			nftDetails = objectMapper.readValue(body, EsgNftDetails.class);
+		}
+		normalizer = new NftAttributeNormalizer(NftAttributeNormalizer.loadBundledDictionaries(objectMapper));
+	}
+
+	@Benchmark
+	public TokenDetails normalizer() {
+		return normalizer.normalize(nftDetails);
+	}
+
+	@Benchmark
+	public TokenDetails legacyParser() {
+		return LegacyDetailsParser.parse(nftDetailsMap);
+	}
+
+}
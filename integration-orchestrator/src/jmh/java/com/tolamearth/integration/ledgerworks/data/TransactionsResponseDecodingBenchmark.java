@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a page of 100 token mint transactions, in the shape returned by the mirror
+ * node, into the discovery projection and into a record binding every field of the
+ * response. Run with {@code ./gradlew :integration-orchestrator:jmh}; the {@code gc}
+ * profiler reports the bytes allocated per page as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionsResponseDecodingBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+	private byte[] page;
+
+	@Setup
+	public void loadPage() throws IOException {
+		try (InputStream pageData = getClass().getResourceAsStream("/LedgerWorksTransactionsPage.json")) {
+			page = pageData.readAllBytes();
+		}
+	}
+
+	@Benchmark
+	public TransactionsResponse projection() throws IOException {
+		return objectMapper.readValue(page, TransactionsResponse.class);
+	}
+
+	@Benchmark
+	public FullTransactionsResponse fullResponse() throws IOException {
+		return objectMapper.readValue(page, FullTransactionsResponse.class);
+	}
+
+	public record FullTransactionsResponse(List<FullTransaction> transactions, Links links) {
+	}
+
+	public record FullTransaction(String bytes, @JsonProperty("charged_tx_fee") long chargedTxFee,
+			@JsonProperty("consensus_timestamp") String consensusTimestamp, @JsonProperty("entity_id") String entityId,
+			@JsonProperty("max_fee") long maxFee, @JsonProperty("memo_base64") String memoBase64, String name,
+			String node, int nonce, @JsonProperty("parent_consensus_timestamp") String parentConsensusTimestamp,
+			String result, boolean scheduled, @JsonProperty("transaction_hash") String transactionHash,
+			@JsonProperty("transaction_id") String transactionId,
+			@JsonProperty("nft_transfers") List<FullNftTransfer> nftTransfers,
+			@JsonProperty("staking_reward_transfers") List<FullTransfer> stakingRewardTransfers,
+			@JsonProperty("token_transfers") List<FullTokenTransfer> tokenTransfers, List<FullTransfer> transfers,
+			@JsonProperty("valid_duration_seconds") long validDurationSeconds,
+			@JsonProperty("valid_start_timestamp") String validStartTimestamp) {
+	}
+
+	public record FullNftTransfer(@JsonProperty("is_approval") boolean isApproval,
+			@JsonProperty("receiver_account_id") String receiverAccountId,
+			@JsonProperty("sender_account_id") String senderAccountId, @JsonProperty("serial_number") long serialNumber,
+			@JsonProperty("token_id") String tokenId) {
+	}
+
+	public record FullTokenTransfer(@JsonProperty("token_id") String tokenId, String account, long amount,
+			@JsonProperty("is_approval") boolean isApproval) {
+	}
+
+	public record FullTransfer(String account, long amount, @JsonProperty("is_approval") boolean isApproval) {
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.api.admin;
+
+import com.tolamearth.integration.api.ErrorCode;
+import com.tolamearth.integration.core.discovery.BackfillShard;
+import com.tolamearth.integration.ledgerworks.discovery.BackfillService;
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.PathVariable;
+import io.micronaut.http.annotation.Post;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Starts historical backfills and reports their progress.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Controller("${api.integration-api-version}/admin/backfills")
+public class BackfillController {
+
+	private final BackfillService backfillService;
+
+	@Post
+	Mono<HttpResponse<?>> startBackfill(@Body @NonNull BackfillRequest request) {
+		log.info("Received backfill request: {}", request);
+
+		if (Objects.isNull(request.getTokenId()) || Objects.isNull(request.getStart())
+				|| Objects.isNull(request.getEnd())) {
+			return Mono.just(HttpResponse.badRequest(ErrorCode.HTTP_STATUS_400_ERROR_1001));
+		}
+
+		return backfillService
+				.startBackfill(request.getTokenId(), request.getStart(), request.getEnd(), request.getShards())
+				.<HttpResponse<?>>map(shards -> HttpResponse.accepted().body(createBackfillResponse(shards)))
+				.defaultIfEmpty(HttpResponse.notFound(ErrorCode.HTTP_STATUS_404_ERROR_1004))
+				.onErrorResume(IllegalArgumentException.class,
+						e -> Mono.just(HttpResponse.badRequest(ErrorCode.HTTP_STATUS_400_ERROR_1003)));
+	}
+
+	@Get("/{backfillId}")
+	Mono<HttpResponse<?>> getBackfill(@PathVariable String backfillId) {
+		return backfillService.getShards(backfillId)
+				.<HttpResponse<?>>map(shards -> HttpResponse.ok(createBackfillResponse(shards)))
+				.defaultIfEmpty(HttpResponse.notFound(ErrorCode.HTTP_STATUS_404_ERROR_1004));
+	}
+
+	@Post("/{backfillId}/resume")
+	Mono<HttpResponse<?>> resumeBackfill(@PathVariable String backfillId) {
+		log.info("Resuming backfill {}", backfillId);
+
+		return backfillService.resumeBackfill(backfillId)
+				.<HttpResponse<?>>map(shards -> HttpResponse.accepted().body(createBackfillResponse(shards)))
+				.defaultIfEmpty(HttpResponse.notFound(ErrorCode.HTTP_STATUS_404_ERROR_1004));
+	}
+
+	private BackfillResponse createBackfillResponse(List<BackfillShard> shards) {
+		BackfillShard firstShard = shards.get(0);
+		return BackfillResponse.builder().backfillId(firstShard.getBackfillId()).tokenId(firstShard.getTokenId())
+				.running(backfillService.isRunning(firstShard.getBackfillId()))
+				.shardsCompleted((int) shards.stream().filter(BackfillShard::isCompleted).count())
+				.transactionsEmitted(shards.stream().mapToLong(BackfillShard::getTransactionsEmitted).sum())
+				.shards(shards.stream().map(this::createShardProgress).collect(Collectors.toList())).build();
+	}
+
+	private BackfillShardProgress createShardProgress(BackfillShard shard) {
+		return BackfillShardProgress.builder().shardIndex(shard.getShardIndex()).rangeStart(shard.getRangeStart())
+				.rangeEnd(shard.getRangeEnd()).cursor(shard.getCursor())
+				.transactionsEmitted(shard.getTransactionsEmitted()).completed(shard.isCompleted()).build();
+	}
+
+}
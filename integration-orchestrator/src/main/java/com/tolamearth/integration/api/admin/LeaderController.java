@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.api.admin;
+
+import com.tolamearth.integration.core.leadership.LeaderElection;
+import com.tolamearth.integration.core.leadership.LeaderStatus;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reports which node leads discovery.
+ */
+@RequiredArgsConstructor
+@Controller("${api.integration-api-version}/admin/leader")
+public class LeaderController {
+
+	private final LeaderElection leaderElection;
+
+	@Get
+	Mono<HttpResponse<LeaderResponse>> getLeader() {
+		return leaderElection.getStatus().map(this::createLeaderResponse).map(HttpResponse::ok);
+	}
+
+	private LeaderResponse createLeaderResponse(LeaderStatus status) {
+		return LeaderResponse.builder().nodeId(status.nodeId()).leader(status.leader())
+				.leaderNodeId(status.leaderNodeId()).leaderSince(status.leaderSince()).build();
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.api.admin;
+
+import com.tolamearth.integration.api.ErrorCode;
+import com.tolamearth.integration.core.assets.NftId;
+import com.tolamearth.integration.core.assets.ParkedToken;
+import com.tolamearth.integration.orchestrator.ParkedTokenRedriver;
+import com.tolamearth.integration.orchestrator.TokenParkingLot;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.PathVariable;
+import io.micronaut.http.annotation.Post;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Lists the minted tokens parked after failing ESG enrichment and re-drives them on
+ * request.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Controller("${api.integration-api-version}/admin/parked-tokens")
+public class ParkedTokenController {
+
+	private final TokenParkingLot parkingLot;
+
+	private final ParkedTokenRedriver redriver;
+
+	@Get
+	Mono<List<ParkedTokenResponse>> getParkedTokens() {
+		return parkingLot.getParkedTokens().map(this::createParkedTokenResponse).collectList();
+	}
+
+	@Post("/{tokenId},{serialNumber}/retry")
+	Mono<HttpResponse<?>> retryParkedToken(@PathVariable String tokenId, @PathVariable String serialNumber) {
+		log.info("Retrying parked token {}#{}", tokenId, serialNumber);
+
+		return parkingLot.find(new NftId(tokenId, serialNumber))
+				.flatMap(parked -> redriver.redrive(parked)
+						.<HttpResponse<?>>map(stillParked -> HttpResponse.status(HttpStatus.BAD_GATEWAY)
+								.body(createParkedTokenResponse(stillParked)))
+						.defaultIfEmpty(HttpResponse.noContent()))
+				.defaultIfEmpty(HttpResponse.notFound(ErrorCode.HTTP_STATUS_404_ERROR_1004));
+	}
+
+	private ParkedTokenResponse createParkedTokenResponse(ParkedToken parked) {
+		return ParkedTokenResponse.builder().tokenId(parked.getNftId().getTokenId())
+				.serialNumber(parked.getNftId().getSerialNumber()).transactionId(parked.getTransactionId())
+				.reason(parked.getReason()).attempts(parked.getAttempts()).parkedAt(parked.getParkedAt())
+				.nextAttemptAt(parked.getNextAttemptAt()).build();
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.api.admin;
+
+import com.tolamearth.integration.api.ErrorCode;
+import com.tolamearth.integration.ledgerworks.discovery.TokenRegistry;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Delete;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.PathVariable;
+import io.micronaut.http.annotation.Put;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.regex.Pattern;
+
+/**
+ * Adds and removes the tokens whose mints are discovered.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Controller("${api.integration-api-version}/admin/tokens")
+public class TokenRegistryController {
+
+	private static final Pattern TOKEN_ID = Pattern.compile("\\d+\\.\\d+\\.\\d+");
+
+	private final TokenRegistry tokenRegistry;
+
+	@Get
+	TokenRegistryResponse getTokens() {
+		return new TokenRegistryResponse(tokenRegistry.getTokenIds().stream().sorted().toList());
+	}
+
+	@Put("/{tokenId}")
+	Mono<HttpResponse<?>> registerToken(@PathVariable String tokenId) {
+		log.info("Registering token {}", tokenId);
+
+		if (!TOKEN_ID.matcher(tokenId).matches()) {
+			return Mono.just(HttpResponse.badRequest(ErrorCode.HTTP_STATUS_400_ERROR_1003));
+		}
+
+		return tokenRegistry.register(tokenId)
+				.map(added -> added ? HttpResponse.created(getTokens()) : HttpResponse.ok(getTokens()));
+	}
+
+	@Delete("/{tokenId}")
+	Mono<HttpResponse<?>> deregisterToken(@PathVariable String tokenId) {
+		log.info("Deregistering token {}", tokenId);
+
+		return tokenRegistry.deregister(tokenId).map(removed -> removed ? HttpResponse.noContent()
+				: HttpResponse.notFound(ErrorCode.HTTP_STATUS_404_ERROR_1004));
+	}
+
+}
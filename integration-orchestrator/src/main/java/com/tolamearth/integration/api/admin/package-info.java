@@ -14,9 +14,4 @@
  * the License.
  */
 
-package com.tolamearth.integration.ledgerworks.data;
-
-import com.fasterxml.jackson.annotation.JsonProperty;
-
-public record Transfer(String account, int amount, @JsonProperty("is_approval") boolean isApproval) {
-}
+package com.tolamearth.integration.api.admin;
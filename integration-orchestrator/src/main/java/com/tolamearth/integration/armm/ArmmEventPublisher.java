@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.armm;
+
+import com.google.protobuf.CodedOutputStream;
+import com.tolamearth.integration.core.assets.Token;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Publishes tokens to the ARMM {@code nft_details} topic, packing the transactions of
+ * several tokens into each {@link ArmmEvent}. Tokens are gathered for up to
+ * {@code armm-publisher.batch-timeout}, and each event holds up to
+ * {@code armm-publisher.batch-size} transactions and
+ * {@code armm-publisher.max-message-bytes} bytes, so bursts of mints take a fraction of
+ * the Pub/Sub calls.
+ * <p>
+ * Events are published one at a time in the order their tokens arrived, and tokens are
+ * emitted once their event is published. An event that fails is published again up to
+ * {@code armm-publisher.max-retries} times, backing off from
+ * {@code armm-publisher.retry-backoff}, before its tokens are handed to the caller's
+ * failure handler. Tokens that can't be mapped are logged and dropped.
+ */
+@Slf4j
+@Singleton
+public class ArmmEventPublisher {
+
+	private final ArmmMessageChannels messageChannels;
+
+	private final ArmmPublisherConfiguration configuration;
+
+	private final DistributionSummary eventTransactions;
+
+	public ArmmEventPublisher(ArmmMessageChannels messageChannels, ArmmPublisherConfiguration configuration,
+			MeterRegistry meterRegistry) {
+		this.messageChannels = messageChannels;
+		this.configuration = configuration;
+		this.eventTransactions = DistributionSummary.builder("armm.event.transactions")
+				.description("Transactions packed into each published ARMM event").register(meterRegistry);
+	}
+
+	/**
+	 * Publishes the tokens, mapping each to its ARMM transactions. The tokens of events
+	 * that can't be published are logged and dropped.
+	 */
+	public Flux<Token> publishNftDetails(Flux<Token> tokens,
+			Function<Token, List<ArmmEvent.Transaction>> toTransactions) {
+		return publishNftDetails(tokens, toTransactions, (token, throwable) -> Mono.empty());
+	}
+
+	/**
+	 * Publishes the tokens, mapping each to its ARMM transactions. Each token of an event
+	 * that can't be published is passed to {@code onUnpublished} with the failure, in
+	 * order, before later events are published.
+	 */
+	public Flux<Token> publishNftDetails(Flux<Token> tokens,
+			Function<Token, List<ArmmEvent.Transaction>> toTransactions,
+			BiFunction<Token, Throwable, Mono<Void>> onUnpublished) {
+		return tokens.bufferTimeout(configuration.batchSize(), configuration.batchTimeout())
+				.concatMapIterable(batch -> pack(batch, toTransactions))
+				.concatMap(packed -> publish(packed, onUnpublished));
+	}
+
+	private Flux<Token> publish(PackedEvent packed, BiFunction<Token, Throwable, Mono<Void>> onUnpublished) {
+		// onErrorStop keeps a downstream onErrorContinue from swallowing send failures
+		return Mono.defer(() -> messageChannels.sendNftDetails(packed.event().toByteArray()))
+				.retryWhen(Retry.backoff(configuration.maxRetries(), configuration.retryBackoff())
+						.doBeforeRetry(signal -> log.warn("Retrying ARMM event of tokens {}. Exception: ",
+								packed.tokens(), signal.failure()))
+						.onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+				.doOnNext(messageId -> eventTransactions.record(packed.event().getTransactionsCount()))
+				.thenMany(Flux.fromIterable(packed.tokens())).onErrorStop().onErrorResume(throwable -> {
+					log.error("Error publishing the {} transactions of tokens {} to ARMM",
+							packed.event().getTransactionsCount(), packed.tokens(), throwable);
+					return Flux.fromIterable(packed.tokens()).concatMap(token -> onUnpublished.apply(token, throwable))
+							.thenMany(Flux.empty());
+				});
+	}
+
+	/**
+	 * Packs the transactions of the tokens into as few events as the limits allow,
+	 * keeping each token's transactions in one event.
+	 */
+	private List<PackedEvent> pack(List<Token> batch, Function<Token, List<ArmmEvent.Transaction>> toTransactions) {
+		List<PackedEvent> events = new ArrayList<>();
+		ArmmEvent.Builder event = ArmmEvent.newBuilder();
+		List<Token> eventTokens = new ArrayList<>();
+		int eventBytes = 0;
+		for (Token token : batch) {
+			List<ArmmEvent.Transaction> transactions;
+			try {
+				transactions = toTransactions.apply(token);
+			}
+			catch (RuntimeException e) {
+				log.error("Error mapping token {} to ARMM transactions", token, e);
+				continue;
+			}
+			int tokenBytes = transactions.stream().mapToInt(transaction -> CodedOutputStream
+					.computeMessageSize(ArmmEvent.TRANSACTIONS_FIELD_NUMBER, transaction)).sum();
+			if (!eventTokens.isEmpty()
+					&& (event.getTransactionsCount() + transactions.size() > configuration.batchSize()
+							|| eventBytes + tokenBytes > configuration.maxMessageBytes())) {
+				events.add(new PackedEvent(event.build(), eventTokens));
+				event = ArmmEvent.newBuilder();
+				eventTokens = new ArrayList<>();
+				eventBytes = 0;
+			}
+			event.addAllTransactions(transactions);
+			eventTokens.add(token);
+			eventBytes += tokenBytes;
+		}
+		if (!eventTokens.isEmpty()) {
+			events.add(new PackedEvent(event.build(), eventTokens));
+		}
+		return events;
+	}
+
+	private record PackedEvent(ArmmEvent event, List<Token> tokens) {
+	}
+
+}
@@ -22,6 +22,7 @@ import com.tolamearth.integration.core.assets.Token;
 import com.tolamearth.integration.core.assets.TokenTransaction;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
 import java.util.Objects;
 
 @Slf4j
@@ -31,42 +32,49 @@ public class ArmmProtobufMapper {
 	}
 
 	public static ArmmEvent fromMintedToken(Token token) {
-		validateToken(token);
-		TokenTransaction tokenTransaction = token.getTransactions().get(0);
-		Timestamp transactionTime = getTimestamp(tokenTransaction);
-
-		ArmmEvent.TokenDetail detail = ArmmEvent.TokenDetail.newBuilder().setOwner(tokenTransaction.getOwner())
-				.setCountry(token.getCountry()).setDeviceId(token.getDeviceId()).setGuardianId(token.getGuardianId())
-				.setFirstSubdivision(token.getFirstSubdivision()).setProjectCategory(token.getProjectCategory())
-				.setProjectType(token.getProjectType()).setVintageYear(token.getVintageYear()).build();
-
-		ArmmEvent.Transaction transaction = ArmmEvent.Transaction.newBuilder()
-				.setEventType(fromTokenTransactionEventType(tokenTransaction.getEventType()))
-				.setNftId(ArmmEvent.NftId.newBuilder().setTokenId(token.getNftId().getTokenId())
-						.setSerialNumber(token.getNftId().getSerialNumber()).build())
-				.setTransactionId(tokenTransaction.getId().getTransactionId()).setTransactionTime(transactionTime)
-				.setTokenDetail(detail).build();
-
-		return ArmmEvent.newBuilder().addTransactions(transaction).build();
+		return ArmmEvent.newBuilder().addAllTransactions(mintedTransactions(token)).build();
 	}
 
 	public static ArmmEvent fromMarketplaceToken(Token token) {
+		return ArmmEvent.newBuilder().addAllTransactions(marketplaceTransactions(token)).build();
+	}
+
+	/**
+	 * Maps the transactions of a minted token to ARMM transactions carrying its details.
+	 */
+	public static List<ArmmEvent.Transaction> mintedTransactions(Token token) {
 		validateToken(token);
-		TokenTransaction tokenTransaction = token.getTransactions().get(0);
-		Timestamp transactionTime = getTimestamp(tokenTransaction);
+		return token.getTransactions().stream().map(tokenTransaction -> {
+			ArmmEvent.TokenDetail detail = ArmmEvent.TokenDetail.newBuilder().setOwner(tokenTransaction.getOwner())
+					.setCountry(token.getCountry()).setDeviceId(token.getDeviceId())
+					.setGuardianId(token.getGuardianId()).setFirstSubdivision(token.getFirstSubdivision())
+					.setProjectCategory(token.getProjectCategory()).setProjectType(token.getProjectType())
+					.setVintageYear(token.getVintageYear()).build();
+			return newTransaction(token, tokenTransaction).setTokenDetail(detail).build();
+		}).toList();
+	}
 
-		ArmmEvent.TokenState tokenState = ArmmEvent.TokenState.newBuilder().setOwner(tokenTransaction.getOwner())
-				.setListingPrice(tokenTransaction.getListPrice()).setPurchasePrice(tokenTransaction.getPurchasePrice())
-				.build();
+	/**
+	 * Maps the transactions of a token received from the marketplace to ARMM transactions
+	 * carrying its marketplace state.
+	 */
+	public static List<ArmmEvent.Transaction> marketplaceTransactions(Token token) {
+		validateToken(token);
+		return token.getTransactions().stream().map(tokenTransaction -> {
+			ArmmEvent.TokenState tokenState = ArmmEvent.TokenState.newBuilder().setOwner(tokenTransaction.getOwner())
+					.setListingPrice(tokenTransaction.getListPrice())
+					.setPurchasePrice(tokenTransaction.getPurchasePrice()).build();
+			return newTransaction(token, tokenTransaction).setTokenState(tokenState).build();
+		}).toList();
+	}
 
-		ArmmEvent.Transaction transaction = ArmmEvent.Transaction.newBuilder()
+	private static ArmmEvent.Transaction.Builder newTransaction(Token token, TokenTransaction tokenTransaction) {
+		return ArmmEvent.Transaction.newBuilder()
 				.setEventType(fromTokenTransactionEventType(tokenTransaction.getEventType()))
 				.setNftId(ArmmEvent.NftId.newBuilder().setTokenId(token.getNftId().getTokenId())
 						.setSerialNumber(token.getNftId().getSerialNumber()).build())
-				.setTransactionId(tokenTransaction.getId().getTransactionId()).setTransactionTime(transactionTime)
-				.setTokenState(tokenState).build();
-
-		return ArmmEvent.newBuilder().addTransactions(transaction).build();
+				.setTransactionId(tokenTransaction.getId().getTransactionId())
+				.setTransactionTime(getTimestamp(tokenTransaction));
 	}
 
 	private static Timestamp getTimestamp(TokenTransaction tokenTransaction) {
@@ -93,9 +101,9 @@ public class ArmmProtobufMapper {
 	private static void validateToken(Token token) {
 		Objects.requireNonNull(token);
 		Objects.requireNonNull(token.getTransactions());
-		if (token.getTransactions().size() != 1) {
-			log.error("MINTED token is in an unexpected state: {}", token);
-			throw new IllegalStateException("MINTED token is in an unexpected state.");
+		if (token.getTransactions().isEmpty()) {
+			log.error("Token has no transactions: {}", token);
+			throw new IllegalStateException("Token has no transactions.");
 		}
 	}
 
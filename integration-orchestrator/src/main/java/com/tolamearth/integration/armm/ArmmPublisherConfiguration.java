@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.armm;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+import java.time.Duration;
+
+/**
+ * ARMM publishing settings.
+ * @param batchSize Most transactions packed into one ARMM event
+ * @param batchTimeout Longest a token waits for more to share its event before the event
+ * is published
+ * @param maxMessageBytes Largest serialized ARMM event, kept under the 10 MB Pub/Sub
+ * message limit; a single token larger than this is still published on its own
+ * @param maxRetries How many times a failed event is published again
+ * @param retryBackoff Minimum delay before the first retry, doubled on each further retry
+ */
+@ConfigurationProperties("armm-publisher")
+public record ArmmPublisherConfiguration(@NonNull Integer batchSize, @NonNull Duration batchTimeout,
+		@NonNull Integer maxMessageBytes, @NonNull Integer maxRetries, @NonNull Duration retryBackoff) {
+}
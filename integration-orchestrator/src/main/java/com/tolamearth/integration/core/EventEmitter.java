@@ -16,28 +16,189 @@
 
 package com.tolamearth.integration.core;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micronaut.core.annotation.Introspected;
-import lombok.Data;
-import lombok.NoArgsConstructor;
 import reactor.core.publisher.FluxSink;
 
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-@Data
+/**
+ * Hands events from a producer to the {@link FluxSink} of a {@code Flux.create}
+ * subscriber through a bounded queue. Events only leave the queue when the subscriber
+ * requests them, and the {@link OverflowStrategy} decides what happens to the producer
+ * once the queue is full.
+ */
 @Introspected
-@NoArgsConstructor
 public class EventEmitter<T> {
 
-	private FluxSink<T> sink;
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	public static final Duration DEFAULT_BLOCK_TIMEOUT = Duration.ofSeconds(30);
+
+	private static final long SUBSCRIBER_CHECK_MILLIS = 50;
+
+	public enum OverflowStrategy {
+
+		/**
+		 * Block the producer until the subscriber makes room, failing with an
+		 * {@link EventOverflowException} once the block timeout passes or when there is
+		 * no subscriber to make room.
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the oldest queued event, counting it, to make room.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Reject the event with an {@link EventOverflowException}.
+		 */
+		FAIL
+
+	}
+
+	private final BlockingQueue<T> queue;
+
+	private final int capacity;
+
+	private final OverflowStrategy overflowStrategy;
+
+	private final Duration blockTimeout;
+
+	private final AtomicInteger drainInProgress = new AtomicInteger();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private volatile FluxSink<T> sink;
+
+	public EventEmitter() {
+		this(DEFAULT_CAPACITY, OverflowStrategy.BLOCK);
+	}
+
+	public EventEmitter(int capacity, OverflowStrategy overflowStrategy) {
+		this(capacity, overflowStrategy, DEFAULT_BLOCK_TIMEOUT);
+	}
+
+	public EventEmitter(int capacity, OverflowStrategy overflowStrategy, Duration blockTimeout) {
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.capacity = capacity;
+		this.overflowStrategy = overflowStrategy;
+		this.blockTimeout = blockTimeout;
+	}
 
-	public void emit(T token) {
-		if (Objects.nonNull(this.sink)) {
-			this.sink.next(token);
+	public void emit(T event) {
+		switch (overflowStrategy) {
+			case BLOCK -> put(event);
+			case DROP_OLDEST -> {
+				while (!queue.offer(event)) {
+					if (Objects.nonNull(queue.poll())) {
+						droppedCount.incrementAndGet();
+					}
+				}
+			}
+			case FAIL -> {
+				if (!queue.offer(event)) {
+					throw new EventOverflowException(capacity);
+				}
+			}
 		}
+		drain();
 	}
 
 	public void registerSink(FluxSink<T> sink) {
 		this.sink = sink;
+		sink.onRequest(requested -> drain());
+		drain();
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public OverflowStrategy getOverflowStrategy() {
+		return overflowStrategy;
+	}
+
+	/**
+	 * Publishes the queue depth and the number of dropped events, tagged with the name of
+	 * the emitter.
+	 */
+	public void registerMetrics(MeterRegistry meterRegistry, String name) {
+		Gauge.builder("event.emitter.queue.depth", this, EventEmitter::getQueueDepth)
+				.description("Events waiting for the subscriber to request them").tag("emitter", name)
+				.register(meterRegistry);
+		FunctionCounter.builder("event.emitter.dropped", this, EventEmitter::getDroppedCount)
+				.description("Events dropped because the queue was full").tag("emitter", name).register(meterRegistry);
+	}
+
+	/**
+	 * Waits for room in short slices so a subscriber that is missing or cancels while the
+	 * producer waits fails the emit at once instead of holding the producer's thread.
+	 */
+	private void put(T event) {
+		long deadline = System.nanoTime() + blockTimeout.toNanos();
+		try {
+			while (!queue.offer(event, SUBSCRIBER_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+				if (!hasSubscriber()) {
+					throw new EventOverflowException("Event queue is full and has no subscriber, capacity " + capacity);
+				}
+				if (System.nanoTime() - deadline >= 0) {
+					throw new EventOverflowException(
+							"Event queue stayed full for " + blockTimeout + ", capacity " + capacity);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to emit " + event, e);
+		}
+	}
+
+	private boolean hasSubscriber() {
+		FluxSink<T> currentSink = this.sink;
+		return Objects.nonNull(currentSink) && !currentSink.isCancelled();
+	}
+
+	/**
+	 * Moves as many queued events to the sink as it has requested. Concurrent callers are
+	 * folded into the caller already draining.
+	 */
+	private void drain() {
+		if (drainInProgress.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			FluxSink<T> currentSink = this.sink;
+			if (Objects.nonNull(currentSink) && !currentSink.isCancelled()) {
+				while (currentSink.requestedFromDownstream() > 0) {
+					T event = queue.poll();
+					if (Objects.isNull(event)) {
+						break;
+					}
+					currentSink.next(event);
+				}
+			}
+			missed = drainInProgress.addAndGet(-missed);
+		}
+		while (missed != 0);
 	}
 
-}
\ No newline at end of file
+}
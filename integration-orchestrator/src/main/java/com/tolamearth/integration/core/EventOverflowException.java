@@ -0,0 +1,34 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core;
+
+/**
+ * Thrown by an {@link EventEmitter} using {@link EventEmitter.OverflowStrategy#FAIL} when
+ * its queue is full, or using {@link EventEmitter.OverflowStrategy#BLOCK} when no
+ * subscriber makes room in time.
+ */
+public class EventOverflowException extends IllegalStateException {
+
+	public EventOverflowException(int capacity) {
+		this("Event queue is full, capacity " + capacity);
+	}
+
+	public EventOverflowException(String message) {
+		super(message);
+	}
+
+}
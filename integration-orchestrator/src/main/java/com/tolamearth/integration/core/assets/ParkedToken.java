@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.assets;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import java.time.Instant;
+
+/**
+ * A minted token that couldn't be enriched, stored or published, kept until it is
+ * re-driven. Holds what is needed to rebuild the token and its MINTED transaction without
+ * replaying discovery, and whether the token was already stored, in which case it only
+ * needs to be published again.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+public class ParkedToken {
+
+	public static final int REASON_LENGTH = 1000;
+
+	@EmbeddedId
+	private NftId nftId;
+
+	private String transactionId;
+
+	private String transactionTime;
+
+	private String owner;
+
+	private String memo;
+
+	@Column(length = REASON_LENGTH)
+	private String reason;
+
+	private int attempts;
+
+	private Instant parkedAt;
+
+	private Instant nextAttemptAt;
+
+	private boolean stored;
+
+	public Token toToken() {
+		TokenTransaction transaction = TokenTransaction.builder()
+				.id(new TokenTransactionId(new NftId(nftId.getTokenId(), nftId.getSerialNumber()), transactionId))
+				.eventType(EventType.MINTED).transactionTime(transactionTime).owner(owner).build();
+		return Token.builder().nftId(new NftId(nftId.getTokenId(), nftId.getSerialNumber())).memo(memo).build()
+				.addTransaction(transaction);
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.assets;
+
+import io.micronaut.data.annotation.Repository;
+import io.micronaut.data.repository.reactive.ReactorCrudRepository;
+import org.hibernate.reactive.stage.Stage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+
+@Repository
+public abstract class ParkedTokenRepository implements ReactorCrudRepository<ParkedToken, NftId> {
+
+	private static final String CLAIM_DUE_SQL = "UPDATE parked_token SET next_attempt_at = ?1 "
+			+ "WHERE (token_id, serial_number) IN (SELECT token_id, serial_number FROM parked_token "
+			+ "WHERE next_attempt_at <= ?2 AND attempts < ?3 ORDER BY next_attempt_at LIMIT ?4 "
+			+ "FOR UPDATE SKIP LOCKED) RETURNING *";
+
+	private final Stage.SessionFactory sessionFactory;
+
+	protected ParkedTokenRepository(EntityManagerFactory entityManagerFactory) {
+		this.sessionFactory = entityManagerFactory.unwrap(Stage.SessionFactory.class);
+	}
+
+	public abstract Flux<ParkedToken> listOrderByParkedAt();
+
+	/**
+	 * Claims up to {@code limit} of the parked tokens that have been due the longest, by
+	 * moving their next attempt to {@code claimedUntil} in a single statement. Rows
+	 * claimed by another node at the same time are skipped, so each due token is claimed
+	 * once until its claim runs out.
+	 */
+	public Flux<ParkedToken> claimDue(Instant now, int maxAttempts, int limit, Instant claimedUntil) {
+		return Mono
+				.fromCompletionStage(() -> sessionFactory.withTransaction(session -> session
+						.createNativeQuery(CLAIM_DUE_SQL, ParkedToken.class).setParameter(1, claimedUntil)
+						.setParameter(2, now).setParameter(3, maxAttempts).setParameter(4, limit).getResultList()))
+				.flatMapIterable(claimed -> claimed);
+	}
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.assets;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.event.StartupEvent;
+import io.micronaut.runtime.event.annotation.EventListener;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the NFTs stored in the token table, so already processed mints are
+ * skipped before they are enriched. The serial numbers of each token are kept in a
+ * {@link SerialBitmap}, which takes a few bytes per NFT or less since serials are minted
+ * densely.
+ * <p>
+ * The index is built from the token table on startup and updated as tokens are stored. It
+ * may miss NFTs stored by other replicas or while it is still loading, but never holds
+ * one that isn't stored, so callers can trust a hit and fall back to the database on a
+ * miss. When {@code processed-nft-index.snapshot-file} is set the index is saved on
+ * shutdown and loaded on startup instead of reading the whole table, as long as the
+ * serial numbers it holds for each token have the same count and checksums as the stored
+ * ones.
+ */
+@Slf4j
+@Singleton
+public class ProcessedNftIndex {
+
+	private static final int SNAPSHOT_MAGIC = 0x504E4901;
+
+	private final TokenRepository tokenRepository;
+
+	private final ProcessedNftIndexConfiguration configuration;
+
+	private final Map<String, SerialBitmap> bitmaps = new ConcurrentHashMap<>();
+
+	public ProcessedNftIndex(TokenRepository tokenRepository, ProcessedNftIndexConfiguration configuration,
+			MeterRegistry meterRegistry) {
+		this.tokenRepository = tokenRepository;
+		this.configuration = configuration;
+		Gauge.builder("processed.nft.index.size", this, ProcessedNftIndex::size)
+				.description("NFTs known to be stored in the token table").register(meterRegistry);
+		Gauge.builder("processed.nft.index.memory", this, ProcessedNftIndex::sizeInBytes)
+				.description("Approximate heap taken by the processed NFT index").baseUnit("bytes")
+				.register(meterRegistry);
+	}
+
+	@EventListener
+	public void onStartupEvent(StartupEvent event) {
+		load().subscribe(null, throwable -> log.error("Error loading the processed NFT index. Exception: ", throwable));
+	}
+
+	public boolean contains(NftId nftId) {
+		SerialBitmap bitmap = bitmaps.get(nftId.getTokenId());
+		long serialNumber = serialNumber(nftId);
+		if (Objects.isNull(bitmap) || serialNumber < 0) {
+			return false;
+		}
+		synchronized (bitmap) {
+			return bitmap.contains(serialNumber);
+		}
+	}
+
+	/**
+	 * Records a stored NFT. NFTs whose serial numbers don't fit a {@link SerialBitmap}
+	 * are left out, so they are always looked up in the database.
+	 */
+	public void add(NftId nftId) {
+		long serialNumber = serialNumber(nftId);
+		if (serialNumber < 0) {
+			return;
+		}
+		SerialBitmap bitmap = bitmaps.computeIfAbsent(nftId.getTokenId(), tokenId -> new SerialBitmap());
+		synchronized (bitmap) {
+			bitmap.add(serialNumber);
+		}
+	}
+
+	public long size() {
+		return bitmaps.values().stream().mapToLong(bitmap -> {
+			synchronized (bitmap) {
+				return bitmap.getCardinality();
+			}
+		}).sum();
+	}
+
+	public long sizeInBytes() {
+		return bitmaps.values().stream().mapToLong(bitmap -> {
+			synchronized (bitmap) {
+				return bitmap.getSizeInBytes();
+			}
+		}).sum();
+	}
+
+	/**
+	 * Loads the snapshot if it holds the same serial numbers as the token table, going by
+	 * their {@link SerialBitmap.Digest digests}, and reads the table otherwise. NFTs
+	 * added in the meantime are kept.
+	 */
+	Mono<Void> load() {
+		Optional<Map<String, SerialBitmap>> snapshot = readSnapshot();
+		if (snapshot.isEmpty()) {
+			return loadTokenTable();
+		}
+		Map<String, SerialBitmap.Digest> snapshotDigests = digests(snapshot.get());
+		return tokenRepository.findSerialDigests().flatMap(storedDigests -> {
+			if (snapshotDigests.equals(storedDigests)) {
+				snapshot.get().forEach(this::merge);
+				log.info("Loaded {} processed NFTs from {}", cardinality(snapshotDigests),
+						getSnapshotFile().orElseThrow());
+				return Mono.empty();
+			}
+			log.info("Snapshot holds {} processed NFTs that don't match the {} stored, reading the token table",
+					cardinality(snapshotDigests), cardinality(storedDigests));
+			return loadTokenTable();
+		});
+	}
+
+	private Mono<Void> loadTokenTable() {
+		return tokenRepository.findNftIds(configuration.loadPageSize()).doOnNext(this::add).count()
+				.doOnNext(loaded -> log.info("Loaded {} processed NFTs from the token table", loaded)).then();
+	}
+
+	@PreDestroy
+	void saveSnapshot() {
+		Optional<Path> snapshotFile = getSnapshotFile();
+		if (snapshotFile.isEmpty()) {
+			return;
+		}
+		try {
+			Path temporaryFile = Files.createTempFile(snapshotFile.get().toAbsolutePath().getParent(), "processed-nfts",
+					".tmp");
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+				Map<String, SerialBitmap> current = Map.copyOf(bitmaps);
+				output.writeInt(SNAPSHOT_MAGIC);
+				output.writeInt(current.size());
+				for (Map.Entry<String, SerialBitmap> entry : current.entrySet()) {
+					output.writeUTF(entry.getKey());
+					synchronized (entry.getValue()) {
+						entry.getValue().writeTo(output);
+					}
+				}
+			}
+			Files.move(temporaryFile, snapshotFile.get(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			log.info("Saved {} processed NFTs to {}", size(), snapshotFile.get());
+		}
+		catch (IOException e) {
+			log.warn("Could not save processed NFTs to {}. Exception: ", snapshotFile.get(), e);
+		}
+	}
+
+	private Optional<Map<String, SerialBitmap>> readSnapshot() {
+		Optional<Path> snapshotFile = getSnapshotFile().filter(Files::exists);
+		if (snapshotFile.isEmpty()) {
+			return Optional.empty();
+		}
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(snapshotFile.get())))) {
+			if (input.readInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("Not a processed NFT index snapshot");
+			}
+			int tokens = input.readInt();
+			Map<String, SerialBitmap> snapshot = new HashMap<>();
+			for (int i = 0; i < tokens; i++) {
+				snapshot.put(input.readUTF(), SerialBitmap.readFrom(input));
+			}
+			return Optional.of(snapshot);
+		}
+		catch (IOException e) {
+			log.warn("Could not load processed NFTs from {}. Exception: ", snapshotFile.get(), e);
+			return Optional.empty();
+		}
+	}
+
+	private void merge(String tokenId, SerialBitmap loaded) {
+		bitmaps.merge(tokenId, loaded, (current, ignored) -> {
+			synchronized (current) {
+				loaded.forEach(current::add);
+			}
+			return current;
+		});
+	}
+
+	private Optional<Path> getSnapshotFile() {
+		return Optional.ofNullable(configuration.snapshotFile()).filter(file -> !file.isBlank()).map(Path::of);
+	}
+
+	private static Map<String, SerialBitmap.Digest> digests(Map<String, SerialBitmap> snapshot) {
+		Map<String, SerialBitmap.Digest> digests = new HashMap<>();
+		snapshot.forEach((tokenId, bitmap) -> {
+			if (bitmap.getCardinality() > 0) {
+				digests.put(tokenId, bitmap.digest());
+			}
+		});
+		return digests;
+	}
+
+	private static long cardinality(Map<String, SerialBitmap.Digest> digests) {
+		return digests.values().stream().mapToLong(SerialBitmap.Digest::cardinality).sum();
+	}
+
+	/**
+	 * The serial number of an NFT, or -1 when it doesn't fit a {@link SerialBitmap}.
+	 */
+	private static long serialNumber(NftId nftId) {
+		try {
+			long serialNumber = Long.parseLong(nftId.getSerialNumber());
+			return serialNumber >= 0 && serialNumber <= SerialBitmap.MAX_SERIAL_NUMBER ? serialNumber : -1;
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
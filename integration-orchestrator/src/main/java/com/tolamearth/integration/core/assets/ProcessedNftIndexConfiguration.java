@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.assets;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+
+/**
+ * Processed NFT index settings.
+ * @param loadPageSize How many NFTs are read from the token table per query while the
+ * index is built
+ * @param snapshotFile File the index is saved to on shutdown and loaded from on startup;
+ * when blank the index is always built from the token table
+ */
+@ConfigurationProperties("processed-nft-index")
+public record ProcessedNftIndexConfiguration(@NonNull Integer loadPageSize, @Nullable String snapshotFile) {
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.assets;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Compressed set of the serial numbers of one token, laid out like a Roaring bitmap.
+ * Serials are split by their upper 16 bits into chunks of 65536. Each chunk holds up to
+ * 4096 serials as a sorted array of their lower 16 bits, and switches to a 8 KiB bitmap
+ * beyond that, so dense runs of minted serials take about a bit each and sparse ones two
+ * bytes each.
+ * <p>
+ * Serial numbers up to {@link #MAX_SERIAL_NUMBER} are supported. Not thread-safe.
+ */
+public final class SerialBitmap {
+
+	public static final long MAX_SERIAL_NUMBER = 0xFFFF_FFFFL;
+
+	private static final int ARRAY_MAX_SIZE = 4096;
+
+	private static final int BITMAP_WORDS = 1024;
+
+	private static final byte ARRAY_CHUNK = 0;
+
+	private static final byte BITMAP_CHUNK = 1;
+
+	private char[] keys = new char[0];
+
+	private Chunk[] chunks = new Chunk[0];
+
+	private int size;
+
+	private long cardinality;
+
+	/**
+	 * Adds a serial number, returning whether it wasn't in the set yet.
+	 * @throws IllegalArgumentException if the serial number isn't supported
+	 */
+	public boolean add(long serialNumber) {
+		checkSupported(serialNumber);
+		char key = (char) (serialNumber >>> 16);
+		int index = Arrays.binarySearch(keys, 0, size, key);
+		if (index < 0) {
+			index = -index - 1;
+			insertChunk(index, key, new ArrayChunk());
+		}
+		Chunk chunk = chunks[index];
+		if (!chunk.add((char) serialNumber)) {
+			return false;
+		}
+		if (chunk instanceof ArrayChunk array && array.size > ARRAY_MAX_SIZE) {
+			chunks[index] = array.toBitmap();
+		}
+		cardinality++;
+		return true;
+	}
+
+	public boolean contains(long serialNumber) {
+		if (serialNumber < 0 || serialNumber > MAX_SERIAL_NUMBER) {
+			return false;
+		}
+		int index = Arrays.binarySearch(keys, 0, size, (char) (serialNumber >>> 16));
+		return index >= 0 && chunks[index].contains((char) serialNumber);
+	}
+
+	public long getCardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * Approximate heap taken by the serial numbers, excluding object headers.
+	 */
+	public long getSizeInBytes() {
+		long bytes = (long) keys.length * Character.BYTES + (long) chunks.length * Integer.BYTES;
+		for (int i = 0; i < size; i++) {
+			bytes += chunks[i].sizeInBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Summarizes the serial numbers so the set can be compared with another one without
+	 * listing them.
+	 */
+	public Digest digest() {
+		long[] sums = new long[2];
+		forEach(serialNumber -> {
+			sums[0] += serialNumber;
+			sums[1] += serialNumber * serialNumber;
+		});
+		return new Digest(cardinality, sums[0], sums[1]);
+	}
+
+	/**
+	 * Calls the consumer with every serial number, in ascending order.
+	 */
+	public void forEach(LongConsumer consumer) {
+		for (int i = 0; i < size; i++) {
+			chunks[i].forEach((long) keys[i] << 16, consumer);
+		}
+	}
+
+	public void writeTo(DataOutput output) throws IOException {
+		output.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			output.writeChar(keys[i]);
+			chunks[i].writeTo(output);
+		}
+	}
+
+	public static SerialBitmap readFrom(DataInput input) throws IOException {
+		SerialBitmap bitmap = new SerialBitmap();
+		int size = input.readInt();
+		bitmap.keys = new char[size];
+		bitmap.chunks = new Chunk[size];
+		for (int i = 0; i < size; i++) {
+			bitmap.keys[i] = input.readChar();
+			if (i > 0 && bitmap.keys[i] <= bitmap.keys[i - 1]) {
+				throw new IOException("Serial bitmap chunks out of order");
+			}
+			bitmap.chunks[i] = switch (input.readByte()) {
+				case ARRAY_CHUNK -> ArrayChunk.readFrom(input);
+				case BITMAP_CHUNK -> BitmapChunk.readFrom(input);
+				default -> throw new IOException("Unknown serial bitmap chunk type");
+			};
+			bitmap.cardinality += bitmap.chunks[i].cardinality();
+		}
+		bitmap.size = size;
+		return bitmap;
+	}
+
+	private void insertChunk(int index, char key, Chunk chunk) {
+		if (size == keys.length) {
+			int capacity = Math.max(4, size * 2);
+			keys = Arrays.copyOf(keys, capacity);
+			chunks = Arrays.copyOf(chunks, capacity);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(chunks, index, chunks, index + 1, size - index);
+		keys[index] = key;
+		chunks[index] = chunk;
+		size++;
+	}
+
+	private static void checkSupported(long serialNumber) {
+		if (serialNumber < 0 || serialNumber > MAX_SERIAL_NUMBER) {
+			throw new IllegalArgumentException("Unsupported serial number " + serialNumber);
+		}
+	}
+
+	/**
+	 * The number of serial numbers in a set with their sum and sum of squares, both
+	 * wrapping around at 64 bits.
+	 */
+	public record Digest(long cardinality, long sum, long sumOfSquares) {
+	}
+
+	private interface Chunk {
+
+		boolean add(char low);
+
+		boolean contains(char low);
+
+		int cardinality();
+
+		long sizeInBytes();
+
+		void forEach(long high, LongConsumer consumer);
+
+		void writeTo(DataOutput output) throws IOException;
+
+	}
+
+	private static final class ArrayChunk implements Chunk {
+
+		private char[] values = new char[4];
+
+		private int size;
+
+		@Override
+		public boolean add(char low) {
+			int index = Arrays.binarySearch(values, 0, size, low);
+			if (index >= 0) {
+				return false;
+			}
+			index = -index - 1;
+			if (size == values.length) {
+				values = Arrays.copyOf(values, Math.min(size * 2, ARRAY_MAX_SIZE + 1));
+			}
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = low;
+			size++;
+			return true;
+		}
+
+		@Override
+		public boolean contains(char low) {
+			return Arrays.binarySearch(values, 0, size, low) >= 0;
+		}
+
+		@Override
+		public int cardinality() {
+			return size;
+		}
+
+		@Override
+		public long sizeInBytes() {
+			return (long) values.length * Character.BYTES + Integer.BYTES;
+		}
+
+		@Override
+		public void forEach(long high, LongConsumer consumer) {
+			for (int i = 0; i < size; i++) {
+				consumer.accept(high | values[i]);
+			}
+		}
+
+		@Override
+		public void writeTo(DataOutput output) throws IOException {
+			output.writeByte(ARRAY_CHUNK);
+			output.writeShort(size - 1);
+			for (int i = 0; i < size; i++) {
+				output.writeChar(values[i]);
+			}
+		}
+
+		BitmapChunk toBitmap() {
+			BitmapChunk bitmap = new BitmapChunk();
+			for (int i = 0; i < size; i++) {
+				bitmap.add(values[i]);
+			}
+			return bitmap;
+		}
+
+		static ArrayChunk readFrom(DataInput input) throws IOException {
+			ArrayChunk chunk = new ArrayChunk();
+			chunk.size = input.readUnsignedShort() + 1;
+			if (chunk.size > ARRAY_MAX_SIZE) {
+				throw new IOException("Serial bitmap array chunk too large");
+			}
+			chunk.values = new char[chunk.size];
+			for (int i = 0; i < chunk.size; i++) {
+				chunk.values[i] = input.readChar();
+				if (i > 0 && chunk.values[i] <= chunk.values[i - 1]) {
+					throw new IOException("Serial bitmap array chunk out of order");
+				}
+			}
+			return chunk;
+		}
+
+	}
+
+	private static final class BitmapChunk implements Chunk {
+
+		private final long[] words = new long[BITMAP_WORDS];
+
+		private int cardinality;
+
+		@Override
+		public boolean add(char low) {
+			long word = words[low >>> 6];
+			long updated = word | (1L << low);
+			if (word == updated) {
+				return false;
+			}
+			words[low >>> 6] = updated;
+			cardinality++;
+			return true;
+		}
+
+		@Override
+		public boolean contains(char low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		public int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		public long sizeInBytes() {
+			return (long) BITMAP_WORDS * Long.BYTES + Integer.BYTES;
+		}
+
+		@Override
+		public void forEach(long high, LongConsumer consumer) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+				while (word != 0) {
+					consumer.accept(high | ((long) i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		public void writeTo(DataOutput output) throws IOException {
+			output.writeByte(BITMAP_CHUNK);
+			for (long word : words) {
+				output.writeLong(word);
+			}
+		}
+
+		static BitmapChunk readFrom(DataInput input) throws IOException {
+			BitmapChunk chunk = new BitmapChunk();
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				chunk.words[i] = input.readLong();
+				chunk.cardinality += Long.bitCount(chunk.words[i]);
+			}
+			return chunk;
+		}
+
+	}
+
+}
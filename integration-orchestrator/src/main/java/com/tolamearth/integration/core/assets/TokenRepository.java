@@ -18,18 +18,45 @@ package com.tolamearth.integration.core.assets;
 
 import io.micronaut.data.annotation.Repository;
 import io.micronaut.data.repository.reactive.ReactorCrudRepository;
+import org.hibernate.reactive.stage.Stage;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
 
 @Repository
 public abstract class TokenRepository implements ReactorCrudRepository<Token, NftId> {
 
-	private final EntityManager entityManager;
+	private static final String TOKEN_COLUMNS = "token_id, serial_number, memo, project_category, project_type, "
+			+ "quality, vintage_year, country, device_id, guardian_id, first_subdivision";
 
-	protected TokenRepository(EntityManager entityManager) {
-		this.entityManager = entityManager;
+	private static final String TRANSACTION_COLUMNS = "token_token_id, token_serial_number, transaction_id, "
+			+ "event_type, transaction_time, owner, list_price, purchase_price";
+
+	private static final String[] TRANSACTION_TYPES = { "varchar", "varchar", "varchar", "int4", "varchar", "varchar",
+			"int8", "int8" };
+
+	private static final String NFT_IDS_PAGE_SQL = "SELECT token_id, serial_number FROM token "
+			+ "WHERE (token_id, serial_number) > (?1, ?2) ORDER BY token_id, serial_number LIMIT ?3";
+
+	private static final String SERIAL_DIGESTS_SQL = "SELECT token_id, count(*), sum(serial), sum(serial * serial) "
+			+ "FROM (SELECT token_id, CAST(serial_number AS numeric) AS serial FROM token "
+			+ "WHERE serial_number ~ '^[0-9]{1,10}$') AS t WHERE serial <= " + SerialBitmap.MAX_SERIAL_NUMBER
+			+ " GROUP BY token_id";
+
+	private final Stage.SessionFactory sessionFactory;
+
+	protected TokenRepository(EntityManagerFactory entityManagerFactory) {
+		this.sessionFactory = entityManagerFactory.unwrap(Stage.SessionFactory.class);
 	}
 
 	@Transactional
@@ -40,4 +67,112 @@ public abstract class TokenRepository implements ReactorCrudRepository<Token, Nf
 		}).switchIfEmpty(this.save(token));
 	}
 
+	/**
+	 * Stores newly minted tokens and their transactions in a single statement, skipping
+	 * tokens that are already stored. Emits the tokens that were new, in the order given.
+	 * Minted tokens may be stored concurrently, so their discovery checkpoints are
+	 * advanced separately, once every earlier token has been stored.
+	 */
+	public Flux<Token> insertMinted(List<Token> tokens) {
+		if (tokens.isEmpty()) {
+			return Flux.empty();
+		}
+		return Mono.fromCompletionStage(() -> sessionFactory.withTransaction(session -> {
+			List<Object> parameters = new ArrayList<>();
+			Stage.Query<Object[]> insert = session.createNativeQuery(insertMintedSql(tokens, parameters));
+			for (int i = 0; i < parameters.size(); i++) {
+				insert.setParameter(i + 1, parameters.get(i));
+			}
+			return insert.getResultList();
+		})).flatMapIterable(rows -> {
+			Set<NftId> inserted = new HashSet<>();
+			rows.forEach(row -> inserted.add(new NftId((String) row[0], (String) row[1])));
+			return tokens.stream().filter(token -> inserted.remove(token.getNftId())).toList();
+		});
+	}
+
+	/**
+	 * Emits the IDs of all stored tokens, reading them in pages of {@code pageSize} so
+	 * large tables aren't held in memory at once.
+	 */
+	public Flux<NftId> findNftIds(int pageSize) {
+		return findNftIdsAfter(new NftId("", ""), pageSize).expand(
+				page -> page.size() < pageSize ? Mono.empty() : findNftIdsAfter(page.get(page.size() - 1), pageSize))
+				.flatMapIterable(page -> page);
+	}
+
+	/**
+	 * Summarizes the serial numbers stored for each token that fit a
+	 * {@link SerialBitmap}, the same way {@link SerialBitmap#digest()} does.
+	 */
+	public Mono<Map<String, SerialBitmap.Digest>> findSerialDigests() {
+		return Mono
+				.fromCompletionStage(() -> sessionFactory.withSession(
+						session -> session.<Object[]>createNativeQuery(SERIAL_DIGESTS_SQL).getResultList()))
+				.map(rows -> {
+					Map<String, SerialBitmap.Digest> digests = new HashMap<>();
+					rows.forEach(
+							row -> digests.put((String) row[0], new SerialBitmap.Digest(((Number) row[1]).longValue(),
+									((Number) row[2]).longValue(), ((Number) row[3]).longValue())));
+					return digests;
+				});
+	}
+
+	private Mono<List<NftId>> findNftIdsAfter(NftId after, int pageSize) {
+		return Mono
+				.fromCompletionStage(() -> sessionFactory.withSession(session -> session
+						.<Object[]>createNativeQuery(NFT_IDS_PAGE_SQL).setParameter(1, after.getTokenId())
+						.setParameter(2, after.getSerialNumber()).setParameter(3, pageSize).getResultList()))
+				.map(rows -> rows.stream().map(row -> new NftId((String) row[0], (String) row[1])).toList());
+	}
+
+	/**
+	 * Builds an {@code INSERT ... ON CONFLICT DO NOTHING} of the tokens that returns the
+	 * IDs of the new ones, with a second insert of the transactions of only those tokens.
+	 */
+	private static String insertMintedSql(List<Token> tokens, List<Object> parameters) {
+		StringJoiner tokenRows = new StringJoiner(", ");
+		StringJoiner transactionRows = new StringJoiner(", ");
+		for (Token token : tokens) {
+			NftId nftId = token.getNftId();
+			tokenRows.add(row(parameters, null, nftId.getTokenId(), nftId.getSerialNumber(), token.getMemo(),
+					token.getProjectCategory(), token.getProjectType(), token.getQuality(), token.getVintageYear(),
+					token.getCountry(), token.getDeviceId(), token.getGuardianId(), token.getFirstSubdivision()));
+			for (TokenTransaction transaction : Objects.requireNonNullElse(token.getTransactions(),
+					List.<TokenTransaction>of())) {
+				transactionRows
+						.add(row(parameters, TRANSACTION_TYPES, nftId.getTokenId(), nftId.getSerialNumber(),
+								transaction.getId().getTransactionId(),
+								Objects.isNull(transaction.getEventType()) ? null
+										: transaction.getEventType().ordinal(),
+								transaction.getTransactionTime(), transaction.getOwner(), transaction.getListPrice(),
+								transaction.getPurchasePrice()));
+			}
+		}
+		StringBuilder sql = new StringBuilder("WITH new_token AS (INSERT INTO token (").append(TOKEN_COLUMNS)
+				.append(") VALUES ").append(tokenRows)
+				.append(" ON CONFLICT DO NOTHING RETURNING token_id, serial_number)");
+		if (transactionRows.length() > 0) {
+			sql.append(", new_transaction AS (INSERT INTO token_transaction (").append(TRANSACTION_COLUMNS)
+					.append(") SELECT t.* FROM (VALUES ").append(transactionRows).append(") AS t(")
+					.append(TRANSACTION_COLUMNS).append(") JOIN new_token n ON n.token_id = t.token_token_id ")
+					.append("AND n.serial_number = t.token_serial_number ON CONFLICT DO NOTHING)");
+		}
+		return sql.append(" SELECT token_id, serial_number FROM new_token").toString();
+	}
+
+	/**
+	 * Adds the values of a row to the parameters, casting them to the given SQL types
+	 * when they aren't inferred from a target column.
+	 */
+	private static String row(List<Object> parameters, String[] types, Object... values) {
+		StringJoiner row = new StringJoiner(", ", "(", ")");
+		for (int i = 0; i < values.length; i++) {
+			parameters.add(values[i]);
+			String parameter = "?" + parameters.size();
+			row.add(Objects.isNull(types) ? parameter : "CAST(" + parameter + " AS " + types[i] + ")");
+		}
+		return row.toString();
+	}
+
 }
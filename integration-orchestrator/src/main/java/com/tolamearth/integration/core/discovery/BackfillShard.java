@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.discovery;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * One timestamp range of a historical backfill. The shard scans the mints of a treasury
+ * account with a consensus timestamp after {@code rangeStart} and before
+ * {@code rangeEnd}, and {@code cursor} records the last one handed to the publisher so an
+ * interrupted backfill can resume.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+public class BackfillShard {
+
+	@Id
+	private String id;
+
+	private String backfillId;
+
+	private int shardIndex;
+
+	private String tokenId;
+
+	private String treasuryAccountId;
+
+	private String rangeStart;
+
+	private String rangeEnd;
+
+	private String cursor;
+
+	private long transactionsEmitted;
+
+	private boolean completed;
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.discovery;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Comparator;
+
+/**
+ * Helpers for Hedera consensus timestamps in their {@code seconds.nanoseconds} string
+ * form.
+ */
+public class ConsensusTimestamps {
+
+	public static final Comparator<String> ORDER = Comparator.comparing(BigDecimal::new);
+
+	private ConsensusTimestamps() {
+	}
+
+	public static boolean isAfter(String timestamp, String other) {
+		return ORDER.compare(timestamp, other) > 0;
+	}
+
+	public static String min(String timestamp, String other) {
+		return isAfter(timestamp, other) ? other : timestamp;
+	}
+
+	public static String max(String timestamp, String other) {
+		return isAfter(timestamp, other) ? timestamp : other;
+	}
+
+	public static String fromInstant(Instant instant) {
+		return String.format("%d.%09d", instant.getEpochSecond(), instant.getNano());
+	}
+
+	public static Instant toInstant(String timestamp) {
+		BigDecimal seconds = new BigDecimal(timestamp);
+		long epochSecond = seconds.longValue();
+		long nanos = seconds.subtract(BigDecimal.valueOf(epochSecond)).movePointRight(9).longValue();
+		return Instant.ofEpochSecond(epochSecond, nanos);
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.discovery;
+
+import io.micronaut.data.annotation.Repository;
+import io.micronaut.data.repository.reactive.ReactorCrudRepository;
+import org.hibernate.reactive.stage.Stage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+@Repository
+public abstract class DiscoveryCheckpointRepository implements ReactorCrudRepository<DiscoveryCheckpoint, String> {
+
+	private final Stage.SessionFactory sessionFactory;
+
+	protected DiscoveryCheckpointRepository(EntityManagerFactory entityManagerFactory) {
+		this.sessionFactory = entityManagerFactory.unwrap(Stage.SessionFactory.class);
+	}
+
+	public abstract Flux<DiscoveryCheckpoint> findByTokenIdIn(Collection<String> tokenIds);
+
+	/**
+	 * Moves the checkpoints of the given tokens forward to the given consensus timestamps
+	 * in a single statement. Checkpoints never move backwards, so replayed or reordered
+	 * tokens can't rewind discovery. Rows are locked in token ID order, so concurrent
+	 * advances can't deadlock.
+	 */
+	public Mono<Void> advance(Map<String, String> consensusTimestamps) {
+		if (consensusTimestamps.isEmpty()) {
+			return Mono.empty();
+		}
+		return Mono.fromCompletionStage(() -> sessionFactory.withTransaction(session -> {
+			List<Object> parameters = new ArrayList<>();
+			StringJoiner rows = new StringJoiner(", ");
+			new TreeMap<>(consensusTimestamps).forEach((tokenId, consensusTimestamp) -> {
+				parameters.add(tokenId);
+				parameters.add(consensusTimestamp);
+				rows.add("(?" + (parameters.size() - 1) + ", ?" + parameters.size() + ")");
+			});
+			Stage.Query<?> upsert = session
+					.createNativeQuery("INSERT INTO discovery_checkpoint (token_id, consensus_timestamp) VALUES " + rows
+							+ " ON CONFLICT (token_id) DO UPDATE SET consensus_timestamp = EXCLUDED.consensus_timestamp"
+							+ " WHERE CAST(EXCLUDED.consensus_timestamp AS numeric)"
+							+ " > CAST(discovery_checkpoint.consensus_timestamp AS numeric)");
+			for (int i = 0; i < parameters.size(); i++) {
+				upsert.setParameter(i + 1, parameters.get(i));
+			}
+			return upsert.executeUpdate();
+		})).then();
+	}
+
+}
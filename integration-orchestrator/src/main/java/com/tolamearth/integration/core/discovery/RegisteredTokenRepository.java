@@ -14,10 +14,15 @@
  * the License.
  */
 
-package com.tolamearth.integration.ledgerworks.data;
+package com.tolamearth.integration.core.discovery;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micronaut.data.annotation.Repository;
+import io.micronaut.data.repository.reactive.ReactorCrudRepository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface RegisteredTokenRepository extends ReactorCrudRepository<RegisteredToken, String> {
+
+	Flux<RegisteredToken> findByDeregisteredAtIsNull();
 
-public record TokenTransfer(@JsonProperty("token_id") String tokenId, String account, int amount,
-		@JsonProperty("is_approval") boolean isApproval) {
 }
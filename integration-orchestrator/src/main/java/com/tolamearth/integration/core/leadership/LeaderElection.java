@@ -0,0 +1,235 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.leadership;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgConnection;
+import io.vertx.sqlclient.Tuple;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Elects one replica to run singleton work such as token discovery. The leader holds a
+ * session-level Postgres advisory lock on a connection of its own, separate from the
+ * Hibernate pool, so the lock lives exactly as long as that connection. When the leader
+ * stops or loses its connection Postgres releases the lock, and the first follower to try
+ * it on its next check takes over.
+ * <p>
+ * The leader's connection carries its node ID as the Postgres application name, which
+ * lets followers report who leads. Connecting and checking the lock are bounded by
+ * {@code leader-election.check-timeout}, and the leader steps down when its check times
+ * out. TCP keepalive lets both sides notice a connection that silently went away.
+ */
+@Slf4j
+@Singleton
+public class LeaderElection {
+
+	private static final String TRY_LOCK = "SELECT pg_try_advisory_lock($1)";
+
+	private static final String UNLOCK = "SELECT pg_advisory_unlock($1)";
+
+	private static final String CHECK_CONNECTION = "SELECT 1";
+
+	private static final String LOCK_HOLDER = "SELECT a.application_name FROM pg_locks l "
+			+ "JOIN pg_stat_activity a ON a.pid = l.pid WHERE l.locktype = 'advisory' AND l.granted "
+			+ "AND l.classid::bigint = $1 AND l.objid::bigint = $2 AND l.objsubid = 1";
+
+	private static final String APPLICATION_NAME_PREFIX = "integration-leader:";
+
+	private final LeaderElectionConfiguration configuration;
+
+	private final String nodeId;
+
+	private final String databaseUrl;
+
+	private final String databaseUser;
+
+	private final String databasePassword;
+
+	private final AtomicBoolean checking = new AtomicBoolean();
+
+	private Vertx vertx;
+
+	private volatile PgConnection lockConnection;
+
+	private volatile Instant leaderSince;
+
+	public LeaderElection(LeaderElectionConfiguration configuration, MeterRegistry meterRegistry,
+			@Value("${jpa.default.properties.hibernate.connection.url:}") String databaseUrl,
+			@Value("${jpa.default.properties.hibernate.connection.username:}") String databaseUser,
+			@Value("${jpa.default.properties.hibernate.connection.password:}") String databasePassword) {
+		this.configuration = configuration;
+		this.nodeId = Optional.ofNullable(configuration.nodeId()).filter(id -> !id.isBlank())
+				.orElseGet(LeaderElection::getHostName);
+		this.databaseUrl = databaseUrl;
+		this.databaseUser = databaseUser;
+		this.databasePassword = databasePassword;
+		Gauge.builder("leader.election.leader", this, election -> election.isLeader() ? 1 : 0)
+				.description("Whether this node leads").register(meterRegistry);
+	}
+
+	public boolean isLeader() {
+		return !configuration.enabled() || Objects.nonNull(lockConnection);
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Tries to take the lock while following, and checks the lock connection is still
+	 * alive while leading.
+	 */
+	@Scheduled(fixedDelay = "${leader-election.check-interval}")
+	void checkLeadership() {
+		if (!configuration.enabled() || !checking.compareAndSet(false, true)) {
+			return;
+		}
+		Mono<Void> check = Objects.isNull(lockConnection) ? tryLock() : checkLock();
+		check.doFinally(signal -> checking.set(false)).subscribe(null,
+				throwable -> log.error("Leader election check failed. Exception: ", throwable));
+	}
+
+	public Mono<LeaderStatus> getStatus() {
+		if (isLeader()) {
+			return Mono.just(new LeaderStatus(nodeId, true, nodeId, leaderSince));
+		}
+		return withConnection(connection -> toMono(connection.preparedQuery(LOCK_HOLDER)
+				.execute(Tuple.of(configuration.lockKey() >>> 32, configuration.lockKey() & 0xFFFFFFFFL))))
+						.map(rows -> {
+							String leaderNodeId = rows.size() == 0 ? null
+									: rows.iterator().next().getString(0).replaceFirst(APPLICATION_NAME_PREFIX, "");
+							return new LeaderStatus(nodeId, false, leaderNodeId, null);
+						});
+	}
+
+	private Mono<Void> tryLock() {
+		return connect().flatMap(
+				connection -> toMono(connection.preparedQuery(TRY_LOCK).execute(Tuple.of(configuration.lockKey())))
+						.timeout(configuration.checkTimeout()).flatMap(rows -> {
+							if (rows.iterator().next().getBoolean(0)) {
+								connection.closeHandler(ignored -> stepDown(connection));
+								lockConnection = connection;
+								leaderSince = Instant.now();
+								log.info("Node {} is now the leader", nodeId);
+								return Mono.<Void>empty();
+							}
+							return toMono(connection.close());
+						}).onErrorResume(throwable -> toMono(connection.close()).then(Mono.error(throwable))));
+	}
+
+	private Mono<Void> checkLock() {
+		PgConnection connection = lockConnection;
+		return toMono(connection.query(CHECK_CONNECTION).execute()).timeout(configuration.checkTimeout()).then()
+				.onErrorResume(throwable -> {
+					log.error("Leader lock connection failed. Exception: ", throwable);
+					stepDown(connection);
+					return toMono(connection.close()).timeout(configuration.checkTimeout())
+							.onErrorResume(ignored -> Mono.empty());
+				});
+	}
+
+	private void stepDown(PgConnection connection) {
+		if (lockConnection == connection) {
+			log.warn("Node {} lost the leader lock", nodeId);
+			lockConnection = null;
+			leaderSince = null;
+		}
+	}
+
+	@PreDestroy
+	void close() {
+		PgConnection connection = lockConnection;
+		if (Objects.nonNull(connection)) {
+			stepDown(connection);
+			toMono(connection.preparedQuery(UNLOCK).execute(Tuple.of(configuration.lockKey())))
+					.then(toMono(connection.close())).timeout(configuration.checkTimeout())
+					.onErrorResume(throwable -> Mono.empty()).block();
+		}
+		synchronized (this) {
+			if (Objects.nonNull(vertx)) {
+				vertx.close();
+				vertx = null;
+			}
+		}
+	}
+
+	private <T> Mono<T> withConnection(Function<PgConnection, Mono<T>> work) {
+		return connect().flatMap(
+				connection -> work.apply(connection).flatMap(result -> toMono(connection.close()).thenReturn(result))
+						.onErrorResume(throwable -> toMono(connection.close()).then(Mono.error(throwable))));
+	}
+
+	private Mono<PgConnection> connect() {
+		return Mono.defer(() -> toMono(PgConnection.connect(getVertx(), getConnectOptions())))
+				.timeout(configuration.checkTimeout());
+	}
+
+	private synchronized Vertx getVertx() {
+		if (Objects.isNull(vertx)) {
+			vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1).setWorkerPoolSize(1));
+		}
+		return vertx;
+	}
+
+	/**
+	 * Connects to the database configured for Hibernate, keeping the host, port and
+	 * database of its JDBC URL, with TCP keepalive on.
+	 */
+	private PgConnectOptions getConnectOptions() {
+		String uri = databaseUrl.replaceFirst("^jdbc:", "");
+		int query = uri.indexOf('?');
+		PgConnectOptions options = PgConnectOptions.fromUri(query < 0 ? uri : uri.substring(0, query));
+		if (!databaseUser.isBlank()) {
+			options.setUser(databaseUser).setPassword(databasePassword);
+		}
+		options.setTcpKeepAlive(true).setConnectTimeout((int) configuration.checkTimeout().toMillis());
+		return options.addProperty("application_name", APPLICATION_NAME_PREFIX + nodeId);
+	}
+
+	private static <T> Mono<T> toMono(Future<T> future) {
+		return Mono.fromCompletionStage(future.toCompletionStage());
+	}
+
+	private static String getHostName() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		}
+		catch (UnknownHostException e) {
+			return UUID.randomUUID().toString();
+		}
+	}
+
+}
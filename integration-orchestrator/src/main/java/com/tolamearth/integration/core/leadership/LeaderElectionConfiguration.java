@@ -0,0 +1,39 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.leadership;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Leader election settings.
+ * @param enabled Whether replicas compete for leadership; when disabled this node always
+ * leads
+ * @param lockKey Postgres advisory lock key held by the leader
+ * @param checkInterval How often followers try to take the lock and the leader checks it
+ * still holds it
+ * @param checkTimeout Longest a connection attempt or lock check may take; a leader whose
+ * check times out steps down
+ * @param nodeId Name this node reports while it leads, defaulting to the host name
+ */
+@ConfigurationProperties("leader-election")
+public record LeaderElectionConfiguration(@NonNull Boolean enabled, @NonNull Long lockKey,
+		@NonNull Duration checkInterval, @NonNull Duration checkTimeout, @Nullable String nodeId) {
+}
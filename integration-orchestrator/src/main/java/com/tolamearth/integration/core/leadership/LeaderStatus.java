@@ -0,0 +1,29 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.leadership;
+
+import java.time.Instant;
+
+/**
+ * Leadership as seen from this node.
+ * @param nodeId This node
+ * @param leader Whether this node leads
+ * @param leaderNodeId The node holding the leader lock, if any
+ * @param leaderSince When this node took the lock, if it leads
+ */
+public record LeaderStatus(String nodeId, boolean leader, String leaderNodeId, Instant leaderSince) {
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.sharding;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring. Each node takes {@code virtualNodes} points on the ring
+ * and a key belongs to the node owning the first point at or after the key's hash. Adding
+ * or removing a node only moves the keys falling next to its points, so most keys keep
+ * their owner while the membership changes.
+ * <p>
+ * Points are placed with MD5, so every node builds the same ring from the same members.
+ */
+public final class ConsistentHashRing {
+
+	private final NavigableMap<Long, String> points;
+
+	private final Set<String> nodes;
+
+	public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+		NavigableMap<Long, String> points = new TreeMap<>();
+		for (String node : new TreeSet<>(nodes)) {
+			for (int point = 0; point < virtualNodes; point++) {
+				points.putIfAbsent(hash(node + "#" + point), node);
+			}
+		}
+		this.points = points;
+		this.nodes = Set.copyOf(nodes);
+	}
+
+	public String getNode(String key) {
+		if (points.isEmpty()) {
+			return null;
+		}
+		Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+		return Objects.isNull(point) ? points.firstEntry().getValue() : point.getValue();
+	}
+
+	public Set<String> getNodes() {
+		return nodes;
+	}
+
+	private static long hash(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+			return ByteBuffer.wrap(digest).getLong();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
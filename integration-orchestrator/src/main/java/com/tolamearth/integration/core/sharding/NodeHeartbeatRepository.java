@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.sharding;
+
+import io.micronaut.data.annotation.Repository;
+import io.micronaut.data.repository.reactive.ReactorCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.transaction.Transactional;
+import java.time.Instant;
+
+@Repository
+public abstract class NodeHeartbeatRepository implements ReactorCrudRepository<NodeHeartbeat, String> {
+
+	public abstract Flux<NodeHeartbeat> findByLastHeartbeatGreaterThan(Instant since);
+
+	public abstract Mono<Long> deleteByLastHeartbeatLessThan(Instant before);
+
+	/**
+	 * Records the heartbeat of a node, registering the node on its first beat.
+	 */
+	@Transactional
+	public Mono<NodeHeartbeat> beat(String nodeId, Instant heartbeat) {
+		return findById(nodeId).flatMap(node -> {
+			node.setLastHeartbeat(heartbeat);
+			return update(node);
+		}).switchIfEmpty(Mono.defer(() -> save(new NodeHeartbeat(nodeId, heartbeat))));
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.sharding;
+
+import com.tolamearth.integration.core.leadership.LeaderElection;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Splits keys such as treasury accounts between the live replicas. Every node records a
+ * heartbeat in Postgres each {@code sharding.heartbeat-interval} and rebuilds a
+ * {@link ConsistentHashRing} from the nodes that beat within
+ * {@code sharding.node-timeout}, so shards rebalance on their own as nodes join or stop.
+ * Nodes are named after their {@link LeaderElection#getNodeId() leader election node ID}.
+ * <p>
+ * A node owns nothing until its first heartbeat, and always counts itself as live, so a
+ * change of membership may briefly give a key two owners but never leaves it without one.
+ * When sharding is disabled every key belongs to this node.
+ */
+@Slf4j
+@Singleton
+public class ShardAssignment {
+
+	private static final Duration LEAVE_TIMEOUT = Duration.ofSeconds(5);
+
+	private final ShardingConfiguration configuration;
+
+	private final NodeHeartbeatRepository heartbeatRepository;
+
+	private final String nodeId;
+
+	private final AtomicReference<ConsistentHashRing> ring;
+
+	private final AtomicBoolean beating = new AtomicBoolean();
+
+	public ShardAssignment(ShardingConfiguration configuration, NodeHeartbeatRepository heartbeatRepository,
+			LeaderElection leaderElection, MeterRegistry meterRegistry) {
+		this.configuration = configuration;
+		this.heartbeatRepository = heartbeatRepository;
+		this.nodeId = leaderElection.getNodeId();
+		this.ring = new AtomicReference<>(new ConsistentHashRing(Set.of(), configuration.virtualNodes()));
+		Gauge.builder("sharding.nodes", ring, current -> current.get().getNodes().size())
+				.description("Live nodes sharing discovery").register(meterRegistry);
+	}
+
+	public boolean isEnabled() {
+		return configuration.enabled();
+	}
+
+	public boolean owns(String key) {
+		return !configuration.enabled() || nodeId.equals(ring.get().getNode(key));
+	}
+
+	public Set<String> getNodes() {
+		return ring.get().getNodes();
+	}
+
+	/**
+	 * Records this node's heartbeat, reloads the live nodes and forgets nodes that timed
+	 * out. A failed heartbeat keeps the current ring.
+	 */
+	@Scheduled(fixedDelay = "${sharding.heartbeat-interval}")
+	void heartbeat() {
+		if (!configuration.enabled() || !beating.compareAndSet(false, true)) {
+			return;
+		}
+		Instant now = Instant.now();
+		Instant cutoff = now.minus(configuration.nodeTimeout());
+		heartbeatRepository.beat(nodeId, now).thenMany(heartbeatRepository.findByLastHeartbeatGreaterThan(cutoff))
+				.map(NodeHeartbeat::getNodeId).collect(Collectors.toCollection(HashSet::new)).doOnNext(this::updateRing)
+				.then(heartbeatRepository.deleteByLastHeartbeatLessThan(cutoff)).doFinally(signal -> beating.set(false))
+				.subscribe(null, throwable -> log.error("Shard heartbeat failed. Exception: ", throwable));
+	}
+
+	void updateRing(Set<String> liveNodes) {
+		liveNodes.add(nodeId);
+		if (liveNodes.equals(ring.get().getNodes())) {
+			return;
+		}
+		ring.set(new ConsistentHashRing(liveNodes, configuration.virtualNodes()));
+		log.info("Node {} now shares discovery with nodes {}", nodeId, liveNodes);
+	}
+
+	/**
+	 * Removes this node's heartbeat on shutdown, so the other nodes take over its shard
+	 * on their next heartbeat rather than after the node timeout.
+	 */
+	@PreDestroy
+	void leave() {
+		if (!configuration.enabled()) {
+			return;
+		}
+		try {
+			heartbeatRepository.deleteById(nodeId).block(LEAVE_TIMEOUT);
+		}
+		catch (RuntimeException e) {
+			log.warn("Node {} could not leave the shard ring. Exception: ", nodeId, e);
+		}
+	}
+
+}
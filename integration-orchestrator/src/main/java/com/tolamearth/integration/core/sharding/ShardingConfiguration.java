@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.sharding;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Discovery sharding settings.
+ * @param enabled Whether every replica discovers its own share of the treasury accounts;
+ * when disabled the leader discovers all of them
+ * @param heartbeatInterval How often a node records its heartbeat and reloads the live
+ * nodes
+ * @param nodeTimeout How long after its last heartbeat a node is considered gone
+ * @param virtualNodes Points each node takes on the hash ring
+ */
+@ConfigurationProperties("sharding")
+public record ShardingConfiguration(@NonNull Boolean enabled, @NonNull Duration heartbeatInterval,
+		@NonNull Duration nodeTimeout, @NonNull Integer virtualNodes) {
+}
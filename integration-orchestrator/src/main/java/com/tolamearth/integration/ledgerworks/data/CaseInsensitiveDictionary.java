@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable open-addressing hash table looked up by {@link CharSequence}, ignoring case
+ * and surrounding whitespace. Keys are hashed and compared character by character, so a
+ * lookup doesn't allocate.
+ *
+ * @param <V> Value type
+ */
+final class CaseInsensitiveDictionary<V> {
+
+	private final String[] keys;
+
+	private final Object[] values;
+
+	private final int mask;
+
+	/**
+	 * Compiles the given entries, which may repeat a key with the same value.
+	 */
+	CaseInsensitiveDictionary(Collection<Map.Entry<String, V>> entries) {
+		int capacity = Integer.highestOneBit(Math.max(2, entries.size()) * 4 - 1);
+		this.keys = new String[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+		entries.forEach(entry -> put(entry.getKey(), entry.getValue()));
+	}
+
+	/**
+	 * Returns the value of a key, or {@code null} when there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(CharSequence key) {
+		int start = start(key);
+		int end = end(key, start);
+		for (int slot = hash(key, start, end) & mask;; slot = (slot + 1) & mask) {
+			String candidate = keys[slot];
+			if (Objects.isNull(candidate)) {
+				return null;
+			}
+			if (matches(candidate, key, start, end)) {
+				return (V) values[slot];
+			}
+		}
+	}
+
+	private void put(String key, V value) {
+		int start = start(key);
+		int end = end(key, start);
+		for (int slot = hash(key, start, end) & mask;; slot = (slot + 1) & mask) {
+			String candidate = keys[slot];
+			if (Objects.isNull(candidate)) {
+				keys[slot] = key.substring(start, end);
+				values[slot] = value;
+				return;
+			}
+			if (matches(candidate, key, start, end)) {
+				if (!values[slot].equals(value)) {
+					throw new IllegalArgumentException(
+							"'" + key + "' maps to both " + values[slot] + " and " + value + ".");
+				}
+				return;
+			}
+		}
+	}
+
+	private static int start(CharSequence key) {
+		int start = 0;
+		while (start < key.length() && Character.isWhitespace(key.charAt(start))) {
+			start++;
+		}
+		return start;
+	}
+
+	private static int end(CharSequence key, int start) {
+		int end = key.length();
+		while (end > start && Character.isWhitespace(key.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+
+	private static int hash(CharSequence key, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + fold(key.charAt(i));
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean matches(String candidate, CharSequence key, int start, int end) {
+		if (candidate.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < candidate.length(); i++) {
+			if (fold(candidate.charAt(i)) != fold(key.charAt(start + i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Folds the case of a character the way {@link String#equalsIgnoreCase} compares it.
+	 */
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import io.micronaut.core.annotation.Introspected;
+import lombok.Builder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The ESG details of an NFT, as returned by {@code GET
+ * /tokens/{tokenId}/nfts/{serialNumber}}. Only the title and value of each flat attribute
+ * are kept; attribute descriptions, schemas and nested attribute groups, which make up
+ * most of the response, are skipped while it is decoded.
+ */
+@Introspected
+@JsonDeserialize(using = EsgNftDetails.Deserializer.class)
+public record EsgNftDetails(String tokenId, Long serialNumber, List<Attribute> attributes) {
+
+	@Builder
+	public EsgNftDetails {
+	}
+
+	@Introspected
+	public record Attribute(String title, String value) {
+	}
+
+	/**
+	 * Decodes the response in a single pass over the parser's tokens without building an
+	 * intermediate tree.
+	 */
+	static class Deserializer extends StdDeserializer<EsgNftDetails> {
+
+		private static final String TOKEN_ID = "tokenId";
+
+		private static final String SERIAL_NUMBER = "serialNumber";
+
+		private static final String ATTRIBUTES = "attributes";
+
+		private static final String TITLE = "title";
+
+		private static final String VALUE = "value";
+
+		Deserializer() {
+			super(EsgNftDetails.class);
+		}
+
+		@Override
+		public EsgNftDetails deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			if (!parser.isExpectedStartObjectToken()) {
+				return (EsgNftDetails) context.handleUnexpectedToken(EsgNftDetails.class, parser);
+			}
+			String tokenId = null;
+			Long serialNumber = null;
+			List<Attribute> attributes = null;
+			for (String field = parser.nextFieldName(); Objects.nonNull(field); field = parser.nextFieldName()) {
+				JsonToken token = parser.nextToken();
+				switch (field) {
+					case TOKEN_ID -> tokenId = token.isScalarValue() ? parser.getValueAsString() : null;
+					case SERIAL_NUMBER -> serialNumber = token.isScalarValue() ? parser.getValueAsLong() : null;
+					case ATTRIBUTES -> attributes = token == JsonToken.START_ARRAY ? readAttributes(parser) : null;
+					default -> {
+					}
+				}
+				parser.skipChildren();
+			}
+			return new EsgNftDetails(tokenId, serialNumber, attributes);
+		}
+
+		private static List<Attribute> readAttributes(JsonParser parser) throws IOException {
+			List<Attribute> attributes = new ArrayList<>();
+			for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+				Attribute attribute = token == JsonToken.START_OBJECT ? readAttribute(parser) : null;
+				if (Objects.nonNull(attribute)) {
+					attributes.add(attribute);
+				}
+				parser.skipChildren();
+			}
+			return attributes;
+		}
+
+		/**
+		 * Reads one attribute, returning {@code null} when it has no title or its value
+		 * isn't a scalar.
+		 */
+		private static Attribute readAttribute(JsonParser parser) throws IOException {
+			String title = null;
+			String value = null;
+			boolean flat = true;
+			for (String field = parser.nextFieldName(); Objects.nonNull(field); field = parser.nextFieldName()) {
+				JsonToken token = parser.nextToken();
+				if (TITLE.equals(field) && token.isScalarValue()) {
+					title = parser.getValueAsString();
+				}
+				else if (VALUE.equals(field)) {
+					flat = token.isScalarValue();
+					value = flat ? parser.getValueAsString() : null;
+				}
+				parser.skipChildren();
+			}
+			return Objects.nonNull(title) && flat ? new Attribute(title, value) : null;
+		}
+
+	}
+
+}
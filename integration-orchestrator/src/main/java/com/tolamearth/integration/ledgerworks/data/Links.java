@@ -16,5 +16,28 @@
 
 package com.tolamearth.integration.ledgerworks.data;
 
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
 public record Links(String next) {
+
+	private static final String TIMESTAMP_PARAMETER = "timestamp=gt:";
+
+	/**
+	 * The mirror node pages ascending queries by moving the {@code gt:} timestamp filter
+	 * forward, so the next page is fully described by that timestamp.
+	 * @return The exclusive lower timestamp bound of the next page, if there is one
+	 */
+	public Optional<String> nextTimestamp() {
+		if (Objects.isNull(next) || !next.contains("?")) {
+			return Optional.empty();
+		}
+		String query = URLDecoder.decode(next.substring(next.indexOf('?') + 1), StandardCharsets.UTF_8);
+		return Arrays.stream(query.split("&")).filter(parameter -> parameter.startsWith(TIMESTAMP_PARAMETER))
+				.map(parameter -> parameter.substring(TIMESTAMP_PARAMETER.length())).findFirst();
+	}
+
 }
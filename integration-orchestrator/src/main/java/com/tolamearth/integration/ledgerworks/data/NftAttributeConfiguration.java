@@ -0,0 +1,29 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.Nullable;
+
+/**
+ * NFT attribute normalization settings.
+ * @param dictionaryFile JSON file with the attribute dictionaries, in the shape of
+ * {@code nft-attributes.json}; when blank the bundled dictionaries are used
+ */
+@ConfigurationProperties("nft-attributes")
+public record NftAttributeConfiguration(@Nullable String dictionaryFile) {
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionaries mapping each normalized code to the ESG spellings it is known by.
+ * Spellings are matched ignoring case and surrounding whitespace, and every code also
+ * matches itself.
+ * @param attributes ESG attribute titles of each normalized attribute
+ * @param projectCategories Project categories documented in {@code armm.proto}
+ * @param projectTypes Project types documented in {@code armm.proto}
+ * @param countries ISO 3166 alpha-3 country codes, besides the English names and alpha-2
+ * codes of every ISO 3166 country, which are always known
+ * @param firstSubdivisions Subdivision codes
+ * @param defaultFirstSubdivision Subdivision code of unknown subdivisions
+ */
+public record NftAttributeDictionaries(Map<String, List<String>> attributes,
+		Map<String, List<String>> projectCategories, Map<String, List<String>> projectTypes,
+		Map<String, List<String>> countries, Map<String, List<String>> firstSubdivisions,
+		String defaultFirstSubdivision) {
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Normalizes the attributes of an ESG NFT details response into {@link TokenDetails}. The
+ * dictionaries are compiled once into case-insensitive hash tables, so normalizing an
+ * attribute is a lookup that doesn't allocate. Countries are normalized to ISO 3166
+ * alpha-3 codes from their English name, alpha-2 or alpha-3 code.
+ * <p>
+ * Dictionaries are read from {@code nft-attributes.dictionary-file} when it is set and
+ * from the bundled {@code nft-attributes.json} otherwise.
+ */
+@Slf4j
+@Singleton
+public class NftAttributeNormalizer {
+
+	private static final String DICTIONARY_RESOURCE = "/nft-attributes.json";
+
+	enum Attribute {
+
+		VINTAGE, PROJECT_CATEGORY, PROJECT_TYPE, COUNTRY, FIRST_SUBDIVISION
+
+	}
+
+	private final CaseInsensitiveDictionary<Attribute> attributes;
+
+	private final CaseInsensitiveDictionary<String> projectCategories;
+
+	private final CaseInsensitiveDictionary<String> projectTypes;
+
+	private final CaseInsensitiveDictionary<String> countries;
+
+	private final CaseInsensitiveDictionary<String> firstSubdivisions;
+
+	private final String defaultFirstSubdivision;
+
+	@Inject
+	public NftAttributeNormalizer(NftAttributeConfiguration configuration, ObjectMapper objectMapper) {
+		this(loadDictionaries(configuration, objectMapper));
+	}
+
+	public NftAttributeNormalizer(NftAttributeDictionaries dictionaries) {
+		this.attributes = compile(dictionaries.attributes(), Attribute::valueOf);
+		this.projectCategories = compile(dictionaries.projectCategories(), Function.identity());
+		this.projectTypes = compile(dictionaries.projectTypes(), Function.identity());
+		this.countries = compileCountries(dictionaries.countries());
+		this.firstSubdivisions = compile(dictionaries.firstSubdivisions(), Function.identity());
+		this.defaultFirstSubdivision = dictionaries.defaultFirstSubdivision();
+	}
+
+	/**
+	 * Normalizes the NFT details returned by ESG, failing on values the dictionaries
+	 * don't know.
+	 */
+	public TokenDetails normalize(EsgNftDetails nftDetails) {
+		if (Objects.isNull(nftDetails.tokenId()) || Objects.isNull(nftDetails.serialNumber())
+				|| Objects.isNull(nftDetails.attributes())) {
+			throw new IllegalStateException("NFT Details response is invalid.");
+		}
+
+		TokenDetails.TokenDetailsBuilder builder = TokenDetails.builder();
+		builder.tokenId(nftDetails.tokenId());
+		builder.serialNumber(nftDetails.serialNumber());
+
+		for (EsgNftDetails.Attribute attribute : nftDetails.attributes()) {
+			Attribute normalized = attributes.get(attribute.title());
+			String value = attribute.value();
+			if (Objects.isNull(normalized) || Objects.isNull(value)) {
+				continue;
+			}
+			switch (normalized) {
+				case VINTAGE -> builder.vintageYear(Long.parseLong(value));
+				case PROJECT_CATEGORY -> builder.projectCategory(lookup(projectCategories, value, "project category"));
+				case PROJECT_TYPE -> builder.projectType(lookup(projectTypes, value, "project type"));
+				case COUNTRY -> builder.country(lookup(countries, value, "country"));
+				case FIRST_SUBDIVISION -> builder.firstSubdivision(
+						Objects.requireNonNullElse(firstSubdivisions.get(value), defaultFirstSubdivision));
+			}
+		}
+		builder.deviceId(UUID.randomUUID().toString());
+		builder.guardianId(UUID.randomUUID().toString());
+		return builder.build();
+	}
+
+	private static String lookup(CaseInsensitiveDictionary<String> dictionary, CharSequence value, String name) {
+		String code = dictionary.get(value);
+		if (Objects.isNull(code)) {
+			throw new IllegalStateException("Unexpected " + name + " '" + value + "'.");
+		}
+		return code;
+	}
+
+	private static <V> CaseInsensitiveDictionary<V> compile(Map<String, List<String>> dictionary,
+			Function<String, V> toValue) {
+		return new CaseInsensitiveDictionary<>(spellings(dictionary, toValue).toList());
+	}
+
+	/**
+	 * Compiles the country aliases together with the English name and alpha-2 and alpha-3
+	 * codes of every ISO 3166 country.
+	 */
+	private static CaseInsensitiveDictionary<String> compileCountries(Map<String, List<String>> aliases) {
+		Stream<Map.Entry<String, String>> isoCountries = Stream.of(Locale.getISOCountries()).flatMap(alpha2 -> {
+			Locale country = new Locale("", alpha2);
+			try {
+				String alpha3 = country.getISO3Country();
+				return Stream.of(Map.entry(alpha3, alpha3), Map.entry(alpha2, alpha3),
+						Map.entry(country.getDisplayCountry(Locale.ENGLISH), alpha3));
+			}
+			catch (MissingResourceException e) {
+				log.debug("No ISO 3166 alpha-3 code for country {}", alpha2);
+				return Stream.empty();
+			}
+		});
+		return new CaseInsensitiveDictionary<>(
+				Stream.concat(isoCountries, spellings(aliases, Function.identity())).toList());
+	}
+
+	private static <V> Stream<Map.Entry<String, V>> spellings(Map<String, List<String>> dictionary,
+			Function<String, V> toValue) {
+		return dictionary.entrySet().stream().flatMap(entry -> {
+			V value = toValue.apply(entry.getKey());
+			return Stream.concat(Stream.of(entry.getKey()), entry.getValue().stream())
+					.map(spelling -> Map.entry(spelling, value));
+		});
+	}
+
+	private static NftAttributeDictionaries loadDictionaries(NftAttributeConfiguration configuration,
+			ObjectMapper objectMapper) {
+		try {
+			if (Objects.nonNull(configuration.dictionaryFile()) && !configuration.dictionaryFile().isBlank()) {
+				Path dictionaryFile = Path.of(configuration.dictionaryFile());
+				log.info("Loading NFT attribute dictionaries from {}", dictionaryFile);
+				try (InputStream dictionaries = Files.newInputStream(dictionaryFile)) {
+					return objectMapper.readValue(dictionaries, NftAttributeDictionaries.class);
+				}
+			}
+			return loadBundledDictionaries(objectMapper);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Could not load the NFT attribute dictionaries", e);
+		}
+	}
+
+	/**
+	 * Reads the dictionaries bundled with the service.
+	 */
+	public static NftAttributeDictionaries loadBundledDictionaries(ObjectMapper objectMapper) throws IOException {
+		try (InputStream dictionaries = NftAttributeNormalizer.class.getResourceAsStream(DICTIONARY_RESOURCE)) {
+			return objectMapper.readValue(dictionaries, NftAttributeDictionaries.class);
+		}
+	}
+
+}
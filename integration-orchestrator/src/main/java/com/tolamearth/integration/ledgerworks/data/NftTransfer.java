@@ -16,9 +16,11 @@
 
 package com.tolamearth.integration.ledgerworks.data;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public record NftTransfer(@JsonProperty("receiver_account_id") String receiverAccountId,
 		@JsonProperty("sender_account_id") String senderAccountId, @JsonProperty("serial_number") int serialNumber,
 		@JsonProperty("token_id") String tokenId) {
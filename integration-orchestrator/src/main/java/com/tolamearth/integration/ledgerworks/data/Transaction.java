@@ -16,21 +16,22 @@
 
 package com.tolamearth.integration.ledgerworks.data;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 
 import java.util.List;
 
-public record Transaction(String bytes, @JsonProperty("charged_tx_fee") int chargedTxFee,
-		@JsonProperty("consensus_timestamp") String consensusTimestamp, @JsonProperty("entity_id") String entityId,
-		@JsonProperty("max_fee") int maxFee, @JsonProperty("memo_base64") String memoBase64, String name, String node,
-		int nonce, @JsonProperty("parent_consensus_timestamp") String parentConsensusTimestamp, String result,
-		boolean scheduled, @JsonProperty("transaction_hash") String transactionHash,
+/**
+ * Projection of a mirror node transaction onto the fields discovery reads. Everything
+ * else in the response, such as {@code bytes}, {@code transfers} and
+ * {@code token_transfers}, is skipped by the parser without being bound.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record Transaction(@JsonProperty("consensus_timestamp") String consensusTimestamp,
+		@JsonProperty("memo_base64") String memoBase64, String name,
 		@JsonProperty("transaction_id") String transactionId,
-		@JsonProperty("nft_transfers") List<NftTransfer> nftTransfers,
-		@JsonProperty("token_transfers") List<TokenTransfer> tokenTransfers, List<Transfer> transfers,
-		@JsonProperty("valid_duration_seconds") int validDurationSeconds,
-		@JsonProperty("valid_start_timestamp") String validStartTimestamp) {
+		@JsonProperty("nft_transfers") List<NftTransfer> nftTransfers) {
 
 	@Builder
 	public Transaction {
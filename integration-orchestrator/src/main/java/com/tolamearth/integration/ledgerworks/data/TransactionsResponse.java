@@ -16,10 +16,12 @@
 
 package com.tolamearth.integration.ledgerworks.data;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Builder;
 
 import java.util.List;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public record TransactionsResponse(List<Transaction> transactions, Links links) {
 
 	@Builder
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+/**
+ * Historical backfill settings.
+ * @param shards Number of timestamp ranges a backfill is split into when the request
+ * doesn't say
+ * @param concurrency Maximum number of shards scanned at the same time
+ * @param readAheadPages Number of pages each running shard fetches ahead of the shards
+ * before it while it waits for its turn to be emitted
+ */
+@ConfigurationProperties("token-discovery.backfill")
+public record BackfillConfiguration(@NonNull Integer shards, @NonNull Integer concurrency,
+		@NonNull Integer readAheadPages) {
+}
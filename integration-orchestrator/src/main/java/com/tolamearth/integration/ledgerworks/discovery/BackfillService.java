@@ -0,0 +1,195 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.core.discovery.BackfillShard;
+import com.tolamearth.integration.core.discovery.BackfillShardRepository;
+import com.tolamearth.integration.core.discovery.ConsensusTimestamps;
+import com.tolamearth.integration.ledgerworks.data.TokenResponse;
+import com.tolamearth.integration.ledgerworks.data.Transaction;
+import com.tolamearth.integration.ledgerworks.data.TransactionsResponse;
+import com.tolamearth.integration.ledgerworks.http.LedgerWorksClient;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.tolamearth.integration.ledgerworks.discovery.PollingTokenDiscoveryService.ORDER_ASCENDING;
+import static com.tolamearth.integration.ledgerworks.discovery.PollingTokenDiscoveryService.TOKEN_MINT;
+
+/**
+ * Scans the mint history of a token between two points in time. The range is split into
+ * timestamp shards that are scanned concurrently, and the mints are handed to the minted
+ * transaction stream in consensus order. Each shard checkpoints the last mint it handed
+ * over, so an interrupted backfill resumes where it stopped.
+ */
+@Slf4j
+@Singleton
+public class BackfillService {
+
+	private final LedgerWorksClient ledgerWorksClient;
+
+	private final PollingTokenDiscoveryService tokenDiscoveryService;
+
+	private final BackfillShardRepository shardRepository;
+
+	private final TokenDiscoveryConfiguration discoveryConfiguration;
+
+	private final BackfillConfiguration configuration;
+
+	private final Set<String> runningBackfills = ConcurrentHashMap.newKeySet();
+
+	public BackfillService(LedgerWorksClient ledgerWorksClient, PollingTokenDiscoveryService tokenDiscoveryService,
+			BackfillShardRepository shardRepository, TokenDiscoveryConfiguration discoveryConfiguration,
+			BackfillConfiguration configuration) {
+		this.ledgerWorksClient = ledgerWorksClient;
+		this.tokenDiscoveryService = tokenDiscoveryService;
+		this.shardRepository = shardRepository;
+		this.discoveryConfiguration = discoveryConfiguration;
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Stores the shards of a new backfill of {@code [start, end)} and starts scanning
+	 * them in the background.
+	 * @return the stored shards
+	 */
+	public Mono<List<BackfillShard>> startBackfill(String tokenId, Instant start, Instant end, Integer shardCount) {
+		int shards = Objects.requireNonNullElse(shardCount, configuration.shards());
+		if (!start.isBefore(end) || shards < 1) {
+			return Mono.error(new IllegalArgumentException("Backfill needs start before end and at least one shard"));
+		}
+		String backfillId = UUID.randomUUID().toString();
+
+		return ledgerWorksClient.getToken(tokenId).map(TokenResponse::treasuryAccountId)
+				.flatMapIterable(
+						treasuryAccountId -> createShards(backfillId, tokenId, treasuryAccountId, start, end, shards))
+				.concatMap(shardRepository::save).collectList().filter(storedShards -> !storedShards.isEmpty())
+				.doOnNext(this::runBackfill);
+	}
+
+	/**
+	 * Restarts the unfinished shards of a backfill from their checkpoints.
+	 * @return the stored shards, empty if the backfill is unknown
+	 */
+	public Mono<List<BackfillShard>> resumeBackfill(String backfillId) {
+		return getShards(backfillId).doOnNext(this::runBackfill);
+	}
+
+	public Mono<List<BackfillShard>> getShards(String backfillId) {
+		return shardRepository.findByBackfillIdOrderByShardIndex(backfillId).collectList()
+				.filter(shards -> !shards.isEmpty());
+	}
+
+	public boolean isRunning(String backfillId) {
+		return runningBackfills.contains(backfillId);
+	}
+
+	private List<BackfillShard> createShards(String backfillId, String tokenId, String treasuryAccountId, Instant start,
+			Instant end, int shards) {
+		Duration shardLength = Duration.between(start, end).dividedBy(shards);
+		return IntStream.range(0, shards).mapToObj(index -> {
+			Instant shardStart = start.plus(shardLength.multipliedBy(index));
+			Instant shardEnd = index == shards - 1 ? end : shardStart.plus(shardLength);
+			return BackfillShard.builder().id(backfillId + "-" + index).backfillId(backfillId).shardIndex(index)
+					.tokenId(tokenId).treasuryAccountId(treasuryAccountId)
+					.rangeStart(ConsensusTimestamps.fromInstant(shardStart.minusNanos(1)))
+					.rangeEnd(ConsensusTimestamps.fromInstant(shardEnd)).build();
+		}).collect(Collectors.toList());
+	}
+
+	/**
+	 * Scans the unfinished shards concurrently. Each running shard buffers up to
+	 * {@code readAheadPages} resolved pages while the shards before it are emitted, then
+	 * pages are merged back in shard order. The shards cover consecutive ranges, so the
+	 * mints come out in consensus order.
+	 */
+	private void runBackfill(List<BackfillShard> shards) {
+		String backfillId = shards.get(0).getBackfillId();
+		if (!runningBackfills.add(backfillId)) {
+			log.info("Backfill {} is already running", backfillId);
+			return;
+		}
+		List<BackfillShard> pendingShards = shards.stream().filter(shard -> !shard.isCompleted())
+				.collect(Collectors.toList());
+		log.info("Running backfill {} with {} of {} shards pending", backfillId, pendingShards.size(), shards.size());
+
+		Flux.mergeSequential(Flux.fromIterable(pendingShards).map(this::scanShard), configuration.concurrency(),
+				configuration.readAheadPages()).publishOn(Schedulers.boundedElastic()).concatMap(this::emitPage)
+				.doFinally(signal -> runningBackfills.remove(backfillId))
+				.subscribe(shard -> log.debug("Backfill shard {} at {}", shard.getId(), shard.getCursor()),
+						throwable -> log.error("Backfill {} stopped. Exception: ", backfillId, throwable),
+						() -> log.info("Backfill {} complete", backfillId));
+	}
+
+	/**
+	 * Pages are fetched and resolved one at a time as the merge asks for them, so the
+	 * read-ahead budget bounds how far a shard gets ahead of the emitted ones.
+	 */
+	private Flux<ShardPage> scanShard(BackfillShard shard) {
+		String after = Objects.requireNonNullElse(shard.getCursor(), shard.getRangeStart());
+		return getShardPages(shard, after)
+				.concatMap(page -> Flux.fromIterable(page.transactions())
+						.flatMapSequential(transaction -> tokenDiscoveryService.resolveNftTransfers(transaction,
+								shard.getTreasuryAccountId()))
+						.collectList().map(transactions -> new ShardPage(shard, transactions, false)), 1)
+				.concatWith(Mono.fromSupplier(() -> new ShardPage(shard, List.of(), true)));
+	}
+
+	private Flux<TransactionsResponse> getShardPages(BackfillShard shard, String after) {
+		return ledgerWorksClient
+				.getTransactionsInRange(shard.getTreasuryAccountId(), TOKEN_MINT, ORDER_ASCENDING,
+						discoveryConfiguration.pageLimit(), after, shard.getRangeEnd())
+				.filter(page -> Objects.nonNull(page.transactions())).flatMapMany(page -> {
+					Optional<String> nextTimestamp = PollingTokenDiscoveryService.getNextTimestamp(page);
+					if (nextTimestamp.isEmpty()) {
+						return Flux.just(page);
+					}
+					return Flux.just(page).concatWith(getShardPages(shard, nextTimestamp.get()));
+				});
+	}
+
+	/**
+	 * Hands the mints of a page over and then moves the checkpoint of its shard past
+	 * them.
+	 */
+	private Mono<BackfillShard> emitPage(ShardPage page) {
+		BackfillShard shard = page.shard();
+		page.transactions().forEach(tokenDiscoveryService::emitBackfilledTransaction);
+		page.transactions().stream().map(Transaction::consensusTimestamp).filter(Objects::nonNull)
+				.reduce((first, second) -> second).ifPresent(shard::setCursor);
+		shard.setTransactionsEmitted(shard.getTransactionsEmitted() + page.transactions().size());
+		shard.setCompleted(page.last());
+		return shardRepository.update(shard);
+	}
+
+	private record ShardPage(BackfillShard shard, List<Transaction> transactions, boolean last) {
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+/**
+ * Outcome of a discovery cycle.
+ * @param mintsDiscovered Number of minted transactions emitted by the cycle
+ * @param pageFillRatio Highest fill ratio of the last page fetched for a treasury
+ * account, a full page means the account still has mints waiting
+ */
+public record DiscoveryCycle(long mintsDiscovered, double pageFillRatio) {
+
+	public static final DiscoveryCycle EMPTY = new DiscoveryCycle(0, 0);
+
+	public boolean isBacklogged() {
+		return pageFillRatio >= 1;
+	}
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.core.EventEmitter;
+import com.tolamearth.integration.core.discovery.ConsensusTimestamps;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.inject.Singleton;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Meters published by token discovery.
+ */
+@Singleton
+public class DiscoveryMetrics {
+
+	private static final String PAGES_FETCHED = "token.discovery.pages";
+
+	private static final String POLL_INTERVAL = "token.discovery.poll.interval";
+
+	private static final String PAGE_FILL_RATIO = "token.discovery.page.fill.ratio";
+
+	private static final String LAG = "token.discovery.lag";
+
+	private static final String SKIPPED_TICKS = "token.discovery.ticks.skipped";
+
+	private static final String TIMED_OUT_CYCLES = "token.discovery.cycles.timed.out";
+
+	private static final String SEEN_TRANSACTIONS = "token.discovery.transactions.seen";
+
+	private static final String ACCOUNT_LAST_MINT = "token.discovery.account.last.mint";
+
+	private static final String ACCOUNT_LAG = "token.discovery.account.lag";
+
+	private static final String ACCOUNT_MINTS = "token.discovery.account.mints";
+
+	private static final String ACCOUNT_ERRORS = "token.discovery.account.errors";
+
+	private static final String REQUESTS = "token.discovery.requests";
+
+	private static final String ACCOUNT_TAG = "account";
+
+	private static final String OPERATION_TAG = "operation";
+
+	private static final String OUTCOME_TAG = "outcome";
+
+	private static final String MINTED_TRANSACTIONS_EMITTER = "minted-transactions";
+
+	private final MeterRegistry meterRegistry;
+
+	private final AtomicLong pollIntervalMillis = new AtomicLong();
+
+	private volatile double pageFillRatio;
+
+	private final Timer lag;
+
+	private final Counter skippedTicks;
+
+	private final Counter timedOutCycles;
+
+	private final Counter seenTransactions;
+
+	private final Map<String, AccountProgress> accountProgress = new ConcurrentHashMap<>();
+
+	public DiscoveryMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+		Gauge.builder(POLL_INTERVAL, pollIntervalMillis, AtomicLong::get)
+				.description("Delay in milliseconds before the next discovery cycle").baseUnit("milliseconds")
+				.register(meterRegistry);
+		Gauge.builder(PAGE_FILL_RATIO, this, metrics -> metrics.pageFillRatio)
+				.description("Fill ratio of the last LedgerWorks page fetched by the latest discovery cycle")
+				.register(meterRegistry);
+		this.lag = Timer.builder(LAG).description("Time between the consensus of a mint and its discovery")
+				.register(meterRegistry);
+		this.skippedTicks = Counter.builder(SKIPPED_TICKS)
+				.description("Scheduler ticks skipped because a discovery cycle was still running")
+				.register(meterRegistry);
+		this.timedOutCycles = Counter.builder(TIMED_OUT_CYCLES)
+				.description("Discovery cycles cancelled for exceeding the cycle timeout").register(meterRegistry);
+		this.seenTransactions = Counter.builder(SEEN_TRANSACTIONS)
+				.description("Listed mint transactions skipped because they were already discovered")
+				.register(meterRegistry);
+	}
+
+	void recordPagesFetched(String treasuryAccountId, int pages) {
+		trackAccountMeter(treasuryAccountId,
+				DistributionSummary.builder(PAGES_FETCHED)
+						.description("LedgerWorks transaction pages fetched for a treasury account per discovery cycle")
+						.tag(ACCOUNT_TAG, treasuryAccountId).register(meterRegistry)).record(pages);
+	}
+
+	void recordCycle(DiscoveryCycle cycle) {
+		pageFillRatio = cycle.pageFillRatio();
+	}
+
+	void recordPollInterval(Duration interval) {
+		pollIntervalMillis.set(interval.toMillis());
+	}
+
+	void registerEmitter(EventEmitter<?> emitter) {
+		emitter.registerMetrics(meterRegistry, MINTED_TRANSACTIONS_EMITTER);
+	}
+
+	void recordSkippedTick() {
+		skippedTicks.increment();
+	}
+
+	void recordTimedOutCycle() {
+		timedOutCycles.increment();
+	}
+
+	void recordSeenTransaction() {
+		seenTransactions.increment();
+	}
+
+	/**
+	 * Records the consensus timestamp of a mint listed for a treasury account, whether or
+	 * not it was discovered before.
+	 */
+	void recordListedMint(String treasuryAccountId, String consensusTimestamp) {
+		getAccountProgress(treasuryAccountId).lastMint = ConsensusTimestamps.toInstant(consensusTimestamp);
+	}
+
+	/**
+	 * Records a completed poll of a treasury account. An account whose last page wasn't
+	 * full is caught up with the chain as of the start of the poll, otherwise it is only
+	 * caught up to its last listed mint.
+	 */
+	void recordAccountPolled(String treasuryAccountId, Instant pollStartedAt, boolean drained, long mints) {
+		AccountProgress progress = getAccountProgress(treasuryAccountId);
+		progress.caughtUpTo = drained ? pollStartedAt : progress.lastMint;
+		trackAccountMeter(treasuryAccountId,
+				DistributionSummary.builder(ACCOUNT_MINTS)
+						.description("Mints discovered for a treasury account per cycle")
+						.tag(ACCOUNT_TAG, treasuryAccountId).register(meterRegistry)).record(mints);
+	}
+
+	void recordAccountError(String treasuryAccountId) {
+		trackAccountMeter(treasuryAccountId,
+				Counter.builder(ACCOUNT_ERRORS).description("Discovery cycles of a treasury account ended by an error")
+						.tag(ACCOUNT_TAG, treasuryAccountId).register(meterRegistry)).increment();
+	}
+
+	/**
+	 * Times a LedgerWorks request made for a treasury account, tagging it with whether it
+	 * succeeded.
+	 */
+	<T> Function<Mono<T>, Mono<T>> timeRequest(String operation, String treasuryAccountId) {
+		return request -> Mono.defer(() -> {
+			Timer.Sample sample = Timer.start(meterRegistry);
+			return request.doOnSuccess(response -> stopRequest(sample, operation, treasuryAccountId, "success"))
+					.doOnError(throwable -> stopRequest(sample, operation, treasuryAccountId, "error"));
+		});
+	}
+
+	private void stopRequest(Timer.Sample sample, String operation, String treasuryAccountId, String outcome) {
+		sample.stop(trackAccountMeter(treasuryAccountId,
+				Timer.builder(REQUESTS).description("Latency of the LedgerWorks requests made by discovery")
+						.tag(OPERATION_TAG, operation).tag(ACCOUNT_TAG, treasuryAccountId).tag(OUTCOME_TAG, outcome)
+						.publishPercentileHistogram().register(meterRegistry)));
+	}
+
+	/**
+	 * Drops every meter tagged with a treasury account this node no longer polls, so the
+	 * registry doesn't grow with each account that moves away and the lag gauge doesn't
+	 * keep reporting a lag that grows forever. They are registered again if the account
+	 * comes back.
+	 */
+	void removeAccount(String treasuryAccountId) {
+		AccountProgress progress = accountProgress.remove(treasuryAccountId);
+		if (Objects.nonNull(progress)) {
+			progress.meters.forEach(meterRegistry::remove);
+		}
+	}
+
+	private <M extends Meter> M trackAccountMeter(String treasuryAccountId, M meter) {
+		getAccountProgress(treasuryAccountId).meters.add(meter);
+		return meter;
+	}
+
+	private AccountProgress getAccountProgress(String treasuryAccountId) {
+		return accountProgress.computeIfAbsent(treasuryAccountId, accountId -> {
+			AccountProgress progress = new AccountProgress();
+			progress.meters.add(Gauge.builder(ACCOUNT_LAST_MINT, progress, AccountProgress::getLastMintEpochSeconds)
+					.description("Consensus timestamp of the last mint listed for a treasury account")
+					.baseUnit("seconds").tag(ACCOUNT_TAG, accountId).register(meterRegistry));
+			progress.meters.add(Gauge.builder(ACCOUNT_LAG, progress, AccountProgress::getLagSeconds)
+					.description("How far discovery of a treasury account is behind the chain").baseUnit("seconds")
+					.tag(ACCOUNT_TAG, accountId).register(meterRegistry));
+			return progress;
+		});
+	}
+
+	void recordDiscoveryLag(String consensusTimestamp) {
+		if (Objects.nonNull(consensusTimestamp)) {
+			lag.record(Duration.between(ConsensusTimestamps.toInstant(consensusTimestamp), Instant.now()));
+		}
+	}
+
+	private static class AccountProgress {
+
+		private volatile Instant lastMint;
+
+		private volatile Instant caughtUpTo;
+
+		private final Set<Meter> meters = ConcurrentHashMap.newKeySet();
+
+		double getLastMintEpochSeconds() {
+			Instant mint = lastMint;
+			return Objects.isNull(mint) ? Double.NaN : mint.getEpochSecond() + mint.getNano() / 1e9;
+		}
+
+		double getLagSeconds() {
+			Instant position = Objects.isNull(caughtUpTo) ? lastMint : caughtUpTo;
+			return Objects.isNull(position) ? Double.NaN : Duration.between(position, Instant.now()).toMillis() / 1e3;
+		}
+
+	}
+
+}
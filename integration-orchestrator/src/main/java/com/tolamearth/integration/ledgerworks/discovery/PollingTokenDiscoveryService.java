@@ -17,66 +17,276 @@
 package com.tolamearth.integration.ledgerworks.discovery;
 
 import com.tolamearth.integration.core.EventEmitter;
+import com.tolamearth.integration.core.discovery.ConsensusTimestamps;
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpoint;
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpointRepository;
+import com.tolamearth.integration.core.sharding.ShardAssignment;
+import com.tolamearth.integration.ledgerworks.discovery.TokenDiscoveryConfiguration.TransferLookup;
 import com.tolamearth.integration.ledgerworks.http.LedgerWorksClient;
 import com.tolamearth.integration.ledgerworks.data.Transaction;
 import com.tolamearth.integration.ledgerworks.data.TransactionsResponse;
-import io.micronaut.context.annotation.Value;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.ArrayList;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAccumulator;
 
 @Slf4j
 @Singleton
 public class PollingTokenDiscoveryService implements TokenDiscoveryService {
 
+	static final String TOKEN_MINT = "TOKENMINT";
+
+	static final String ORDER_ASCENDING = "asc";
+
 	private final LedgerWorksClient ledgerWorksClient;
 
-	private final List<String> TOKEN_IDS;
+	private final TokenDiscoveryConfiguration configuration;
+
+	private final DiscoveryMetrics metrics;
+
+	private final DiscoveryCheckpointRepository checkpointRepository;
+
+	private final TreasuryAccountResolver treasuryAccountResolver;
 
-	private String lastTrackedTimestamp;
+	private final SeenTransactions seenTransactions;
 
-	private final List<String> treasuryAccountIds;
+	private final ShardAssignment shardAssignment;
+
+	private final Map<String, String> lastTrackedTimestamps;
+
+	private final Set<String> restoredTreasuryAccountIds;
 
 	private final Flux<Transaction> mintedTokens;
 
 	private final EventEmitter<Transaction> emitter;
 
-	public PollingTokenDiscoveryService(LedgerWorksClient ledgerWorksClient,
-			@Value("${token-discovery.token-ids}") List<String> tokenIds) {
+	public PollingTokenDiscoveryService(LedgerWorksClient ledgerWorksClient, TokenDiscoveryConfiguration configuration,
+			DiscoveryMetrics metrics, DiscoveryCheckpointRepository checkpointRepository,
+			TreasuryAccountResolver treasuryAccountResolver, SeenTransactions seenTransactions,
+			ShardAssignment shardAssignment) {
 
 		this.ledgerWorksClient = ledgerWorksClient;
-		this.TOKEN_IDS = tokenIds;
-		this.treasuryAccountIds = new ArrayList<>();
-		this.lastTrackedTimestamp = null;
-		this.emitter = new EventEmitter<>();
+		this.configuration = configuration;
+		this.metrics = metrics;
+		this.checkpointRepository = checkpointRepository;
+		this.treasuryAccountResolver = treasuryAccountResolver;
+		this.seenTransactions = seenTransactions;
+		this.shardAssignment = shardAssignment;
+		this.lastTrackedTimestamps = new ConcurrentHashMap<>();
+		this.restoredTreasuryAccountIds = ConcurrentHashMap.newKeySet();
+		this.emitter = new EventEmitter<>(configuration.bufferCapacity(), configuration.bufferOverflowStrategy(),
+				configuration.cycleTimeout());
+		metrics.registerEmitter(emitter);
 		this.mintedTokens = Flux.create(emitter::registerSink);
 	}
 
-	public void discoverMintedTokens() {
-		log.info("Discovering minted tokens...");
+	/**
+	 * Runs one discovery cycle over the treasury accounts in this node's shard. The cycle
+	 * starts on subscription and the returned {@link DiscoveryCycle} tells the scheduler
+	 * whether discovery is still behind. Treasury accounts that haven't been resolved yet
+	 * are resolved before polling starts.
+	 */
+	public Mono<DiscoveryCycle> discoverMintedTokens() {
+		return Mono.defer(() -> {
+			log.info("Discovering minted tokens...");
+
+			DoubleAccumulator pageFillRatio = new DoubleAccumulator(Math::max, 0);
+			return treasuryAccountResolver.getTokenIdsByTreasuryAccount()
+					.flatMapMany(tokenIdsByAccount -> Flux.fromIterable(tokenIdsByAccount.entrySet()))
+					.filter(account -> isInShard(account.getKey()))
+					.flatMap(account -> discoverMintedTransactions(account.getKey(), account.getValue(), pageFillRatio),
+							configuration.accountConcurrency())
+					.publishOn(Schedulers.boundedElastic()).doOnNext(listedTransaction -> {
+						if (!listedTransaction.seen()) {
+							Transaction finalTransaction = listedTransaction.transaction();
+							emitter.emit(finalTransaction);
+							metrics.recordDiscoveryLag(finalTransaction.consensusTimestamp());
+							log.info("Adding token mint transaction: {}", finalTransaction);
+						}
+					}).doOnNext(this::advanceCursor).filter(listedTransaction -> !listedTransaction.seen()).count()
+					.map(mintsDiscovered -> new DiscoveryCycle(mintsDiscovered, pageFillRatio.get()))
+					.doOnNext(metrics::recordCycle);
+		}).onErrorResume(throwable -> {
+			log.error("Error processing latest minted token transactions. Exception: ", throwable);
+			return Mono.just(DiscoveryCycle.EMPTY);
+		});
+	}
+
+	/**
+	 * Polls one treasury account from its own cursor. Errors end the account's poll for
+	 * this cycle without affecting the accounts polled alongside it. The fill ratio of
+	 * the last page fetched for the account is folded into {@code pageFillRatio}.
+	 * <p>
+	 * The cursor and seen transactions aren't touched here but once each transaction has
+	 * been emitted, so transactions dropped when a cycle times out are listed again.
+	 */
+	private Flux<ListedTransaction> discoverMintedTransactions(String treasuryAccountId, List<String> tokenIds,
+			DoubleAccumulator pageFillRatio) {
+		Instant pollStartedAt = Instant.now();
+		AtomicInteger pagesFetched = new AtomicInteger();
+		AtomicInteger mintsDiscovered = new AtomicInteger();
+		AtomicReference<Double> lastPageFillRatio = new AtomicReference<>(0d);
+
+		return getLastTrackedTimestamp(treasuryAccountId, tokenIds).flatMapMany(lastTrackedTimestamp -> {
+			log.info("Last tracked timestamp for treasury account {}: {}", treasuryAccountId,
+					lastTrackedTimestamp.orElse(null));
+			return getTransactionPages(treasuryAccountId, lastTrackedTimestamp.orElse(null),
+					configuration.pageBudget());
+		}).doOnNext(page -> {
+			pagesFetched.incrementAndGet();
+			lastPageFillRatio.set(getFillRatio(page));
+		}).doOnComplete(() -> pageFillRatio.accumulate(lastPageFillRatio.get()))
+				.doFinally(signal -> metrics.recordPagesFetched(treasuryAccountId, pagesFetched.get()))
+				.flatMapIterable(TransactionsResponse::transactions)
+				.flatMapSequential(listedTransaction -> listTransaction(treasuryAccountId, listedTransaction))
+				.doOnNext(listedTransaction -> {
+					if (!listedTransaction.seen()) {
+						mintsDiscovered.incrementAndGet();
+					}
+				}).doOnComplete(() -> metrics.recordAccountPolled(treasuryAccountId, pollStartedAt,
+						lastPageFillRatio.get() < 1, mintsDiscovered.get()))
+				.onErrorResume(throwable -> {
+					log.error("Error processing latest minted token transactions for treasury account {}. Exception: ",
+							treasuryAccountId, throwable);
+					metrics.recordAccountError(treasuryAccountId);
+					return Flux.empty();
+				});
+	}
+
+	/**
+	 * Tells whether this node polls a treasury account. Accounts that moved to another
+	 * node lose their in-memory cursor, so if they come back their cursor is restored
+	 * from the checkpoints the other node stored.
+	 */
+	private boolean isInShard(String treasuryAccountId) {
+		if (shardAssignment.owns(treasuryAccountId)) {
+			return true;
+		}
+		if (restoredTreasuryAccountIds.remove(treasuryAccountId)) {
+			log.info("Treasury account {} moved to another node", treasuryAccountId);
+		}
+		lastTrackedTimestamps.remove(treasuryAccountId);
+		metrics.removeAccount(treasuryAccountId);
+		return false;
+	}
 
-		if (treasuryAccountIds.isEmpty()) {
-			getTreasuryAccountIds();
+	/**
+	 * Returns the in-memory cursor of a treasury account. The first time an account is
+	 * polled the cursor is restored from the stored checkpoints of its tokens, taking the
+	 * oldest one so no token of the account is skipped.
+	 */
+	private Mono<Optional<String>> getLastTrackedTimestamp(String treasuryAccountId, List<String> tokenIds) {
+		if (lastTrackedTimestamps.containsKey(treasuryAccountId)
+				|| restoredTreasuryAccountIds.contains(treasuryAccountId)) {
+			return Mono.just(Optional.ofNullable(lastTrackedTimestamps.get(treasuryAccountId)));
 		}
+		return checkpointRepository.findByTokenIdIn(tokenIds).map(DiscoveryCheckpoint::getConsensusTimestamp)
+				.reduce(ConsensusTimestamps::min).doOnSuccess(checkpoint -> {
+					if (Objects.nonNull(checkpoint)) {
+						log.info("Restored discovery checkpoint {} for treasury account {}", checkpoint,
+								treasuryAccountId);
+						lastTrackedTimestamps.putIfAbsent(treasuryAccountId, checkpoint);
+					}
+					restoredTreasuryAccountIds.add(treasuryAccountId);
+				}).map(Optional::of).defaultIfEmpty(Optional.empty());
+	}
 
-		treasuryAccountIds.forEach(treasuryAccountId -> {
-			log.info("Last tracked timestamp: {}", lastTrackedTimestamp);
-
-			ledgerWorksClient.getTransactions(treasuryAccountId, "TOKENMINT", "asc", lastTrackedTimestamp)
-					.flatMapIterable(TransactionsResponse::transactions)
-					.flatMapSequential(
-							initialTransaction -> ledgerWorksClient.getTransaction(initialTransaction.transactionId()))
-					.flatMapIterable(TransactionsResponse::transactions)
-					.doOnNext(initialTransaction -> lastTrackedTimestamp = initialTransaction.consensusTimestamp())
-					.subscribe(finalTransaction -> {
-						emitter.emit(finalTransaction);
-						log.info("Adding token mint transaction: {}", finalTransaction);
-					}, throwable -> log.error("Error processing latest minted token transactions. Exception: ",
-							throwable));
-		});
+	/**
+	 * Passes transactions emitted before straight through as seen, so they still move the
+	 * cursor in listing order but skip the transfer lookup.
+	 */
+	private Flux<ListedTransaction> listTransaction(String treasuryAccountId, Transaction listedTransaction) {
+		if (seenTransactions.isSeen(treasuryAccountId, listedTransaction)) {
+			log.debug("Skipping transaction {} already discovered", listedTransaction.transactionId());
+			metrics.recordSeenTransaction();
+			return Flux.just(new ListedTransaction(treasuryAccountId, listedTransaction, true));
+		}
+		return resolveNftTransfers(listedTransaction, treasuryAccountId)
+				.map(transaction -> new ListedTransaction(treasuryAccountId, transaction, false));
+	}
+
+	/**
+	 * Uses the NFT transfers carried by the transaction listing, looking the transaction
+	 * up again only when the listing left them out.
+	 */
+	Flux<Transaction> resolveNftTransfers(Transaction listedTransaction, String treasuryAccountId) {
+		if (TransferLookup.WHEN_MISSING.equals(configuration.transferLookup())
+				&& Objects.nonNull(listedTransaction.nftTransfers()) && !listedTransaction.nftTransfers().isEmpty()) {
+			return Flux.just(listedTransaction);
+		}
+		return ledgerWorksClient.getTransaction(listedTransaction.transactionId())
+				.transform(metrics.timeRequest("getTransaction", treasuryAccountId))
+				.flatMapIterable(TransactionsResponse::transactions);
+	}
+
+	/**
+	 * Moves the cursor of a treasury account past a listed transaction, recording it as
+	 * seen if it was emitted.
+	 */
+	private void advanceCursor(ListedTransaction listedTransaction) {
+		if (!listedTransaction.seen()) {
+			seenTransactions.markSeen(listedTransaction.treasuryAccountId(), listedTransaction.transaction());
+		}
+		trackTimestamp(listedTransaction.treasuryAccountId(), listedTransaction.transaction());
+	}
+
+	private void trackTimestamp(String treasuryAccountId, Transaction transaction) {
+		if (Objects.nonNull(transaction.consensusTimestamp())) {
+			lastTrackedTimestamps.put(treasuryAccountId, transaction.consensusTimestamp());
+			metrics.recordListedMint(treasuryAccountId, transaction.consensusTimestamp());
+		}
+	}
+
+	/**
+	 * Follows the {@code links.next} chain of the mint listing until a page comes back
+	 * empty or without a next link, fetching at most {@code remainingPages} pages.
+	 */
+	private Flux<TransactionsResponse> getTransactionPages(String treasuryAccountId, String timestamp,
+			int remainingPages) {
+		return ledgerWorksClient
+				.getTransactions(treasuryAccountId, TOKEN_MINT, ORDER_ASCENDING, configuration.pageLimit(), timestamp)
+				.transform(metrics.timeRequest("getTransactions", treasuryAccountId)).flatMapMany(page -> {
+					Optional<String> nextTimestamp = getNextTimestamp(page);
+					if (remainingPages <= 1 || nextTimestamp.isEmpty()) {
+						return Flux.just(page);
+					}
+					return Flux.just(page).concatWith(
+							getTransactionPages(treasuryAccountId, nextTimestamp.get(), remainingPages - 1));
+				});
+	}
+
+	private double getFillRatio(TransactionsResponse page) {
+		if (Objects.isNull(page.transactions())) {
+			return 0;
+		}
+		return Math.min(1d, (double) page.transactions().size() / configuration.pageLimit());
+	}
+
+	static Optional<String> getNextTimestamp(TransactionsResponse page) {
+		if (Objects.isNull(page.transactions()) || page.transactions().isEmpty() || Objects.isNull(page.links())) {
+			return Optional.empty();
+		}
+		return page.links().nextTimestamp();
+	}
+
+	/**
+	 * Hands a transaction found by a backfill to the minted transaction stream. Backfills
+	 * keep their own checkpoints, so the account cursors are left untouched.
+	 */
+	void emitBackfilledTransaction(Transaction transaction) {
+		emitter.emit(transaction);
 	}
 
 	@Override
@@ -84,12 +294,7 @@ public class PollingTokenDiscoveryService implements TokenDiscoveryService {
 		return mintedTokens;
 	}
 
-	private void getTreasuryAccountIds() {
-		TOKEN_IDS.forEach(tokenId -> {
-			ledgerWorksClient.getToken(tokenId).subscribe(token -> treasuryAccountIds.add(token.treasuryAccountId()),
-					throwable -> log.error("Error fetching treasury account Ids from ledger works API. Exception: ",
-							throwable));
-		});
+	private record ListedTransaction(String treasuryAccountId, Transaction transaction, boolean seen) {
 	}
 
 }
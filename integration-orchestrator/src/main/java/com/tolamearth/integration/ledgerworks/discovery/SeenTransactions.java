@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.core.discovery.ConsensusTimestamps;
+import com.tolamearth.integration.ledgerworks.data.Transaction;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which mint transactions discovery has already emitted, so replays caused by a
+ * cursor reset or an overlapping poll are dropped before the transfer lookup and never
+ * reach enrichment.
+ * <p>
+ * Recent transactions are kept by ID in an LRU of {@code capacity} entries. Older ones
+ * are covered by a per-account watermark: listings are read in ascending consensus order,
+ * so anything at or before the last timestamp emitted for an account has been emitted
+ * already. Neither check can report a new transaction as seen, which a Bloom filter
+ * could.
+ */
+@Singleton
+public class SeenTransactions {
+
+	private final Map<String, Boolean> recentTransactionIds;
+
+	private final Map<String, String> watermarks = new ConcurrentHashMap<>();
+
+	public SeenTransactions(@Value("${token-discovery.seen-transactions.capacity}") int capacity) {
+		this.recentTransactionIds = new LinkedHashMap<>(capacity, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Tells whether a transaction listed for a treasury account was emitted before.
+	 */
+	boolean isSeen(String treasuryAccountId, Transaction transaction) {
+		String watermark = watermarks.get(treasuryAccountId);
+		if (Objects.nonNull(watermark) && Objects.nonNull(transaction.consensusTimestamp())
+				&& !ConsensusTimestamps.isAfter(transaction.consensusTimestamp(), watermark)) {
+			return true;
+		}
+		if (Objects.isNull(transaction.transactionId())) {
+			return false;
+		}
+		synchronized (recentTransactionIds) {
+			return Objects.nonNull(recentTransactionIds.get(transaction.transactionId()));
+		}
+	}
+
+	/**
+	 * Records a transaction once it has been emitted.
+	 */
+	void markSeen(String treasuryAccountId, Transaction transaction) {
+		if (Objects.nonNull(transaction.consensusTimestamp())) {
+			watermarks.merge(treasuryAccountId, transaction.consensusTimestamp(), ConsensusTimestamps::max);
+		}
+		if (Objects.nonNull(transaction.transactionId())) {
+			synchronized (recentTransactionIds) {
+				recentTransactionIds.put(transaction.transactionId(), Boolean.TRUE);
+			}
+		}
+	}
+
+}
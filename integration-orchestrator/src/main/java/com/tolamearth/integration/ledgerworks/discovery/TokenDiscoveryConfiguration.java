@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.core.EventEmitter.OverflowStrategy;
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Token discovery settings.
+ * @param pageLimit Number of transactions requested per LedgerWorks page (at most 100)
+ * @param pageBudget Maximum number of pages followed per treasury account in a single
+ * discovery cycle, so one large backlog can't starve the other accounts
+ * @param accountConcurrency Maximum number of treasury accounts polled in parallel
+ * @param transferLookup When to look a listed mint transaction up again to read its NFT
+ * transfers
+ * @param pollInterval Delay between discovery cycles while mints keep arriving
+ * @param maxPollInterval Ceiling the delay backs off to while no mints arrive
+ * @param backoffMultiplier Factor the delay grows by after each idle cycle
+ * @param cycleTimeout Time after which a discovery cycle still running is cancelled
+ * @param bufferCapacity Number of discovered transactions held until the publisher
+ * requests them
+ * @param bufferOverflowStrategy What discovery does when the buffer is full. A blocked
+ * cycle fails once it has waited {@code cycleTimeout}
+ */
+@ConfigurationProperties("token-discovery")
+public record TokenDiscoveryConfiguration(@NonNull Integer pageLimit, @NonNull Integer pageBudget,
+		@NonNull Integer accountConcurrency, @NonNull TransferLookup transferLookup, @NonNull Duration pollInterval,
+		@NonNull Duration maxPollInterval, @NonNull Double backoffMultiplier, @NonNull Duration cycleTimeout,
+		@NonNull Integer bufferCapacity, @NonNull OverflowStrategy bufferOverflowStrategy) {
+
+	public enum TransferLookup {
+
+		/**
+		 * Use the NFT transfers of the transaction listing and only look up transactions
+		 * listed without them.
+		 */
+		WHEN_MISSING,
+
+		/**
+		 * Look up every listed transaction.
+		 */
+		ALWAYS
+
+	}
+
+}
@@ -16,11 +16,31 @@
 
 package com.tolamearth.integration.ledgerworks.discovery;
 
+import com.tolamearth.integration.core.leadership.LeaderElection;
+import com.tolamearth.integration.core.sharding.ShardAssignment;
 import io.micronaut.scheduling.annotation.Scheduled;
 import jakarta.inject.Singleton;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs discovery cycles on an adaptive interval. The scheduler ticks at
+ * {@code token-discovery.tick-interval} but only starts a cycle once the current interval
+ * has passed. Idle cycles back the interval off towards
+ * {@code token-discovery.max-poll-interval}, cycles that discover mints reset it to
+ * {@code token-discovery.poll-interval}, and a full page polls again on the next tick.
+ * <p>
+ * Only one cycle runs at a time. Ticks that come due while a cycle is still in flight are
+ * skipped, and cycles running longer than {@code token-discovery.cycle-timeout} are
+ * cancelled. When several replicas run, either every replica polls its
+ * {@link ShardAssignment shard} of the treasury accounts or, without sharding, only the
+ * {@link LeaderElection leader} polls.
+ */
 @Slf4j
 @Singleton
 @RequiredArgsConstructor
@@ -28,9 +48,63 @@ public class TokenDiscoveryScheduler {
 
 	private final PollingTokenDiscoveryService tokenDiscoveryService;
 
-	@Scheduled(initialDelay = "2s", fixedDelay = "${token-discovery.poll-interval}")
+	private final TokenDiscoveryConfiguration configuration;
+
+	private final DiscoveryMetrics metrics;
+
+	private final LeaderElection leaderElection;
+
+	private final ShardAssignment shardAssignment;
+
+	private volatile Duration pollInterval = Duration.ZERO;
+
+	private volatile Instant nextPollAt = Instant.MIN;
+
+	private final AtomicBoolean cycleInFlight = new AtomicBoolean();
+
+	@Scheduled(initialDelay = "2s", fixedDelay = "${token-discovery.tick-interval}")
 	public void discoverTokens() {
-		tokenDiscoveryService.discoverMintedTokens();
+		if (!(shardAssignment.isEnabled() || leaderElection.isLeader()) || Instant.now().isBefore(nextPollAt)) {
+			return;
+		}
+		if (!cycleInFlight.compareAndSet(false, true)) {
+			log.debug("Skipping discovery tick, the previous cycle is still running");
+			metrics.recordSkippedTick();
+			return;
+		}
+		nextPollAt = Instant.now().plus(configuration.pollInterval());
+		tokenDiscoveryService.discoverMintedTokens().timeout(configuration.cycleTimeout())
+				.doFinally(signal -> cycleInFlight.set(false))
+				.subscribe(this::scheduleNextPoll, this::handleFailedCycle);
+	}
+
+	private void handleFailedCycle(Throwable throwable) {
+		if (throwable instanceof TimeoutException) {
+			log.warn("Discovery cycle cancelled after {}", configuration.cycleTimeout());
+			metrics.recordTimedOutCycle();
+		}
+		else {
+			log.error("Discovery cycle failed. Exception: ", throwable);
+		}
+		scheduleNextPoll(DiscoveryCycle.EMPTY);
+	}
+
+	private void scheduleNextPoll(DiscoveryCycle cycle) {
+		pollInterval = getNextPollInterval(cycle);
+		nextPollAt = Instant.now().plus(pollInterval);
+		metrics.recordPollInterval(pollInterval);
+		log.debug("Next discovery cycle in {} after discovering {} mints", pollInterval, cycle.mintsDiscovered());
+	}
+
+	private Duration getNextPollInterval(DiscoveryCycle cycle) {
+		if (cycle.isBacklogged()) {
+			return Duration.ZERO;
+		}
+		if (cycle.mintsDiscovered() > 0 || pollInterval.compareTo(configuration.pollInterval()) < 0) {
+			return configuration.pollInterval();
+		}
+		long backedOffMillis = (long) (pollInterval.toMillis() * configuration.backoffMultiplier());
+		return Duration.ofMillis(Math.min(backedOffMillis, configuration.maxPollInterval().toMillis()));
 	}
 
 }
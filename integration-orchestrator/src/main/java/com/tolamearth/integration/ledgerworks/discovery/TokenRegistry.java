@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.core.discovery.RegisteredToken;
+import com.tolamearth.integration.core.discovery.RegisteredTokenRepository;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.StartupEvent;
+import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Tokens whose mints are discovered, stored in Postgres so collections can be added or
+ * removed at runtime. Readers get an immutable hash set that is replaced as a whole
+ * whenever the registry changes, so lookups never lock and never see a half-applied
+ * change.
+ * <p>
+ * The tokens in {@code token-discovery.token-ids} are registered on startup unless the
+ * registry already knows them, so a seed token that was deregistered stays removed.
+ * Changes made through this node apply at once, and changes made through other replicas
+ * are picked up every {@code token-discovery.registry.refresh-interval}. If the database
+ * isn't reachable on startup, the seed tokens are registered on the first refresh that
+ * reaches it.
+ */
+@Slf4j
+@Singleton
+public class TokenRegistry {
+
+	private final RegisteredTokenRepository repository;
+
+	private final List<String> seedTokenIds;
+
+	private final AtomicReference<Set<String>> tokenIds;
+
+	private final AtomicBoolean seeded = new AtomicBoolean();
+
+	public TokenRegistry(RegisteredTokenRepository repository,
+			@Value("${token-discovery.token-ids}") List<String> seedTokenIds) {
+		this.repository = repository;
+		this.seedTokenIds = List.copyOf(seedTokenIds);
+		this.tokenIds = new AtomicReference<>(Set.copyOf(seedTokenIds));
+	}
+
+	@EventListener
+	public void onStartupEvent(StartupEvent event) {
+		seedAndLoad().subscribe(null,
+				throwable -> log.error("Error loading the token registry. Exception: ", throwable));
+	}
+
+	public Set<String> getTokenIds() {
+		return tokenIds.get();
+	}
+
+	public boolean contains(String tokenId) {
+		return tokenIds.get().contains(tokenId);
+	}
+
+	/**
+	 * Adds a token to the registry, emitting whether it wasn't registered yet.
+	 */
+	public Mono<Boolean> register(String tokenId) {
+		return repository.findById(tokenId).flatMap(registered -> {
+			if (Objects.isNull(registered.getDeregisteredAt())) {
+				return Mono.just(false);
+			}
+			registered.setRegisteredAt(Instant.now());
+			registered.setDeregisteredAt(null);
+			return repository.update(registered).thenReturn(true);
+		}).switchIfEmpty(Mono.defer(() -> save(tokenId))).doOnNext(added -> {
+			update(current -> {
+				Set<String> updated = new HashSet<>(current);
+				updated.add(tokenId);
+				return updated;
+			});
+			if (added) {
+				log.info("Registered token {}", tokenId);
+			}
+		});
+	}
+
+	/**
+	 * Removes a token from the registry, emitting whether it was registered.
+	 */
+	public Mono<Boolean> deregister(String tokenId) {
+		return repository.findById(tokenId).filter(registered -> Objects.isNull(registered.getDeregisteredAt()))
+				.flatMap(registered -> {
+					registered.setDeregisteredAt(Instant.now());
+					return repository.update(registered).thenReturn(true);
+				}).defaultIfEmpty(false).doOnNext(removed -> {
+					update(current -> current.stream().filter(registered -> !registered.equals(tokenId))
+							.collect(Collectors.toSet()));
+					if (removed) {
+						log.info("Deregistered token {}", tokenId);
+					}
+				});
+	}
+
+	/**
+	 * Reloads the registry to pick up changes made through other replicas, first
+	 * registering the seed tokens if that failed so far. A failed reload keeps the
+	 * current tokens and is retried on the next refresh.
+	 */
+	@Scheduled(fixedDelay = "${token-discovery.registry.refresh-interval}",
+			initialDelay = "${token-discovery.registry.refresh-interval}")
+	void refresh() {
+		(seeded.get() ? load() : seedAndLoad()).subscribe(null,
+				throwable -> log.error("Error reloading the token registry. Exception: ", throwable));
+	}
+
+	private Mono<Void> seedAndLoad() {
+		return Flux.fromIterable(seedTokenIds).concatMap(this::seed).then(Mono.fromRunnable(() -> seeded.set(true)))
+				.then(Mono.defer(this::load));
+	}
+
+	private Mono<Void> load() {
+		return repository.findByDeregisteredAtIsNull().map(RegisteredToken::getTokenId).collect(Collectors.toSet())
+				.doOnNext(loadedIds -> {
+					Set<String> previous = tokenIds.getAndSet(Set.copyOf(loadedIds));
+					if (!previous.equals(loadedIds)) {
+						log.info("Loaded {} registered tokens", loadedIds.size());
+					}
+				}).then();
+	}
+
+	/**
+	 * Registers a seed token the registry has never seen, leaving deregistered ones
+	 * alone.
+	 */
+	private Mono<Boolean> seed(String tokenId) {
+		return repository.existsById(tokenId).flatMap(exists -> exists ? Mono.just(false) : save(tokenId));
+	}
+
+	private Mono<Boolean> save(String tokenId) {
+		return repository.save(new RegisteredToken(tokenId, Instant.now(), null)).thenReturn(true);
+	}
+
+	private void update(UnaryOperator<Set<String>> change) {
+		tokenIds.updateAndGet(current -> Set.copyOf(change.apply(current)));
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Treasury account resolution settings.
+ * @param ttl How long resolved treasury accounts are used before they are refreshed in
+ * the background
+ * @param concurrency Maximum number of token lookups in flight while resolving
+ */
+@ConfigurationProperties("token-discovery.treasury-accounts")
+public record TreasuryAccountConfiguration(@NonNull Duration ttl, @NonNull Integer concurrency) {
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.ledgerworks.data.TokenResponse;
+import com.tolamearth.integration.ledgerworks.http.LedgerWorksClient;
+import io.micronaut.context.event.StartupEvent;
+import io.micronaut.runtime.event.annotation.EventListener;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the treasury account of every {@link TokenRegistry registered} token. All tokens
+ * are looked up concurrently when the application starts, and callers asking for the
+ * accounts before that lookup finishes wait for it instead of seeing an empty cache. Once
+ * the TTL has passed the cache keeps answering from the previous lookup while it is
+ * refreshed in the background. Tokens registered later are looked up on the next call,
+ * and deregistered tokens are dropped.
+ */
+@Slf4j
+@Singleton
+public class TreasuryAccountResolver {
+
+	private final LedgerWorksClient ledgerWorksClient;
+
+	private final TreasuryAccountConfiguration configuration;
+
+	private final TokenRegistry tokenRegistry;
+
+	private final Map<String, String> treasuryAccountIds = new ConcurrentHashMap<>();
+
+	private final AtomicReference<Mono<Void>> inFlightResolution = new AtomicReference<>();
+
+	private volatile Instant refreshAt = Instant.MIN;
+
+	public TreasuryAccountResolver(LedgerWorksClient ledgerWorksClient, TreasuryAccountConfiguration configuration,
+			TokenRegistry tokenRegistry) {
+		this.ledgerWorksClient = ledgerWorksClient;
+		this.configuration = configuration;
+		this.tokenRegistry = tokenRegistry;
+	}
+
+	@EventListener
+	public void onStartupEvent(StartupEvent event) {
+		resolve(tokenRegistry.getTokenIds()).subscribe();
+	}
+
+	/**
+	 * Returns the resolved treasury account of each registered token, keyed by token ID.
+	 * Tokens whose account hasn't been resolved yet are looked up before the returned
+	 * {@link Mono} completes; tokens that still can't be resolved are left out and tried
+	 * again on the next call.
+	 */
+	public Mono<Map<String, String>> getTreasuryAccountIds() {
+		Set<String> tokenIds = tokenRegistry.getTokenIds();
+		treasuryAccountIds.keySet().retainAll(tokenIds);
+		List<String> unresolvedTokenIds = tokenIds.stream().filter(tokenId -> !treasuryAccountIds.containsKey(tokenId))
+				.toList();
+		if (!unresolvedTokenIds.isEmpty()) {
+			return resolve(unresolvedTokenIds).then(Mono.fromSupplier(() -> Map.copyOf(treasuryAccountIds)));
+		}
+		if (Instant.now().isAfter(refreshAt)) {
+			resolve(tokenIds).subscribe();
+		}
+		return Mono.just(Map.copyOf(treasuryAccountIds));
+	}
+
+	/**
+	 * Groups the registered tokens by their resolved treasury account.
+	 */
+	public Mono<Map<String, List<String>>> getTokenIdsByTreasuryAccount() {
+		return getTreasuryAccountIds().map(accounts -> accounts.entrySet().stream().collect(Collectors
+				.groupingBy(Map.Entry::getValue, Collectors.mapping(Map.Entry::getKey, Collectors.toList()))));
+	}
+
+	/**
+	 * Looks the given tokens up with at most {@code concurrency} requests in flight. Only
+	 * one resolution runs at a time; callers arriving while one is running share it.
+	 */
+	private Mono<Void> resolve(Collection<String> tokenIdsToResolve) {
+		return inFlightResolution.updateAndGet(current -> Objects.nonNull(current) ? current
+				: Flux.fromIterable(tokenIdsToResolve)
+						.flatMap(this::resolveTreasuryAccount, configuration.concurrency()).then()
+						.doOnSuccess(ignored -> refreshAt = Instant.now().plus(configuration.ttl()))
+						.doFinally(signal -> inFlightResolution.set(null)).cache());
+	}
+
+	private Mono<String> resolveTreasuryAccount(String tokenId) {
+		return Mono.defer(() -> ledgerWorksClient.getToken(tokenId)).map(TokenResponse::treasuryAccountId)
+				.doOnNext(treasuryAccountId -> treasuryAccountIds.put(tokenId, treasuryAccountId))
+				.onErrorResume(throwable -> {
+					log.error("Error fetching treasury account Id of token {} from ledger works API. Exception: ",
+							tokenId, throwable);
+					return Mono.empty();
+				});
+	}
+
+}
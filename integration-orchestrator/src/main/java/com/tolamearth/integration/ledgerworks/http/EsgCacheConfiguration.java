@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+
+import java.time.Duration;
+
+/**
+ * ESG NFT details cache settings.
+ * @param maximumSize Most NFTs whose details are kept
+ * @param ttl How long the details of an NFT are kept after they were fetched
+ * @param notFoundTtl How long an NFT that ESG doesn't know is remembered as missing
+ * @param snapshotFile File the cached details are saved to on shutdown and loaded from on
+ * startup; when blank the cache starts empty
+ */
+@ConfigurationProperties("esg-cache")
+public record EsgCacheConfiguration(@NonNull Long maximumSize, @NonNull Duration ttl, @NonNull Duration notFoundTtl,
+		@Nullable String snapshotFile) {
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Circuit breaker in front of the ESG API. The circuit opens when at least
+ * {@code failureRateThreshold} of the last {@code failureWindow} requests failed, and
+ * while it is open requests wait rather than fail, so enrichment pauses during an ESG
+ * outage instead of dropping every token of the backlog. After {@code openDuration} a
+ * single trial request is let through; its outcome closes the circuit or opens it again.
+ * <p>
+ * Every transition starts a new generation, and a permit carries the generation it was
+ * taken in. Outcomes of requests let through in an earlier generation are ignored, so a
+ * slow request sent while the circuit was closed can't decide the trial or count towards
+ * the failure rate of a circuit that has closed again since.
+ * <p>
+ * Only server errors and failures to reach ESG count as failures. A 4xx response, such as
+ * 404 Not Found for an NFT ESG hasn't indexed yet, shows that ESG is up.
+ */
+@Slf4j
+@Singleton
+public class EsgCircuitBreaker {
+
+	public enum State {
+
+		CLOSED, HALF_OPEN, OPEN
+
+	}
+
+	private final EsgResilienceConfiguration configuration;
+
+	private final LongSupplier nanoClock;
+
+	private final boolean[] outcomes;
+
+	private final Map<State, Counter> transitions;
+
+	private int nextOutcome;
+
+	private int recordedOutcomes;
+
+	private int failures;
+
+	private State state = State.CLOSED;
+
+	private long generation;
+
+	private long openUntilNanos;
+
+	private boolean trialInFlight;
+
+	private Sinks.Empty<Void> stateChange = Sinks.empty();
+
+	@Inject
+	public EsgCircuitBreaker(EsgResilienceConfiguration configuration, MeterRegistry meterRegistry) {
+		this(configuration, meterRegistry, System::nanoTime);
+	}
+
+	EsgCircuitBreaker(EsgResilienceConfiguration configuration, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+		this.configuration = configuration;
+		this.nanoClock = nanoClock;
+		this.outcomes = new boolean[configuration.failureWindow()];
+		this.transitions = Stream.of(State.values())
+				.collect(Collectors.toMap(state -> state,
+						state -> Counter.builder("esg.circuit.transitions")
+								.description("Transitions of the ESG circuit breaker into a state")
+								.tag("state", state.name().toLowerCase()).register(meterRegistry)));
+		Gauge.builder("esg.circuit.state", this, breaker -> breaker.getState().ordinal())
+				.description("State of the ESG circuit breaker: 0 closed, 1 half open, 2 open").register(meterRegistry);
+	}
+
+	/**
+	 * Emits the generation of a permit once a request may be sent to ESG. The outcome of
+	 * the request is recorded with that generation.
+	 */
+	public Mono<Long> acquire() {
+		return Mono.defer(() -> {
+			synchronized (this) {
+				return reserve().map(wait -> wait.then(acquire())).orElseGet(() -> Mono.just(generation));
+			}
+		});
+	}
+
+	public void recordSuccess(long permitGeneration) {
+		record(permitGeneration, false);
+	}
+
+	public void recordFailure(long permitGeneration) {
+		record(permitGeneration, true);
+	}
+
+	/**
+	 * Gives up a permit whose request was cancelled before ESG answered.
+	 */
+	public synchronized void release(long permitGeneration) {
+		if (permitGeneration == generation && state == State.HALF_OPEN && trialInFlight) {
+			trialInFlight = false;
+			signalStateChange();
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Takes a permit, or returns what to wait for before asking again.
+	 */
+	synchronized Optional<Mono<Void>> reserve() {
+		if (state == State.OPEN) {
+			long untilHalfOpen = openUntilNanos - nanoClock.getAsLong();
+			if (untilHalfOpen > 0) {
+				return Optional.of(Mono.delay(Duration.ofNanos(untilHalfOpen)).then());
+			}
+			transition(State.HALF_OPEN);
+		}
+		if (state == State.HALF_OPEN) {
+			if (trialInFlight) {
+				return Optional.of(stateChange.asMono());
+			}
+			trialInFlight = true;
+		}
+		return Optional.empty();
+	}
+
+	private synchronized void record(long permitGeneration, boolean failure) {
+		if (permitGeneration != generation) {
+			return;
+		}
+		switch (state) {
+			case HALF_OPEN -> {
+				trialInFlight = false;
+				transition(failure ? State.OPEN : State.CLOSED);
+			}
+			case CLOSED -> {
+				if (recordedOutcomes == outcomes.length) {
+					failures -= outcomes[nextOutcome] ? 1 : 0;
+				}
+				else {
+					recordedOutcomes++;
+				}
+				outcomes[nextOutcome] = failure;
+				failures += failure ? 1 : 0;
+				nextOutcome = (nextOutcome + 1) % outcomes.length;
+				if (recordedOutcomes == outcomes.length
+						&& failures >= configuration.failureRateThreshold() * outcomes.length) {
+					transition(State.OPEN);
+				}
+			}
+			case OPEN -> {
+				// No permits are handed out while the circuit is open
+			}
+		}
+	}
+
+	private void transition(State next) {
+		if (next == State.OPEN) {
+			openUntilNanos = nanoClock.getAsLong() + configuration.openDuration().toNanos();
+			log.warn("ESG requests keep failing, pausing them for {}", configuration.openDuration());
+		}
+		else if (next == State.CLOSED) {
+			nextOutcome = 0;
+			recordedOutcomes = 0;
+			failures = 0;
+			log.info("ESG requests are succeeding again, resuming them");
+		}
+		state = next;
+		generation++;
+		transitions.get(next).increment();
+		signalStateChange();
+	}
+
+	private void signalStateChange() {
+		Sinks.Empty<Void> waiters = stateChange;
+		stateChange = Sinks.empty();
+		waiters.tryEmitEmpty();
+	}
+
+}
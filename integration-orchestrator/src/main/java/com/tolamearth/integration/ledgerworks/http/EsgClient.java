@@ -16,16 +16,15 @@
 
 package com.tolamearth.integration.ledgerworks.http;
 
+import com.tolamearth.integration.ledgerworks.data.EsgNftDetails;
 import io.micronaut.http.annotation.Get;
 import io.micronaut.http.client.annotation.Client;
 import reactor.core.publisher.Mono;
 
-import java.util.Map;
-
 @Client("${esg-url}")
 public interface EsgClient {
 
 	@Get("/tokens/{tokenId}/nfts/{serialNumber}")
-	Mono<Map> getNftDetails(String tokenId, long serialNumber);
+	Mono<EsgNftDetails> getNftDetails(String tokenId, long serialNumber);
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.tolamearth.integration.ledgerworks.data.EsgNftDetails;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Caches the ESG details of each NFT in front of {@link ResilientEsgClient}. The details
+ * of a serial don't change once it is minted, so replayed and reprocessed tokens are
+ * served from memory. Concurrent requests for the same NFT share one ESG request, and
+ * failed requests aren't cached, except for 404 Not Found, which is remembered for
+ * {@code esg-cache.not-found-ttl} so NFTs ESG hasn't indexed yet are retried soon.
+ * <p>
+ * When {@code esg-cache.snapshot-file} is set the cached details survive restarts.
+ */
+@Slf4j
+@Singleton
+public class EsgNftDetailsCache {
+
+	private static final String CACHE_NAME = "esg.nft.details";
+
+	private final ResilientEsgClient esgClient;
+
+	private final EsgCacheConfiguration configuration;
+
+	private final ObjectMapper objectMapper;
+
+	private final AsyncCache<NftKey, NftDetails> cache;
+
+	public EsgNftDetailsCache(ResilientEsgClient esgClient, EsgCacheConfiguration configuration,
+			ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+		this.esgClient = esgClient;
+		this.configuration = configuration;
+		this.objectMapper = objectMapper;
+		this.cache = Caffeine.newBuilder().maximumSize(configuration.maximumSize()).expireAfter(new NftDetailsExpiry())
+				.recordStats().buildAsync();
+		new CaffeineCacheMetrics<>(cache.synchronous(), CACHE_NAME, Tags.empty()).bindTo(meterRegistry);
+	}
+
+	/**
+	 * Returns the ESG details of an NFT, failing the same way {@link EsgClient} does when
+	 * ESG doesn't know the NFT.
+	 */
+	public Mono<EsgNftDetails> getNftDetails(String tokenId, long serialNumber) {
+		return Mono.fromFuture(
+				() -> cache.get(new NftKey(tokenId, serialNumber), (key, executor) -> fetchNftDetails(key).toFuture()))
+				.flatMap(details -> details.notFound().<Mono<EsgNftDetails>>map(Mono::error)
+						.orElseGet(() -> Mono.just(details.details())));
+	}
+
+	private Mono<NftDetails> fetchNftDetails(NftKey key) {
+		return esgClient.getNftDetails(key.tokenId(), key.serialNumber()).map(NftDetails::found).onErrorResume(
+				HttpClientResponseException.class,
+				e -> HttpStatus.NOT_FOUND.equals(e.getStatus()) ? Mono.just(NftDetails.notFound(e)) : Mono.error(e));
+	}
+
+	@PostConstruct
+	void loadSnapshot() {
+		Optional<Path> snapshotFile = getSnapshotFile().filter(Files::exists);
+		if (snapshotFile.isEmpty()) {
+			return;
+		}
+		try {
+			List<SnapshotEntry> entries = objectMapper.readValue(snapshotFile.get().toFile(), new TypeReference<>() {
+			});
+			entries.forEach(entry -> cache.put(new NftKey(entry.tokenId(), entry.serialNumber()),
+					CompletableFuture.completedFuture(NftDetails.found(entry.details()))));
+			log.info("Loaded the ESG details of {} NFTs from {}", entries.size(), snapshotFile.get());
+		}
+		catch (IOException e) {
+			log.warn("Could not load ESG details from {}. Exception: ", snapshotFile.get(), e);
+		}
+	}
+
+	@PreDestroy
+	void saveSnapshot() {
+		Optional<Path> snapshotFile = getSnapshotFile();
+		if (snapshotFile.isEmpty()) {
+			return;
+		}
+		List<SnapshotEntry> entries = cache.synchronous().asMap().entrySet().stream()
+				.filter(entry -> entry.getValue().notFound().isEmpty())
+				.map(entry -> new SnapshotEntry(entry.getKey().tokenId(), entry.getKey().serialNumber(),
+						entry.getValue().details()))
+				.toList();
+		try {
+			Path temporaryFile = Files.createTempFile(snapshotFile.get().toAbsolutePath().getParent(), "esg-cache",
+					".tmp");
+			objectMapper.writeValue(temporaryFile.toFile(), entries);
+			Files.move(temporaryFile, snapshotFile.get(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			log.info("Saved the ESG details of {} NFTs to {}", entries.size(), snapshotFile.get());
+		}
+		catch (IOException e) {
+			log.warn("Could not save ESG details to {}. Exception: ", snapshotFile.get(), e);
+		}
+	}
+
+	private Optional<Path> getSnapshotFile() {
+		return Optional.ofNullable(configuration.snapshotFile()).filter(file -> !file.isBlank()).map(Path::of);
+	}
+
+	private record NftKey(String tokenId, long serialNumber) {
+	}
+
+	private record NftDetails(EsgNftDetails details, Optional<HttpClientResponseException> notFound) {
+
+		static NftDetails found(EsgNftDetails details) {
+			return new NftDetails(details, Optional.empty());
+		}
+
+		static NftDetails notFound(HttpClientResponseException e) {
+			return new NftDetails(null, Optional.of(e));
+		}
+
+	}
+
+	record SnapshotEntry(String tokenId, long serialNumber, EsgNftDetails details) {
+	}
+
+	/**
+	 * Keeps found details for {@code esg-cache.ttl} and missing ones for
+	 * {@code esg-cache.not-found-ttl}, counted from when they were fetched.
+	 */
+	private class NftDetailsExpiry implements Expiry<NftKey, NftDetails> {
+
+		@Override
+		public long expireAfterCreate(NftKey key, NftDetails value, long currentTime) {
+			return (value.notFound().isPresent() ? configuration.notFoundTtl() : configuration.ttl()).toNanos();
+		}
+
+		@Override
+		public long expireAfterUpdate(NftKey key, NftDetails value, long currentTime, long currentDuration) {
+			return expireAfterCreate(key, value, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(NftKey key, NftDetails value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Hedging and circuit breaker settings of the ESG requests.
+ * @param hedgingEnabled Whether a second request is sent when the first is slow
+ * @param hedgeQuantile Latency quantile of recent requests after which the second request
+ * is sent
+ * @param minHedgeDelay Shortest wait before the second request is sent
+ * @param maxHedgeDelay Longest wait before the second request is sent, also used until
+ * enough latencies are recorded
+ * @param latencyWindow Number of recent request latencies the quantile is taken from
+ * @param failureRateThreshold Share of failed requests, between 0 and 1, that opens the
+ * circuit
+ * @param failureWindow Number of recent requests the failure rate is taken from
+ * @param openDuration How long the circuit stays open before a trial request is let
+ * through
+ * @param maxRetries How many times a failed request is retried
+ * @param retryBackoff Minimum delay before the first retry, doubled on each further retry
+ */
+@ConfigurationProperties("esg-resilience")
+public record EsgResilienceConfiguration(@NonNull Boolean hedgingEnabled, @NonNull Double hedgeQuantile,
+		@NonNull Duration minHedgeDelay, @NonNull Duration maxHedgeDelay, @NonNull Integer latencyWindow,
+		@NonNull Double failureRateThreshold, @NonNull Integer failureWindow, @NonNull Duration openDuration,
+		@NonNull Integer maxRetries, @NonNull Duration retryBackoff) {
+}
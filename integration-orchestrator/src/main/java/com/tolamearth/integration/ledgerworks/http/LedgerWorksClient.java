@@ -40,10 +40,18 @@ public interface LedgerWorksClient {
 	@Get("/transactions/{transactionId}")
 	Mono<TransactionsResponse> getTransaction(@NotBlank String transactionId);
 
-	// default api return limit is 25 transactions
+	// default api return limit is 25 transactions, the maximum is 100
 	@Get("/transactions")
 	Mono<TransactionsResponse> getTransactions(@QueryValue("account.id") String accountId,
 			@QueryValue("transactiontype") String transactiontype, @QueryValue("order") String order,
+			@QueryValue("limit") int limit,
 			@TimestampFilter("gt:") @QueryValue("timestamp") @Nullable String timestamp);
 
+	// lists the transactions with a consensus timestamp strictly between after and before
+	@Get("/transactions")
+	Mono<TransactionsResponse> getTransactionsInRange(@QueryValue("account.id") String accountId,
+			@QueryValue("transactiontype") String transactiontype, @QueryValue("order") String order,
+			@QueryValue("limit") int limit, @TimestampFilter("gt:") @QueryValue("timestamp") String after,
+			@TimestampFilter("lt:") @QueryValue("timestamp") String before);
+
 }
\ No newline at end of file
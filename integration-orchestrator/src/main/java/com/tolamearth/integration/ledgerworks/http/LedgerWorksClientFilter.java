@@ -18,15 +18,32 @@ package com.tolamearth.integration.ledgerworks.http;
 
 import io.micronaut.context.annotation.Value;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
 import io.micronaut.http.MutableHttpRequest;
 import io.micronaut.http.annotation.Filter;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
 import io.micronaut.http.filter.ClientFilterChain;
 import io.micronaut.http.filter.HttpClientFilter;
 import lombok.RequiredArgsConstructor;
 import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
 
 import static io.micronaut.http.HttpHeaders.AUTHORIZATION;
+import static io.micronaut.http.HttpHeaders.RETRY_AFTER;
 
+/**
+ * Authenticates requests to the LedgerWorks APIs and keeps them within the rate limit of
+ * the API key. Requests rejected with 429 Too Many Requests pause the shared
+ * {@link LedgerWorksRateLimiter} for the {@code Retry-After} the API asked for and are
+ * retried with a jittered backoff.
+ */
 @Filter("/api/v1/**")
 @RequiredArgsConstructor
 public class LedgerWorksClientFilter implements HttpClientFilter {
@@ -34,9 +51,51 @@ public class LedgerWorksClientFilter implements HttpClientFilter {
 	@Value("${ledger-works-api-key}")
 	private String LEDGER_WORKS_API_KEY;
 
+	private final LedgerWorksRateLimiter rateLimiter;
+
+	private final LedgerWorksRateLimitConfiguration configuration;
+
 	@Override
 	public Publisher<? extends HttpResponse<?>> doFilter(MutableHttpRequest<?> request, ClientFilterChain chain) {
-		return chain.proceed(request.header(AUTHORIZATION, LEDGER_WORKS_API_KEY));
+		Mono<? extends HttpResponse<?>> response = Mono
+				.from(chain.proceed(request.header(AUTHORIZATION, LEDGER_WORKS_API_KEY)));
+
+		return rateLimiter.acquire().then(response).doOnError(this::isTooManyRequests, this::pauseRateLimiter)
+				.retryWhen(Retry.backoff(configuration.maxRetries(), configuration.retryBackoff())
+						.jitter(configuration.retryJitter()).filter(this::isTooManyRequests)
+						.doBeforeRetry(signal -> rateLimiter.recordRetry())
+						.onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+	}
+
+	private boolean isTooManyRequests(Throwable throwable) {
+		return throwable instanceof HttpClientResponseException exception
+				&& HttpStatus.TOO_MANY_REQUESTS.equals(exception.getStatus());
+	}
+
+	private void pauseRateLimiter(Throwable throwable) {
+		HttpClientResponseException exception = (HttpClientResponseException) throwable;
+		rateLimiter.pause(getRetryAfter(exception.getResponse()).orElse(configuration.retryBackoff()));
+	}
+
+	/**
+	 * Reads {@code Retry-After}, which is either a number of seconds or an HTTP date.
+	 */
+	static Optional<Duration> getRetryAfter(HttpResponse<?> response) {
+		return response.getHeaders().getFirst(RETRY_AFTER).flatMap(retryAfter -> {
+			try {
+				return Optional.of(Duration.ofSeconds(Long.parseLong(retryAfter.trim())));
+			}
+			catch (NumberFormatException e) {
+				try {
+					ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+					Duration untilRetry = Duration.between(ZonedDateTime.now(), retryAt);
+					return Optional.of(untilRetry.isNegative() ? Duration.ZERO : untilRetry);
+				}
+				catch (DateTimeParseException ignored) {
+					return Optional.empty();
+				}
+			}
+		});
 	}
 
-}
\ No newline at end of file
+}
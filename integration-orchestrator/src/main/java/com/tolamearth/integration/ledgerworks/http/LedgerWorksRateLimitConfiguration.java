@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Rate limit shared by the LedgerWorks mirror node and ESG clients, which use the same
+ * API key and therefore the same quota.
+ * @param permitsPerSecond Sustained number of requests per second
+ * @param burst Number of requests that can be sent at once after an idle period
+ * @param maxRetries How many times a request rejected with 429 Too Many Requests is
+ * retried
+ * @param retryBackoff Minimum delay before the first retry, doubled on each further retry
+ * @param retryJitter Random factor, between 0 and 1, applied to the retry delay
+ */
+@ConfigurationProperties("ledger-works-rate-limit")
+public record LedgerWorksRateLimitConfiguration(@NonNull Double permitsPerSecond, @NonNull Integer burst,
+		@NonNull Integer maxRetries, @NonNull Duration retryBackoff, @NonNull Double retryJitter) {
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by every request sent with the LedgerWorks API key. The bucket
+ * holds up to {@code burst} permits and refills at {@code permitsPerSecond}; a request
+ * that finds it empty is delayed until its permit is due rather than rejected. The bucket
+ * is tracked as the time at which it will next be full, so taking a permit is a single
+ * update under a short lock.
+ * <p>
+ * When the API answers with {@code Retry-After} the bucket is drained until then, which
+ * holds back every client sharing the key and not only the request that was rejected.
+ */
+@Slf4j
+@Singleton
+public class LedgerWorksRateLimiter {
+
+	private final long permitIntervalNanos;
+
+	private final long burstNanos;
+
+	private final LongSupplier nanoClock;
+
+	private final Counter permits;
+
+	private final Counter throttledRequests;
+
+	private final Counter retries;
+
+	private final Timer waits;
+
+	private long fullAtNanos;
+
+	@Inject
+	public LedgerWorksRateLimiter(LedgerWorksRateLimitConfiguration configuration, MeterRegistry meterRegistry) {
+		this(configuration, meterRegistry, System::nanoTime);
+	}
+
+	LedgerWorksRateLimiter(LedgerWorksRateLimitConfiguration configuration, MeterRegistry meterRegistry,
+			LongSupplier nanoClock) {
+		this.permitIntervalNanos = (long) (Duration.ofSeconds(1).toNanos() / configuration.permitsPerSecond());
+		this.burstNanos = permitIntervalNanos * configuration.burst();
+		this.nanoClock = nanoClock;
+		this.fullAtNanos = nanoClock.getAsLong();
+		this.permits = Counter.builder("ledgerworks.rate.limit.permits")
+				.description("Requests let through by the LedgerWorks rate limiter").register(meterRegistry);
+		this.throttledRequests = Counter.builder("ledgerworks.rate.limit.throttled")
+				.description("Requests rejected by the LedgerWorks API with 429 Too Many Requests")
+				.register(meterRegistry);
+		this.retries = Counter.builder("ledgerworks.rate.limit.retries")
+				.description("Requests retried after 429 Too Many Requests").register(meterRegistry);
+		this.waits = Timer.builder("ledgerworks.rate.limit.wait")
+				.description("Time requests waited for a permit from the LedgerWorks rate limiter")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Takes a permit, completing once the request holding it may be sent.
+	 */
+	public Mono<Void> acquire() {
+		return Mono.defer(() -> {
+			Duration wait = reserve();
+			permits.increment();
+			waits.record(wait);
+			return wait.isZero() ? Mono.empty() : Mono.delay(wait).then();
+		});
+	}
+
+	/**
+	 * Holds every following request back for at least {@code retryAfter}.
+	 */
+	public void pause(Duration retryAfter) {
+		log.warn("LedgerWorks API rate limit reached, pausing requests for {}", retryAfter);
+		throttledRequests.increment();
+		synchronized (this) {
+			fullAtNanos = Math.max(fullAtNanos,
+					nanoClock.getAsLong() + retryAfter.toNanos() + burstNanos - permitIntervalNanos);
+		}
+	}
+
+	void recordRetry() {
+		retries.increment();
+	}
+
+	/**
+	 * Takes the next permit and returns how long its request has to wait for it.
+	 */
+	synchronized Duration reserve() {
+		long now = nanoClock.getAsLong();
+		long permitAt = Math.max(fullAtNanos, now) - burstNanos + permitIntervalNanos;
+		fullAtNanos = Math.max(fullAtNanos, now) + permitIntervalNanos;
+		return Duration.ofNanos(Math.max(0, permitAt - now));
+	}
+
+}
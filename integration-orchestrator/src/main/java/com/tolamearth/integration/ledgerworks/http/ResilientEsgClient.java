@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import com.tolamearth.integration.ledgerworks.data.EsgNftDetails;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Sends ESG requests through the {@link EsgCircuitBreaker} and hedges slow ones. When a
+ * request hasn't been answered within the {@code hedgeQuantile} latency of recent
+ * requests a second one is sent, and whichever is answered first is used, so a single
+ * slow response doesn't stall the ordered enrichment of the tokens behind it. Hedging is
+ * skipped while the circuit isn't closed.
+ * <p>
+ * Failed requests are retried with a backoff, waiting for the circuit to close first.
+ */
+@Slf4j
+@Singleton
+public class ResilientEsgClient {
+
+	private final EsgClient esgClient;
+
+	private final EsgCircuitBreaker circuitBreaker;
+
+	private final EsgResilienceConfiguration configuration;
+
+	private final LatencyWindow latencies;
+
+	private final Counter hedges;
+
+	private final Counter hedgeWins;
+
+	public ResilientEsgClient(EsgClient esgClient, EsgCircuitBreaker circuitBreaker,
+			EsgResilienceConfiguration configuration, MeterRegistry meterRegistry) {
+		this.esgClient = esgClient;
+		this.circuitBreaker = circuitBreaker;
+		this.configuration = configuration;
+		this.latencies = new LatencyWindow(configuration.latencyWindow());
+		this.hedges = Counter.builder("esg.hedge.requests")
+				.description("Second ESG requests sent because the first was slow").register(meterRegistry);
+		this.hedgeWins = Counter.builder("esg.hedge.wins").description("Second ESG requests answered before the first")
+				.register(meterRegistry);
+		Gauge.builder("esg.hedge.delay", this, client -> client.getHedgeDelay().toNanos() / 1e9)
+				.description("Seconds an ESG request waits before it is hedged").baseUnit("seconds")
+				.register(meterRegistry);
+	}
+
+	public Mono<EsgNftDetails> getNftDetails(String tokenId, long serialNumber) {
+		return Mono.defer(() -> hedge(tokenId, serialNumber))
+				.retryWhen(Retry.backoff(configuration.maxRetries(), configuration.retryBackoff())
+						.filter(ResilientEsgClient::isFailure)
+						.doBeforeRetry(signal -> log.warn("Retrying ESG details of NFT {}#{}. Exception: ", tokenId,
+								serialNumber, signal.failure()))
+						.onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+	}
+
+	/**
+	 * How long a request waits before it is hedged: the {@code hedgeQuantile} latency of
+	 * recent requests, within {@code minHedgeDelay} and {@code maxHedgeDelay}.
+	 */
+	public Duration getHedgeDelay() {
+		Duration quantile = latencies.quantile(configuration.hedgeQuantile()).orElse(configuration.maxHedgeDelay());
+		if (quantile.compareTo(configuration.minHedgeDelay()) < 0) {
+			return configuration.minHedgeDelay();
+		}
+		return quantile.compareTo(configuration.maxHedgeDelay()) > 0 ? configuration.maxHedgeDelay() : quantile;
+	}
+
+	private Mono<EsgNftDetails> hedge(String tokenId, long serialNumber) {
+		if (!configuration.hedgingEnabled() || circuitBreaker.getState() != EsgCircuitBreaker.State.CLOSED) {
+			return request(tokenId, serialNumber);
+		}
+		Mono<EsgNftDetails> hedge = Mono.delay(getHedgeDelay()).then(Mono.defer(() -> {
+			log.debug("ESG details of NFT {}#{} are slow, hedging the request", tokenId, serialNumber);
+			hedges.increment();
+			return request(tokenId, serialNumber).doOnSuccess(details -> hedgeWins.increment());
+		}));
+		return Mono.firstWithSignal(request(tokenId, serialNumber), hedge);
+	}
+
+	private Mono<EsgNftDetails> request(String tokenId, long serialNumber) {
+		return circuitBreaker.acquire().flatMap(permitGeneration -> {
+			long startedAt = System.nanoTime();
+			return esgClient.getNftDetails(tokenId, serialNumber).doOnSuccess(details -> {
+				latencies.record(System.nanoTime() - startedAt);
+				circuitBreaker.recordSuccess(permitGeneration);
+			}).doOnError(e -> {
+				if (isFailure(e)) {
+					circuitBreaker.recordFailure(permitGeneration);
+				}
+				else {
+					latencies.record(System.nanoTime() - startedAt);
+					circuitBreaker.recordSuccess(permitGeneration);
+				}
+			}).doOnCancel(() -> circuitBreaker.release(permitGeneration));
+		});
+	}
+
+	/**
+	 * Whether an error means ESG is unavailable, rather than that it answered the request
+	 * with a client error.
+	 */
+	static boolean isFailure(Throwable throwable) {
+		return !(throwable instanceof HttpClientResponseException exception && exception.getStatus().getCode() < 500);
+	}
+
+	/**
+	 * Latencies of the most recent requests, in nanoseconds.
+	 */
+	static class LatencyWindow {
+
+		private final long[] samples;
+
+		private int next;
+
+		private boolean full;
+
+		LatencyWindow(int size) {
+			this.samples = new long[size];
+		}
+
+		synchronized void record(long nanos) {
+			samples[next] = nanos;
+			next = (next + 1) % samples.length;
+			full |= next == 0;
+		}
+
+		/**
+		 * Returns the given quantile of the window, once it is full.
+		 */
+		Optional<Duration> quantile(double quantile) {
+			long[] sorted;
+			synchronized (this) {
+				if (!full) {
+					return Optional.empty();
+				}
+				sorted = samples.clone();
+			}
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(quantile * sorted.length) - 1;
+			return Optional.of(Duration.ofNanos(sorted[Math.max(0, Math.min(index, sorted.length - 1))]));
+		}
+
+	}
+
+}
@@ -20,6 +20,7 @@ import io.micronaut.core.annotation.NonNull;
 import io.micronaut.core.convert.ArgumentConversionContext;
 import io.micronaut.core.util.StringUtils;
 import io.micronaut.http.MutableHttpRequest;
+import io.micronaut.http.annotation.QueryValue;
 import io.micronaut.http.client.bind.AnnotatedClientArgumentRequestBinder;
 import io.micronaut.http.client.bind.ClientRequestUriContext;
 import jakarta.inject.Singleton;
@@ -37,11 +38,12 @@ public class TimestampFilterArgumentBinder implements AnnotatedClientArgumentReq
 	public void bind(@NonNull ArgumentConversionContext<Object> context, @NonNull ClientRequestUriContext uriContext,
 			@NonNull Object value, @NonNull MutableHttpRequest<?> request) {
 
-		String parameterName = context.getAnnotationMetadata().stringValue(TimestampFilter.class)
+		String operator = context.getAnnotationMetadata().stringValue(TimestampFilter.class).orElse("");
+		String parameterName = context.getAnnotationMetadata().stringValue(QueryValue.class)
 				.filter(StringUtils::isNotEmpty).orElse(context.getArgument().getName());
 
 		if (value instanceof String) {
-			uriContext.addQueryParameter(context.getArgument().getName(), parameterName + value);
+			uriContext.addQueryParameter(parameterName, operator + value);
 		}
 	}
 
@@ -17,7 +17,10 @@
 package com.tolamearth.integration.marketplace.events;
 
 import com.tolamearth.integration.core.EventEmitter;
+import com.tolamearth.integration.core.EventEmitter.OverflowStrategy;
 import com.tolamearth.integration.marketplace.MarketplaceEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Value;
 import jakarta.inject.Singleton;
 import reactor.core.publisher.Flux;
 
@@ -28,8 +31,11 @@ public class MarketplaceEventService implements EventService {
 
 	private final Flux<MarketplaceEvent> marketplaceEvents;
 
-	MarketplaceEventService() {
-		this.emitter = new EventEmitter<>();
+	MarketplaceEventService(@Value("${marketplace-events.buffer-capacity}") int bufferCapacity,
+			@Value("${marketplace-events.buffer-overflow-strategy}") OverflowStrategy bufferOverflowStrategy,
+			MeterRegistry meterRegistry) {
+		this.emitter = new EventEmitter<>(bufferCapacity, bufferOverflowStrategy);
+		this.emitter.registerMetrics(meterRegistry, "marketplace-events");
 		this.marketplaceEvents = Flux.create(emitter::registerSink);
 	}
 
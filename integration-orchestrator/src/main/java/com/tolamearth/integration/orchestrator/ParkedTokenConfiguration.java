@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.orchestrator;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Parking lot settings for minted tokens that failed ESG enrichment.
+ * @param redriveInterval How often parked tokens that are due are re-driven
+ * @param initialBackoff Wait before the first re-drive, doubled after each failed one
+ * @param maxBackoff Longest wait between re-drives
+ * @param maxAttempts Attempts after which a token is only re-driven on request
+ * @param concurrency Most tokens re-driven at once
+ * @param batchSize Most tokens re-driven per interval
+ * @param claimTimeout How long a token claimed for a re-drive is kept from other nodes
+ */
+@ConfigurationProperties("parked-tokens")
+public record ParkedTokenConfiguration(@NonNull Duration redriveInterval, @NonNull Duration initialBackoff,
+		@NonNull Duration maxBackoff, @NonNull Integer maxAttempts, @NonNull Integer concurrency,
+		@NonNull Integer batchSize, @NonNull Duration claimTimeout) {
+}
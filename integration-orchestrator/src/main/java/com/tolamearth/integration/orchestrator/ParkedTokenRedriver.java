@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.orchestrator;
+
+import com.tolamearth.integration.core.assets.ParkedToken;
+import com.tolamearth.integration.core.assets.Token;
+import com.tolamearth.integration.core.leadership.LeaderElection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Re-drives parked tokens through ESG enrichment, storage and publishing, or only through
+ * enrichment and publishing for tokens that were stored before. Every
+ * {@code parked-tokens.redrive-interval} the leader claims the tokens that are due and
+ * re-drives them, up to {@code parked-tokens.concurrency} at once. Claiming keeps nodes
+ * that all consider themselves the leader, as they do with leader election disabled, from
+ * re-driving the same token. A token that is re-driven leaves the parking lot; one that
+ * fails again is parked with a longer backoff.
+ */
+@Slf4j
+@Singleton
+public class ParkedTokenRedriver {
+
+	private final TokenParkingLot parkingLot;
+
+	private final TokenPublisherService publisherService;
+
+	private final ParkedTokenConfiguration configuration;
+
+	private final LeaderElection leaderElection;
+
+	private final Counter redrivenTokens;
+
+	private final Counter failedRedrives;
+
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	public ParkedTokenRedriver(TokenParkingLot parkingLot, TokenPublisherService publisherService,
+			ParkedTokenConfiguration configuration, LeaderElection leaderElection, MeterRegistry meterRegistry) {
+		this.parkingLot = parkingLot;
+		this.publisherService = publisherService;
+		this.configuration = configuration;
+		this.leaderElection = leaderElection;
+		this.redrivenTokens = Counter.builder("token.parking.redrives").tag("outcome", "success")
+				.description("Parked tokens re-driven").register(meterRegistry);
+		this.failedRedrives = Counter.builder("token.parking.redrives").tag("outcome", "failure")
+				.description("Parked tokens re-driven").register(meterRegistry);
+	}
+
+	@Scheduled(fixedDelay = "${parked-tokens.redrive-interval}", initialDelay = "${parked-tokens.redrive-interval}")
+	void redriveDueTokens() {
+		if (!leaderElection.isLeader() || !running.compareAndSet(false, true)) {
+			return;
+		}
+		parkingLot.claimDueTokens().flatMap(this::redrive, configuration.concurrency()).count()
+				.doFinally(signal -> running.set(false)).subscribe(stillParked -> {
+					if (stillParked > 0) {
+						log.warn("{} parked tokens failed to re-drive", stillParked);
+					}
+				}, throwable -> log.error("Error re-driving parked tokens. Exception: ", throwable));
+	}
+
+	/**
+	 * Re-drives a parked token, completing empty once it has left the parking lot or with
+	 * the token as it was parked again.
+	 */
+	public Mono<ParkedToken> redrive(ParkedToken parked) {
+		log.info("Re-driving parked MINTED token {} after {} failed attempts", parked.getNftId(), parked.getAttempts());
+		Mono<Token> redriven = parked.isStored() ? publisherService.republishToken(parked.toToken())
+				: publisherService.redriveToken(parked.toToken());
+		return redriven.then(Mono.defer(() -> parkingLot.release(parked)))
+				.doOnSuccess(ignored -> redrivenTokens.increment()).then(Mono.<ParkedToken>empty())
+				.onErrorResume(throwable -> {
+					failedRedrives.increment();
+					log.error("Error re-driving parked MINTED token {}", parked.getNftId(), throwable);
+					return parkingLot.park(parked.toToken(), throwable);
+				});
+	}
+
+}
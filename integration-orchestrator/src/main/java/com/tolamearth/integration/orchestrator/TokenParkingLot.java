@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.orchestrator;
+
+import com.tolamearth.integration.core.assets.EventType;
+import com.tolamearth.integration.core.assets.NftId;
+import com.tolamearth.integration.core.assets.ParkedToken;
+import com.tolamearth.integration.core.assets.ParkedTokenRepository;
+import com.tolamearth.integration.core.assets.Token;
+import com.tolamearth.integration.core.assets.TokenTransaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Keeps minted tokens that failed ESG enrichment, storage or publishing, so they can be
+ * re-driven once the failing service recovers instead of being lost. Each failure of a
+ * token doubles the wait before it is due again, starting at
+ * {@code parked-tokens.initial-backoff}.
+ */
+@Slf4j
+@Singleton
+public class TokenParkingLot {
+
+	private final ParkedTokenRepository repository;
+
+	private final ParkedTokenConfiguration configuration;
+
+	private final Counter parkedTokens;
+
+	public TokenParkingLot(ParkedTokenRepository repository, ParkedTokenConfiguration configuration,
+			MeterRegistry meterRegistry) {
+		this.repository = repository;
+		this.configuration = configuration;
+		this.parkedTokens = Counter.builder("token.parking.parked")
+				.description("Minted tokens parked after failing enrichment, storage or publishing")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Parks a token, or records another failed attempt if it is already parked.
+	 */
+	public Mono<ParkedToken> park(Token token, Throwable reason) {
+		return park(token, reason, false);
+	}
+
+	/**
+	 * Parks a stored token that couldn't be published, so re-driving it only publishes it
+	 * again.
+	 */
+	public Mono<ParkedToken> parkUnpublished(Token token, Throwable reason) {
+		return park(token, reason, true);
+	}
+
+	/**
+	 * Records that a parked token has been stored since it was parked.
+	 */
+	public Mono<ParkedToken> markStored(NftId nftId) {
+		return repository.findById(nftId).filter(parked -> !parked.isStored()).flatMap(parked -> {
+			parked.setStored(true);
+			return repository.update(parked);
+		});
+	}
+
+	private Mono<ParkedToken> park(Token token, Throwable reason, boolean stored) {
+		Instant now = Instant.now();
+		return repository.findById(token.getNftId()).flatMap(parked -> {
+			parked.setAttempts(parked.getAttempts() + 1);
+			parked.setStored(parked.isStored() || stored);
+			parked.setReason(describe(reason));
+			parked.setNextAttemptAt(now.plus(getBackoff(parked.getAttempts())));
+			return repository.update(parked);
+		}).switchIfEmpty(Mono.defer(() -> repository.save(createParkedToken(token, reason, now, stored))))
+				.doOnNext(parked -> {
+					parkedTokens.increment();
+					log.warn("Parked MINTED token {} after {} failed attempts, next attempt at {}", parked.getNftId(),
+							parked.getAttempts(), parked.getNextAttemptAt());
+				});
+	}
+
+	public Mono<Void> release(ParkedToken parked) {
+		return repository.delete(parked).then();
+	}
+
+	public Mono<ParkedToken> find(NftId nftId) {
+		return repository.findById(nftId);
+	}
+
+	public Flux<ParkedToken> getParkedTokens() {
+		return repository.listOrderByParkedAt();
+	}
+
+	/**
+	 * Claims up to {@code parked-tokens.batch-size} of the parked tokens whose next
+	 * attempt is due, keeping them from other nodes for
+	 * {@code parked-tokens.claim-timeout}. A claimed token is due again once the claim
+	 * runs out, unless it was released or parked again in the meantime.
+	 */
+	public Flux<ParkedToken> claimDueTokens() {
+		Instant now = Instant.now();
+		return repository.claimDue(now, configuration.maxAttempts(), configuration.batchSize(),
+				now.plus(configuration.claimTimeout()));
+	}
+
+	Duration getBackoff(int attempts) {
+		Duration backoff = configuration.initialBackoff().multipliedBy(1L << Math.min(attempts - 1, 30));
+		return backoff.compareTo(configuration.maxBackoff()) > 0 ? configuration.maxBackoff() : backoff;
+	}
+
+	private ParkedToken createParkedToken(Token token, Throwable reason, Instant now, boolean stored) {
+		TokenTransaction minted = token.getTransactions().stream()
+				.filter(transaction -> EventType.MINTED.equals(transaction.getEventType())).findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("Token " + token.getNftId() + " wasn't minted"));
+		return ParkedToken.builder().nftId(token.getNftId()).transactionId(minted.getId().getTransactionId())
+				.transactionTime(minted.getTransactionTime()).owner(minted.getOwner()).memo(token.getMemo())
+				.reason(describe(reason)).attempts(1).parkedAt(now).nextAttemptAt(now.plus(getBackoff(1)))
+				.stored(stored).build();
+	}
+
+	private static String describe(Throwable reason) {
+		String description = Objects.requireNonNullElse(reason.getMessage(), reason.getClass().getName());
+		return description.length() > ParkedToken.REASON_LENGTH ? description.substring(0, ParkedToken.REASON_LENGTH)
+				: description;
+	}
+
+}
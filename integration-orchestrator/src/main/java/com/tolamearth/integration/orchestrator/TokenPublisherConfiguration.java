@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.orchestrator;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Minted token pipeline settings.
+ * @param enrichmentConcurrency Most ESG details requests in flight at once
+ * @param enrichmentPrefetch Minted tokens requested ahead of the ESG enrichment stage
+ * @param persistenceConcurrency Most batches of tokens being stored at once
+ * @param persistencePrefetch Batches of enriched tokens requested ahead of the
+ * persistence stage
+ * @param persistenceBatchSize Most tokens stored in one statement
+ * @param persistenceBatchTimeout Longest an enriched token waits for its batch to fill
+ */
+@ConfigurationProperties("token-publisher")
+public record TokenPublisherConfiguration(@NonNull Integer enrichmentConcurrency, @NonNull Integer enrichmentPrefetch,
+		@NonNull Integer persistenceConcurrency, @NonNull Integer persistencePrefetch,
+		@NonNull Integer persistenceBatchSize, @NonNull Duration persistenceBatchTimeout) {
+}
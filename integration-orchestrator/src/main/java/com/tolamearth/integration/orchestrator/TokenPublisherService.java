@@ -16,15 +16,23 @@
 
 package com.tolamearth.integration.orchestrator;
 
+import com.tolamearth.integration.armm.ArmmEventPublisher;
 import com.tolamearth.integration.armm.ArmmMessageChannels;
 import com.tolamearth.integration.armm.ArmmProtobufMapper;
+import com.tolamearth.integration.core.assets.EventType;
+import com.tolamearth.integration.core.assets.ParkedToken;
+import com.tolamearth.integration.core.assets.ProcessedNftIndex;
 import com.tolamearth.integration.core.assets.Token;
 import com.tolamearth.integration.core.assets.TokenRepository;
+import com.tolamearth.integration.core.assets.TokenTransaction;
+import com.tolamearth.integration.core.discovery.ConsensusTimestamps;
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpointRepository;
 import com.tolamearth.integration.ledgerworks.data.LedgerWorksMapper;
+import com.tolamearth.integration.ledgerworks.data.NftAttributeNormalizer;
 import com.tolamearth.integration.ledgerworks.discovery.TokenDiscoveryService;
-import com.tolamearth.integration.ledgerworks.http.EsgClient;
+import com.tolamearth.integration.ledgerworks.discovery.TokenRegistry;
+import com.tolamearth.integration.ledgerworks.http.EsgNftDetailsCache;
 import com.tolamearth.integration.armm.ArmmEvent;
-import io.micronaut.context.annotation.Value;
 import jakarta.annotation.PostConstruct;
 import jakarta.inject.Singleton;
 import org.slf4j.Logger;
@@ -32,8 +40,9 @@ import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import javax.transaction.Transactional;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -44,28 +53,65 @@ public class TokenPublisherService {
 
 	private final TokenDiscoveryService tokenDiscoveryService;
 
-	private final EsgClient esgClient;
+	private final EsgNftDetailsCache esgNftDetailsCache;
 
 	private final TokenRepository tokenRepository;
 
+	private final DiscoveryCheckpointRepository checkpointRepository;
+
 	private final ArmmMessageChannels messageChannels;
 
 	private Flux<Token> mintedTokenStream;
 
 	private long repeatedTokenCount = 0;
 
-	private List<String> TOKEN_IDS;
+	private final TokenRegistry tokenRegistry;
+
+	private final TokenPublisherConfiguration configuration;
+
+	private final TokenParkingLot parkingLot;
+
+	private final NftAttributeNormalizer attributeNormalizer;
 
-	public TokenPublisherService(TokenDiscoveryService tokenDiscoveryService, EsgClient esgClient,
-			TokenRepository tokenRepository, ArmmMessageChannels messageChannels,
-			@Value("${token-discovery.token-ids}") List<String> TOKEN_IDS) {
+	private final ProcessedNftIndex processedNftIndex;
+
+	private final ArmmEventPublisher armmEventPublisher;
+
+	public TokenPublisherService(TokenDiscoveryService tokenDiscoveryService, EsgNftDetailsCache esgNftDetailsCache,
+			TokenRepository tokenRepository, DiscoveryCheckpointRepository checkpointRepository,
+			ArmmMessageChannels messageChannels, TokenRegistry tokenRegistry, TokenPublisherConfiguration configuration,
+			TokenParkingLot parkingLot, NftAttributeNormalizer attributeNormalizer, ProcessedNftIndex processedNftIndex,
+			ArmmEventPublisher armmEventPublisher) {
 		this.tokenDiscoveryService = tokenDiscoveryService;
-		this.esgClient = esgClient;
+		this.esgNftDetailsCache = esgNftDetailsCache;
 		this.tokenRepository = tokenRepository;
+		this.checkpointRepository = checkpointRepository;
 		this.messageChannels = messageChannels;
-		this.TOKEN_IDS = TOKEN_IDS;
+		this.tokenRegistry = tokenRegistry;
+		this.configuration = configuration;
+		this.parkingLot = parkingLot;
+		this.attributeNormalizer = attributeNormalizer;
+		this.processedNftIndex = processedNftIndex;
+		this.armmEventPublisher = armmEventPublisher;
 	}
 
+	/**
+	 * Skips minted tokens the {@link ProcessedNftIndex} knows are stored, then enriches
+	 * the rest with their ESG details and stores them, running up to
+	 * {@code token-publisher.enrichment-concurrency} ESG requests at once. Enriched
+	 * tokens are stored in batches of up to
+	 * {@code token-publisher.persistence-batch-size}, or whatever arrived within
+	 * {@code token-publisher.persistence-batch-timeout}, with up to
+	 * {@code token-publisher.persistence-concurrency} batches stored at once. The
+	 * discovery checkpoints of a batch are advanced one batch at a time, in order, once
+	 * every earlier batch has been stored or parked, so a checkpoint never points past a
+	 * token that could still be lost. Only tokens that weren't stored before are
+	 * published, several to an ARMM event through the {@link ArmmEventPublisher}. Both
+	 * stages emit in the order they received tokens, so tokens reach ARMM in consensus
+	 * order. Tokens whose ESG details can't be retrieved, batches that can't be stored,
+	 * and stored tokens that can't be published are parked in the {@link TokenParkingLot}
+	 * rather than dropped.
+	 */
 	@PostConstruct
 	public void initMintedTokenStream() {
 		if (!Objects.isNull(this.mintedTokenStream)) {
@@ -73,37 +119,137 @@ public class TokenPublisherService {
 		}
 
 		this.mintedTokenStream = this.tokenDiscoveryService.getMintedTransactions()
-				.concatMapIterable(
-						transaction -> LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS))
-				.flatMapSequential(this::retrieveNftDetails)
-				.map(result -> result
-						.orElseThrow(() -> new IllegalStateException("Failed to retrieve and map NFT Details")))
-				.concatMap(this::processToken).flatMapSequential(token -> {
-					log.info("Publishing new MINTED token {} to ARMM", token);
-					return publishToken(token);
-				}).doOnNext(token -> log.info("Processing complete for new MINTED token {}", token))
+				.concatMapIterable(transaction -> LedgerWorksMapper
+						.fromLedgerWorksMintedTransaction(transaction, tokenRegistry.getTokenIds()))
+				.filter(this::isTokenUnprocessed)
+				.flatMapSequential(this::retrieveNftDetails, configuration.enrichmentConcurrency(),
+						configuration.enrichmentPrefetch())
+				.bufferTimeout(configuration.persistenceBatchSize(), configuration.persistenceBatchTimeout())
+				.flatMapSequential(this::persistTokens, configuration.persistenceConcurrency(),
+						configuration.persistencePrefetch())
+				.concatMap(batch -> advanceCheckpoints(batch.tokens()).thenMany(Flux.fromIterable(batch.stored())))
+				.doOnNext(token -> log.info("Publishing new MINTED token {} to ARMM", token))
+				.transform(tokens -> armmEventPublisher.publishNftDetails(tokens,
+						ArmmProtobufMapper::mintedTransactions, this::parkUnpublished))
+				.doOnNext(token -> log.info("Processing complete for new MINTED token {}", token))
 				.onErrorContinue((ex, token) -> log.error("Error processing MINTED token {}", token, ex));
 	}
 
-	@Transactional
-	Mono<Token> processToken(Token token) {
-		return Mono.just(token).filterWhen(this::isTokenUnprocessed).flatMap(t -> saveToken(t));
+	/**
+	 * Enriches, stores and publishes a parked token in an ARMM event of its own, failing
+	 * if any step fails. Tokens that were stored in the meantime complete empty without
+	 * being published again. A token stored here but not published is marked as stored in
+	 * the parking lot, so it is only published when re-driven again.
+	 */
+	public Mono<Token> redriveToken(Token token) {
+		return enrich(token).flatMap(enriched -> storeTokens(List.of(enriched)).next())
+				.flatMap(stored -> publishToken(stored).onErrorResume(
+						throwable -> parkingLot.markStored(stored.getNftId()).then(Mono.error(throwable))));
 	}
 
-	private Mono<Optional<Token>> retrieveNftDetails(Token token) {
-		log.info("Retrieving NFT Details for token {}", token);
-		return this.esgClient
-				.getNftDetails(token.getNftId().getTokenId(), Long.valueOf(token.getNftId().getSerialNumber()))
-				.flatMap(details -> LedgerWorksMapper.mergeNftDetails(token, details)).thenReturn(Optional.of(token))
+	/**
+	 * Enriches and publishes a parked token that was stored but not published, in an ARMM
+	 * event of its own, failing if either step fails.
+	 */
+	public Mono<Token> republishToken(Token token) {
+		return enrich(token).flatMap(this::publishToken);
+	}
+
+	private Mono<PersistedBatch> persistTokens(List<Token> tokens) {
+		return storeTokens(tokens).collectList().map(stored -> new PersistedBatch(tokens, stored))
 				.onErrorResume(throwable -> {
-					log.error("Error retrieving and mapping NFT Details", throwable);
-					return Mono.just(Optional.empty());
+					log.error("Error storing MINTED tokens {}, parking them", tokens, throwable);
+					return Flux.fromIterable(tokens).concatMap(token -> park(token, throwable))
+							.then(Mono.just(new PersistedBatch(tokens, List.of())));
 				});
 	}
 
-	private Mono<Token> saveToken(Token token) {
-		log.info("Storing new MINTED token {} received from TokenDiscoveryService", token);
-		return tokenRepository.save(token);
+	/**
+	 * Advances the discovery checkpoint of each token collection in a batch to its latest
+	 * mint. A checkpoint that can't be advanced only makes discovery list the batch's
+	 * mints again, so the error is logged rather than stopping the stream.
+	 */
+	private Mono<Void> advanceCheckpoints(List<Token> tokens) {
+		Map<String, String> latestMints = new HashMap<>();
+		tokens.forEach(token -> getMintTimestamp(token).ifPresent(
+				timestamp -> latestMints.merge(token.getNftId().getTokenId(), timestamp, ConsensusTimestamps::max)));
+		return checkpointRepository.advance(latestMints).onErrorResume(throwable -> {
+			log.error("Error advancing discovery checkpoints to {}", latestMints, throwable);
+			return Mono.empty();
+		});
+	}
+
+	private static Optional<String> getMintTimestamp(Token token) {
+		if (Objects.isNull(token.getTransactions())) {
+			return Optional.empty();
+		}
+		return token.getTransactions().stream()
+				.filter(transaction -> EventType.MINTED.equals(transaction.getEventType()))
+				.map(TokenTransaction::getTransactionTime).filter(timestamp -> Objects.nonNull(timestamp)
+						&& !TokenTransaction.transactionTimeDefault().equals(timestamp))
+				.findFirst();
+	}
+
+	private Flux<Token> storeTokens(List<Token> tokens) {
+		log.info("Storing {} new MINTED tokens received from TokenDiscoveryService", tokens.size());
+		return Flux.defer(() -> tokenRepository.insertMinted(tokens)).collectList().flatMapIterable(storedTokens -> {
+			tokens.forEach(token -> processedNftIndex.add(token.getNftId()));
+			int repeatedTokens = tokens.size() - storedTokens.size();
+			if (repeatedTokens > 0) {
+				log.info("{} of {} tokens received from TokenDiscoveryService already processed.", repeatedTokens,
+						tokens.size());
+				countRepeatedTokens(repeatedTokens);
+			}
+			return storedTokens;
+		});
+	}
+
+	/**
+	 * Whether a token may still need processing. Tokens missing from the index are
+	 * checked against the database when they are stored.
+	 */
+	private boolean isTokenUnprocessed(Token token) {
+		if (!processedNftIndex.contains(token.getNftId())) {
+			return true;
+		}
+		log.info("Token {} received from TokenDiscoveryService already processed.", token.getNftId());
+		countRepeatedTokens(1);
+		return false;
+	}
+
+	private synchronized void countRepeatedTokens(int repeatedTokens) {
+		repeatedTokenCount = repeatedTokenCount < Long.MAX_VALUE - repeatedTokens ? repeatedTokenCount + repeatedTokens
+				: Long.MAX_VALUE;
+	}
+
+	private Mono<Token> retrieveNftDetails(Token token) {
+		return enrich(token).onErrorResume(throwable -> {
+			log.error("Error retrieving and mapping NFT Details of token {}, parking it", token, throwable);
+			return park(token, throwable).then(Mono.empty());
+		});
+	}
+
+	private Mono<Void> park(Token token, Throwable reason) {
+		return logParkingError(token, parkingLot.park(token, reason));
+	}
+
+	private Mono<Void> parkUnpublished(Token token, Throwable reason) {
+		return logParkingError(token, parkingLot.parkUnpublished(token, reason));
+	}
+
+	private Mono<Void> logParkingError(Token token, Mono<ParkedToken> parking) {
+		return parking.onErrorResume(parkingError -> {
+			log.error("Error parking MINTED token {}", token, parkingError);
+			return Mono.empty();
+		}).then();
+	}
+
+	private Mono<Token> enrich(Token token) {
+		log.info("Retrieving NFT Details for token {}", token);
+		return this.esgNftDetailsCache
+				.getNftDetails(token.getNftId().getTokenId(), Long.valueOf(token.getNftId().getSerialNumber()))
+				.map(attributeNormalizer::normalize)
+				.flatMap(details -> LedgerWorksMapper.mergeNftDetails(token, details)).thenReturn(token);
 	}
 
 	public Flux<Token> getMintedTokenStream() {
@@ -120,12 +266,10 @@ public class TokenPublisherService {
 		return message.thenReturn(token);
 	}
 
-	private Mono<Boolean> isTokenUnprocessed(Token token) {
-		return tokenRepository.findById(token.getNftId()).map(result -> {
-			log.info("Token {} received from TokenDiscoveryService already processed.", token);
-			repeatedTokenCount = repeatedTokenCount < Long.MAX_VALUE ? repeatedTokenCount + 1 : Long.MAX_VALUE;
-			return Boolean.FALSE;
-		}).switchIfEmpty(Mono.just(Boolean.TRUE));
+	/**
+	 * A batch of tokens with those of them that weren't stored before.
+	 */
+	private record PersistedBatch(List<Token> tokens, List<Token> stored) {
 	}
 
 }
@@ -16,18 +16,16 @@
 
 package com.tolamearth.integration.orchestrator;
 
-import com.tolamearth.integration.armm.ArmmMessageChannels;
+import com.tolamearth.integration.armm.ArmmEventPublisher;
 import com.tolamearth.integration.armm.ArmmProtobufMapper;
 import com.tolamearth.integration.core.assets.Token;
 import com.tolamearth.integration.core.assets.TokenRepository;
 import com.tolamearth.integration.marketplace.events.EventService;
 import com.tolamearth.integration.marketplace.events.MarketplaceProtobufMapper;
-import com.tolamearth.integration.armm.ArmmEvent;
 import jakarta.annotation.PostConstruct;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 import java.util.Objects;
 
@@ -39,15 +37,15 @@ public class TransactionPublisherService {
 
 	private final TokenRepository tokenRepository;
 
-	private final ArmmMessageChannels messageChannels;
+	private final ArmmEventPublisher armmEventPublisher;
 
 	private Flux<Token> transactionStream;
 
 	public TransactionPublisherService(EventService marketplaceService, TokenRepository tokenRepository,
-			ArmmMessageChannels messageChannels) {
+			ArmmEventPublisher armmEventPublisher) {
 		this.marketplaceService = marketplaceService;
 		this.tokenRepository = tokenRepository;
-		this.messageChannels = messageChannels;
+		this.armmEventPublisher = armmEventPublisher;
 	}
 
 	@PostConstruct
@@ -63,7 +61,8 @@ public class TransactionPublisherService {
 		}).concatMap(token -> {
 			log.info("Saving new transactions from marketplace event for token {}", token);
 			return this.tokenRepository.saveOrUpdate(token);
-		}).flatMap(this::publishToken)
+		}).doOnNext(token -> log.info("Publishing new transactions to ARMM for token {}", token)).transform(
+				tokens -> armmEventPublisher.publishNftDetails(tokens, ArmmProtobufMapper::marketplaceTransactions))
 				.onErrorContinue((ex, token) -> log.error("Error processing Marketplace event {}", token, ex));
 	}
 
@@ -71,10 +70,4 @@ public class TransactionPublisherService {
 		return this.transactionStream;
 	}
 
-	private Mono<Token> publishToken(Token token) {
-		log.info("Publishing new transactions to ARMM for token {}", token);
-		ArmmEvent event = ArmmProtobufMapper.fromMarketplaceToken(token);
-		return this.messageChannels.sendNftDetails(event.toByteArray()).thenReturn(token);
-	}
-
 }
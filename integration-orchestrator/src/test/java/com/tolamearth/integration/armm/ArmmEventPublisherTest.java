@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.armm;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.tolamearth.integration.core.assets.NftId;
+import com.tolamearth.integration.core.assets.Token;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.*;
+
+class ArmmEventPublisherTest {
+
+	private static final List<Token> TOKENS = IntStream.rangeClosed(1, 5)
+			.mapToObj(serial -> Token.builder().nftId(new NftId("0.0.1001", Integer.toString(serial))).build())
+			.toList();
+
+	ArmmMessageChannels messageChannels;
+
+	@BeforeEach
+	void initChannels() {
+		messageChannels = mock(ArmmMessageChannels.class);
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId"));
+	}
+
+	@Test
+	void test_publishNftDetails_packsTokensIntoOneEvent() {
+		ArmmEventPublisher publisher = publisher(100, 1_000_000);
+
+		StepVerifier
+				.create(publisher.publishNftDetails(Flux.fromIterable(TOKENS), ArmmEventPublisherTest::transactions))
+				.expectNextSequence(TOKENS).verifyComplete();
+
+		Assertions.assertEquals(List.of(List.of("1", "2", "3", "4", "5")), publishedSerialNumbers(1));
+	}
+
+	@Test
+	void test_publishNftDetails_splitsAtBatchSize() {
+		ArmmEventPublisher publisher = publisher(2, 1_000_000);
+
+		StepVerifier
+				.create(publisher.publishNftDetails(Flux.fromIterable(TOKENS), ArmmEventPublisherTest::transactions))
+				.expectNextSequence(TOKENS).verifyComplete();
+
+		Assertions.assertEquals(List.of(List.of("1", "2"), List.of("3", "4"), List.of("5")), publishedSerialNumbers(3));
+	}
+
+	@Test
+	void test_publishNftDetails_splitsAtMaxMessageBytes() {
+		int transactionBytes = ArmmEvent.newBuilder().addAllTransactions(transactions(TOKENS.get(0))).build()
+				.getSerializedSize();
+		ArmmEventPublisher publisher = publisher(100, 2 * transactionBytes);
+
+		StepVerifier
+				.create(publisher.publishNftDetails(Flux.fromIterable(TOKENS), ArmmEventPublisherTest::transactions))
+				.expectNextSequence(TOKENS).verifyComplete();
+
+		Assertions.assertEquals(List.of(List.of("1", "2"), List.of("3", "4"), List.of("5")), publishedSerialNumbers(3));
+	}
+
+	@Test
+	void test_publishNftDetails_dropsTokensOfFailedEvents() {
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.error(new RuntimeException("Pub/Sub error")))
+				.thenReturn(Mono.just("messageId"));
+		ArmmEventPublisher publisher = publisher(2, 1_000_000, 0);
+
+		StepVerifier
+				.create(publisher.publishNftDetails(Flux.fromIterable(TOKENS), ArmmEventPublisherTest::transactions))
+				.expectNextSequence(TOKENS.subList(2, 5)).verifyComplete();
+
+		verify(messageChannels, times(3)).sendNftDetails(any());
+	}
+
+	@Test
+	void test_publishNftDetails_retriesFailedEvents() {
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.error(new RuntimeException("Pub/Sub error")))
+				.thenReturn(Mono.error(new RuntimeException("Pub/Sub error"))).thenReturn(Mono.just("messageId"));
+		ArmmEventPublisher publisher = publisher(100, 1_000_000, 2);
+
+		StepVerifier
+				.create(publisher.publishNftDetails(Flux.fromIterable(TOKENS), ArmmEventPublisherTest::transactions))
+				.expectNextSequence(TOKENS).verifyComplete();
+
+		verify(messageChannels, times(3)).sendNftDetails(any());
+	}
+
+	@Test
+	void test_publishNftDetails_handsOverTokensOfFailedEvents() {
+		RuntimeException failure = new RuntimeException("Pub/Sub error");
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.error(failure));
+		ArmmEventPublisher publisher = publisher(2, 1_000_000, 1);
+		List<Token> unpublished = new ArrayList<>();
+
+		StepVerifier.create(publisher.publishNftDetails(Flux.fromIterable(TOKENS.subList(0, 2)),
+				ArmmEventPublisherTest::transactions, (token, throwable) -> {
+					Assertions.assertSame(failure, throwable);
+					unpublished.add(token);
+					return Mono.empty();
+				})).verifyComplete();
+
+		Assertions.assertEquals(TOKENS.subList(0, 2), unpublished);
+		verify(messageChannels, times(2)).sendNftDetails(any());
+	}
+
+	@Test
+	void test_publishNftDetails_skipsTokensThatCantBeMapped() {
+		ArmmEventPublisher publisher = publisher(100, 1_000_000);
+
+		StepVerifier.create(publisher.publishNftDetails(Flux.fromIterable(TOKENS), token -> {
+			if ("2".equals(token.getNftId().getSerialNumber())) {
+				throw new IllegalStateException("Token has no transactions.");
+			}
+			return transactions(token);
+		})).expectNext(TOKENS.get(0), TOKENS.get(2), TOKENS.get(3), TOKENS.get(4)).verifyComplete();
+
+		Assertions.assertEquals(List.of(List.of("1", "3", "4", "5")), publishedSerialNumbers(1));
+	}
+
+	private ArmmEventPublisher publisher(int batchSize, int maxMessageBytes) {
+		return publisher(batchSize, maxMessageBytes, 0);
+	}
+
+	private ArmmEventPublisher publisher(int batchSize, int maxMessageBytes, int maxRetries) {
+		return new ArmmEventPublisher(messageChannels, new ArmmPublisherConfiguration(batchSize, Duration.ofSeconds(5),
+				maxMessageBytes, maxRetries, Duration.ofMillis(10)), new SimpleMeterRegistry());
+	}
+
+	private List<List<String>> publishedSerialNumbers(int events) {
+		ArgumentCaptor<byte[]> messages = ArgumentCaptor.forClass(byte[].class);
+		verify(messageChannels, times(events)).sendNftDetails(messages.capture());
+		return messages.getAllValues().stream().map(message -> {
+			try {
+				return ArmmEvent.parseFrom(message).getTransactionsList().stream()
+						.map(transaction -> transaction.getNftId().getSerialNumber()).toList();
+			}
+			catch (InvalidProtocolBufferException e) {
+				throw new IllegalStateException(e);
+			}
+		}).toList();
+	}
+
+	private static List<ArmmEvent.Transaction> transactions(Token token) {
+		return List.of(ArmmEvent.Transaction.newBuilder().setEventType(ArmmEvent.EventType.MINTED)
+				.setNftId(ArmmEvent.NftId.newBuilder().setTokenId(token.getNftId().getTokenId())
+						.setSerialNumber(token.getNftId().getSerialNumber()))
+				.setTransactionId("0.0.1001-1-" + token.getNftId().getSerialNumber()).build());
+	}
+
+}
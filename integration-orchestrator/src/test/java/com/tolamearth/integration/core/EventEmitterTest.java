@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+class EventEmitterTest {
+
+	@Test
+	void test_emit_onlyDeliversRequestedEvents() {
+		EventEmitter<Integer> emitter = new EventEmitter<>(4, EventEmitter.OverflowStrategy.FAIL);
+		Flux<Integer> events = Flux.create(emitter::registerSink);
+
+		StepVerifier.create(events, 1).then(() -> {
+			emitter.emit(1);
+			emitter.emit(2);
+			emitter.emit(3);
+		}).expectNext(1).then(() -> Assertions.assertEquals(2, emitter.getQueueDepth())).thenRequest(2).expectNext(2, 3)
+				.then(() -> Assertions.assertEquals(0, emitter.getQueueDepth())).thenCancel().verify();
+	}
+
+	@Test
+	void test_emit_dropOldest() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		EventEmitter<Integer> emitter = new EventEmitter<>(2, EventEmitter.OverflowStrategy.DROP_OLDEST);
+		emitter.registerMetrics(meterRegistry, "test");
+		Flux<Integer> events = Flux.create(emitter::registerSink);
+
+		StepVerifier.create(events, 0).then(() -> {
+			emitter.emit(1);
+			emitter.emit(2);
+			emitter.emit(3);
+		}).thenRequest(2).expectNext(2, 3).thenCancel().verify();
+
+		Assertions.assertEquals(1, emitter.getDroppedCount());
+		Assertions.assertEquals(1,
+				meterRegistry.get("event.emitter.dropped").tag("emitter", "test").functionCounter().count());
+	}
+
+	@Test
+	void test_emit_failWhenFull() {
+		EventEmitter<Integer> emitter = new EventEmitter<>(1, EventEmitter.OverflowStrategy.FAIL);
+
+		emitter.emit(1);
+
+		Assertions.assertThrows(EventOverflowException.class, () -> emitter.emit(2));
+	}
+
+	@Test
+	void test_emit_blockUntilRequested() throws Exception {
+		EventEmitter<Integer> emitter = new EventEmitter<>(1, EventEmitter.OverflowStrategy.BLOCK);
+		Flux<Integer> events = Flux.create(emitter::registerSink);
+		AtomicReference<CompletableFuture<Void>> blockedEmit = new AtomicReference<>();
+
+		StepVerifier.create(events, 0).then(() -> {
+			emitter.emit(1);
+			blockedEmit.set(CompletableFuture.runAsync(() -> emitter.emit(2)));
+			Assertions.assertThrows(TimeoutException.class, () -> blockedEmit.get().get(200, TimeUnit.MILLISECONDS));
+		}).thenRequest(1).expectNext(1).then(() -> blockedEmit.get().join()).thenRequest(1).expectNext(2).thenCancel()
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void test_emit_blockFailsAfterTimeout() {
+		EventEmitter<Integer> emitter = new EventEmitter<>(1, EventEmitter.OverflowStrategy.BLOCK,
+				Duration.ofMillis(200));
+		Flux<Integer> events = Flux.create(emitter::registerSink);
+
+		StepVerifier.create(events, 0).then(() -> {
+			emitter.emit(1);
+			Assertions.assertThrows(EventOverflowException.class, () -> emitter.emit(2));
+		}).thenRequest(1).expectNext(1).thenCancel().verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void test_emit_blockFailsWithoutSubscriber() {
+		EventEmitter<Integer> emitter = new EventEmitter<>(1, EventEmitter.OverflowStrategy.BLOCK);
+		emitter.emit(1);
+
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(1),
+				() -> Assertions.assertThrows(EventOverflowException.class, () -> emitter.emit(2)));
+	}
+
+	@Test
+	void test_emit_blockFailsOnceSubscriberCancels() throws Exception {
+		EventEmitter<Integer> emitter = new EventEmitter<>(1, EventEmitter.OverflowStrategy.BLOCK);
+		// subscribes without requesting, so the queue stays full
+		BaseSubscriber<Integer> subscriber = new BaseSubscriber<>() {
+			@Override
+			protected void hookOnSubscribe(Subscription subscription) {
+			}
+		};
+		Flux.create(emitter::registerSink).subscribe(subscriber);
+		emitter.emit(1);
+
+		CompletableFuture<Void> blockedEmit = CompletableFuture.runAsync(() -> emitter.emit(2));
+		Assertions.assertThrows(TimeoutException.class, () -> blockedEmit.get(200, TimeUnit.MILLISECONDS));
+		subscriber.dispose();
+
+		ExecutionException failure = Assertions.assertThrows(ExecutionException.class,
+				() -> blockedEmit.get(1, TimeUnit.SECONDS));
+		Assertions.assertInstanceOf(EventOverflowException.class, failure.getCause());
+		Assertions.assertThrows(EventOverflowException.class, () -> emitter.emit(3));
+	}
+
+}
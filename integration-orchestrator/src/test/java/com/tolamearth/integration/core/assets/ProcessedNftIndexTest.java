@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.assets;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+class ProcessedNftIndexTest {
+
+	private static final NftId NFT_ID_1 = new NftId("0.0.1001", "1");
+
+	private static final NftId NFT_ID_2 = new NftId("0.0.1001", "2");
+
+	private static final NftId NFT_ID_3 = new NftId("0.0.1002", "1");
+
+	TokenRepository tokenRepository;
+
+	@BeforeEach
+	void initRepository() {
+		tokenRepository = mock(TokenRepository.class);
+	}
+
+	@Test
+	void test_load_readsTokenTable() {
+		when(tokenRepository.findNftIds(100)).thenReturn(Flux.just(NFT_ID_1, NFT_ID_3));
+		ProcessedNftIndex index = index(null);
+
+		StepVerifier.create(index.load()).verifyComplete();
+
+		Assertions.assertTrue(index.contains(NFT_ID_1));
+		Assertions.assertFalse(index.contains(NFT_ID_2));
+		Assertions.assertTrue(index.contains(NFT_ID_3));
+		Assertions.assertEquals(2, index.size());
+	}
+
+	@Test
+	void test_add_skipsUnsupportedSerialNumbers() {
+		ProcessedNftIndex index = index(null);
+		NftId unsupported = new NftId("0.0.1001", "not-a-serial");
+
+		index.add(unsupported);
+		index.add(NFT_ID_2);
+
+		Assertions.assertFalse(index.contains(unsupported));
+		Assertions.assertTrue(index.contains(NFT_ID_2));
+		Assertions.assertEquals(1, index.size());
+	}
+
+	@Test
+	void test_snapshot_survivesRestart(@TempDir Path snapshotDirectory) {
+		String snapshotFile = snapshotDirectory.resolve("processed-nfts.bin").toString();
+		ProcessedNftIndex index = index(snapshotFile);
+		index.add(NFT_ID_1);
+		index.add(NFT_ID_3);
+		index.saveSnapshot();
+		when(tokenRepository.findSerialDigests()).thenReturn(Mono.just(digests(NFT_ID_1, NFT_ID_3)));
+
+		ProcessedNftIndex restartedIndex = index(snapshotFile);
+		StepVerifier.create(restartedIndex.load()).verifyComplete();
+
+		Assertions.assertTrue(restartedIndex.contains(NFT_ID_1));
+		Assertions.assertTrue(restartedIndex.contains(NFT_ID_3));
+		verify(tokenRepository, never()).findNftIds(anyInt());
+	}
+
+	@Test
+	void test_snapshot_staleSnapshotIsRebuilt(@TempDir Path snapshotDirectory) {
+		String snapshotFile = snapshotDirectory.resolve("processed-nfts.bin").toString();
+		ProcessedNftIndex index = index(snapshotFile);
+		index.add(NFT_ID_1);
+		index.add(NFT_ID_3);
+		index.saveSnapshot();
+		// the database was reset since the snapshot was saved
+		when(tokenRepository.findSerialDigests()).thenReturn(Mono.just(digests(NFT_ID_2)));
+		when(tokenRepository.findNftIds(100)).thenReturn(Flux.just(NFT_ID_2));
+
+		ProcessedNftIndex restartedIndex = index(snapshotFile);
+		StepVerifier.create(restartedIndex.load()).verifyComplete();
+
+		Assertions.assertFalse(restartedIndex.contains(NFT_ID_1));
+		Assertions.assertTrue(restartedIndex.contains(NFT_ID_2));
+		Assertions.assertFalse(restartedIndex.contains(NFT_ID_3));
+	}
+
+	@Test
+	void test_snapshot_sameSizedSnapshotIsRebuilt(@TempDir Path snapshotDirectory) {
+		String snapshotFile = snapshotDirectory.resolve("processed-nfts.bin").toString();
+		ProcessedNftIndex index = index(snapshotFile);
+		index.add(NFT_ID_1);
+		index.add(NFT_ID_3);
+		index.saveSnapshot();
+		// the database was reset and as many other NFTs were stored since
+		when(tokenRepository.findSerialDigests()).thenReturn(Mono.just(digests(NFT_ID_2, NFT_ID_3)));
+		when(tokenRepository.findNftIds(100)).thenReturn(Flux.just(NFT_ID_2, NFT_ID_3));
+
+		ProcessedNftIndex restartedIndex = index(snapshotFile);
+		StepVerifier.create(restartedIndex.load()).verifyComplete();
+
+		Assertions.assertFalse(restartedIndex.contains(NFT_ID_1));
+		Assertions.assertTrue(restartedIndex.contains(NFT_ID_2));
+		Assertions.assertTrue(restartedIndex.contains(NFT_ID_3));
+	}
+
+	private static Map<String, SerialBitmap.Digest> digests(NftId... nftIds) {
+		Map<String, SerialBitmap> bitmaps = new HashMap<>();
+		for (NftId nftId : nftIds) {
+			bitmaps.computeIfAbsent(nftId.getTokenId(), tokenId -> new SerialBitmap())
+					.add(Long.parseLong(nftId.getSerialNumber()));
+		}
+		Map<String, SerialBitmap.Digest> digests = new HashMap<>();
+		bitmaps.forEach((tokenId, bitmap) -> digests.put(tokenId, bitmap.digest()));
+		return digests;
+	}
+
+	private ProcessedNftIndex index(String snapshotFile) {
+		return new ProcessedNftIndex(tokenRepository, new ProcessedNftIndexConfiguration(100, snapshotFile),
+				new SimpleMeterRegistry());
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.assets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+class SerialBitmapTest {
+
+	@Test
+	void test_add_matchesSortedSet() {
+		SerialBitmap bitmap = new SerialBitmap();
+		TreeSet<Long> expected = new TreeSet<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20_000; i++) {
+			// mostly a dense run that outgrows an array chunk, plus sparse outliers
+			long serialNumber = i % 4 == 0 ? random.nextLong(SerialBitmap.MAX_SERIAL_NUMBER + 1)
+					: random.nextInt(10_000);
+			Assertions.assertEquals(expected.add(serialNumber), bitmap.add(serialNumber));
+		}
+
+		Assertions.assertEquals(expected.size(), bitmap.getCardinality());
+		expected.forEach(serialNumber -> Assertions.assertTrue(bitmap.contains(serialNumber)));
+		Assertions.assertFalse(bitmap.contains(10_001));
+		List<Long> serialNumbers = new ArrayList<>();
+		bitmap.forEach(serialNumbers::add);
+		Assertions.assertEquals(List.copyOf(expected), serialNumbers);
+	}
+
+	@Test
+	void test_add_denseSerialsTakeAboutABitEach() {
+		SerialBitmap bitmap = new SerialBitmap();
+		for (long serialNumber = 1; serialNumber <= 1_000_000; serialNumber++) {
+			bitmap.add(serialNumber);
+		}
+
+		Assertions.assertEquals(1_000_000, bitmap.getCardinality());
+		Assertions.assertTrue(bitmap.getSizeInBytes() < 140_000, "Took " + bitmap.getSizeInBytes() + " bytes");
+	}
+
+	@Test
+	void test_add_unsupportedSerialNumber() {
+		SerialBitmap bitmap = new SerialBitmap();
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> bitmap.add(SerialBitmap.MAX_SERIAL_NUMBER + 1));
+		Assertions.assertFalse(bitmap.contains(-1));
+		Assertions.assertTrue(bitmap.add(SerialBitmap.MAX_SERIAL_NUMBER));
+	}
+
+	@Test
+	void test_digest_tellsSetsOfTheSameSizeApart() {
+		SerialBitmap bitmap = new SerialBitmap();
+		bitmap.add(1);
+		bitmap.add(SerialBitmap.MAX_SERIAL_NUMBER);
+		SerialBitmap other = new SerialBitmap();
+		other.add(2);
+		other.add(SerialBitmap.MAX_SERIAL_NUMBER);
+
+		Assertions.assertEquals(2, bitmap.digest().cardinality());
+		Assertions.assertEquals(1 + SerialBitmap.MAX_SERIAL_NUMBER, bitmap.digest().sum());
+		// wraps around at 64 bits like the sum of squares does
+		Assertions.assertEquals(1 + SerialBitmap.MAX_SERIAL_NUMBER * SerialBitmap.MAX_SERIAL_NUMBER,
+				bitmap.digest().sumOfSquares());
+		Assertions.assertNotEquals(bitmap.digest(), other.digest());
+	}
+
+	@Test
+	void test_writeTo_roundTrips() throws IOException {
+		SerialBitmap bitmap = new SerialBitmap();
+		for (long serialNumber = 0; serialNumber < 70_000; serialNumber += 3) {
+			bitmap.add(serialNumber);
+		}
+		bitmap.add(5_000_000);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bitmap.writeTo(new DataOutputStream(bytes));
+
+		SerialBitmap copy = SerialBitmap.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		Assertions.assertEquals(bitmap.getCardinality(), copy.getCardinality());
+		List<Long> expected = new ArrayList<>();
+		bitmap.forEach(expected::add);
+		List<Long> actual = new ArrayList<>();
+		copy.forEach(actual::add);
+		Assertions.assertEquals(expected, actual);
+	}
+
+}
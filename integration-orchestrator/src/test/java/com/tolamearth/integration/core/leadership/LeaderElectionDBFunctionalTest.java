@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.leadership;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+@MicronautTest
+@Property(name = "leader-election.enabled", value = "true")
+@Property(name = "leader-election.check-interval", value = "1h")
+@Property(name = "leader-election.node-id", value = "test-node-a")
+public class LeaderElectionDBFunctionalTest {
+
+	@Inject
+	LeaderElection leaderElection;
+
+	@Inject
+	LeaderElectionConfiguration configuration;
+
+	@Value("${jpa.default.properties.hibernate.connection.url}")
+	String databaseUrl;
+
+	@Value("${jpa.default.properties.hibernate.connection.username}")
+	String databaseUser;
+
+	@Value("${jpa.default.properties.hibernate.connection.password}")
+	String databasePassword;
+
+	@Test
+	void test_leaderElection_failsOverWhenLeaderStops() throws InterruptedException {
+		LeaderElection follower = new LeaderElection(
+				new LeaderElectionConfiguration(true, configuration.lockKey(), Duration.ofHours(1),
+						configuration.checkTimeout(), "test-node-b"),
+				new SimpleMeterRegistry(), databaseUrl, databaseUser, databasePassword);
+
+		await(leaderElection::isLeader);
+		follower.checkLeadership();
+		Thread.sleep(500);
+
+		Assertions.assertFalse(follower.isLeader());
+		LeaderStatus status = follower.getStatus().block();
+		Assertions.assertEquals("test-node-b", status.nodeId());
+		Assertions.assertEquals("test-node-a", status.leaderNodeId());
+
+		leaderElection.close();
+		follower.checkLeadership();
+		await(follower::isLeader);
+
+		Assertions.assertFalse(leaderElection.isLeader());
+		Assertions.assertEquals("test-node-b", leaderElection.getStatus().block().leaderNodeId());
+		follower.close();
+	}
+
+	private void await(BooleanSupplier condition) throws InterruptedException {
+		for (int attempt = 0; attempt < 50 && !condition.getAsBoolean(); attempt++) {
+			Thread.sleep(100);
+		}
+		Assertions.assertTrue(condition.getAsBoolean());
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.sharding;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class ConsistentHashRingTest {
+
+	private static final List<String> KEYS = IntStream.range(0, 1000).mapToObj(account -> "0.0." + account)
+			.collect(Collectors.toList());
+
+	@Test
+	void test_getNode_spreadsKeysAcrossNodes() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 64);
+
+		Map<String, Long> keysByNode = KEYS.stream()
+				.collect(Collectors.groupingBy(ring::getNode, Collectors.counting()));
+
+		Assertions.assertEquals(3, keysByNode.size());
+		keysByNode.values().forEach(keys -> Assertions.assertTrue(keys > 200, "Unbalanced ring: " + keysByNode));
+		Assertions.assertEquals(keysByNode, KEYS.stream().collect(Collectors.groupingBy(
+				new ConsistentHashRing(List.of("node-c", "node-a", "node-b"), 64)::getNode, Collectors.counting())));
+	}
+
+	@Test
+	void test_getNode_joiningNodeOnlyTakesKeys() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b"), 64);
+		ConsistentHashRing grownRing = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 64);
+
+		Map<String, String> owners = KEYS.stream().collect(Collectors.toMap(Function.identity(), ring::getNode));
+
+		KEYS.stream().filter(key -> !grownRing.getNode(key).equals(owners.get(key)))
+				.forEach(key -> Assertions.assertEquals("node-c", grownRing.getNode(key)));
+	}
+
+	@Test
+	void test_getNode_emptyRing() {
+		Assertions.assertNull(new ConsistentHashRing(List.of(), 64).getNode("0.0.1"));
+	}
+
+}
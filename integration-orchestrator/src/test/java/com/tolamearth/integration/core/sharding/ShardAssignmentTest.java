@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.core.sharding;
+
+import com.tolamearth.integration.core.leadership.LeaderElection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ShardAssignmentTest {
+
+	NodeHeartbeatRepository heartbeatRepository;
+
+	ShardAssignment shardAssignment;
+
+	@BeforeEach
+	void initAssignment() {
+		heartbeatRepository = mock(NodeHeartbeatRepository.class);
+		when(heartbeatRepository.beat(any(), any()))
+				.thenAnswer(invocation -> Mono.just(new NodeHeartbeat("node-a", invocation.getArgument(1))));
+		when(heartbeatRepository.deleteByLastHeartbeatLessThan(any())).thenReturn(Mono.just(0L));
+
+		LeaderElection leaderElection = mock(LeaderElection.class);
+		when(leaderElection.getNodeId()).thenReturn("node-a");
+		shardAssignment = new ShardAssignment(
+				new ShardingConfiguration(true, Duration.ofSeconds(5), Duration.ofSeconds(20), 64), heartbeatRepository,
+				leaderElection, new SimpleMeterRegistry());
+	}
+
+	@Test
+	void test_heartbeat_rebalancesAsNodesJoinAndLeave() {
+		Assertions.assertFalse(shardAssignment.owns("0.0.1"));
+
+		when(heartbeatRepository.findByLastHeartbeatGreaterThan(any())).thenReturn(Flux.just(node("node-a")));
+		shardAssignment.heartbeat();
+		Assertions.assertEquals(Set.of("node-a"), shardAssignment.getNodes());
+		Assertions.assertEquals(100, ownedAccounts());
+
+		when(heartbeatRepository.findByLastHeartbeatGreaterThan(any()))
+				.thenReturn(Flux.just(node("node-a"), node("node-b")));
+		shardAssignment.heartbeat();
+		Assertions.assertEquals(Set.of("node-a", "node-b"), shardAssignment.getNodes());
+		long ownedAccounts = ownedAccounts();
+		Assertions.assertTrue(ownedAccounts > 0 && ownedAccounts < 100);
+
+		when(heartbeatRepository.findByLastHeartbeatGreaterThan(any())).thenReturn(Flux.just(node("node-b")));
+		shardAssignment.heartbeat();
+		Assertions.assertEquals(Set.of("node-a", "node-b"), shardAssignment.getNodes());
+
+		when(heartbeatRepository.findByLastHeartbeatGreaterThan(any())).thenReturn(Flux.empty());
+		shardAssignment.heartbeat();
+		Assertions.assertEquals(100, ownedAccounts());
+
+		verify(heartbeatRepository, times(4)).beat(eq("node-a"), any());
+		verify(heartbeatRepository, times(4)).deleteByLastHeartbeatLessThan(any());
+	}
+
+	@Test
+	void test_heartbeat_keepsRingWhenHeartbeatFails() {
+		when(heartbeatRepository.findByLastHeartbeatGreaterThan(any()))
+				.thenReturn(Flux.just(node("node-a"), node("node-b")));
+		shardAssignment.heartbeat();
+
+		when(heartbeatRepository.beat(any(), any())).thenReturn(Mono.error(new RuntimeException("uh oh!")));
+		shardAssignment.heartbeat();
+
+		Assertions.assertEquals(Set.of("node-a", "node-b"), shardAssignment.getNodes());
+	}
+
+	private long ownedAccounts() {
+		return IntStream.range(0, 100).filter(account -> shardAssignment.owns("0.0." + account)).count();
+	}
+
+	private static NodeHeartbeat node(String nodeId) {
+		return new NodeHeartbeat(nodeId, Instant.now());
+	}
+
+}
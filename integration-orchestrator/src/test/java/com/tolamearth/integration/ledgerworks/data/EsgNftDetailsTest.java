@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class EsgNftDetailsTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void test_deserialize_keepsFlatAttributes() throws IOException {
+		EsgNftDetails details = objectMapper.readValue("""
+				{"tokenId": "0.0.1001", "serialNumber": "7", "owner": {"id": "0.0.2"}, "attributes": [
+				  {"value": "Solar", "description": "Project Type", "title": "Project Type"},
+				  {"title": "Vintage", "type": "number", "value": 2021},
+				  {"title": "Project Owner", "value": [{"title": "Title", "value": "Owner"}]},
+				  {"description": "No title", "value": "Ignored"},
+				  "unexpected"
+				]}
+				""", EsgNftDetails.class);
+
+		Assertions.assertEquals(
+				new EsgNftDetails("0.0.1001", 7L, List.of(new EsgNftDetails.Attribute("Project Type", "Solar"),
+						new EsgNftDetails.Attribute("Vintage", "2021"))),
+				details);
+	}
+
+	@Test
+	void test_deserialize_missingFields() throws IOException {
+		EsgNftDetails details = objectMapper.readValue("{\"tokenId\": \"0.0.1001\"}", EsgNftDetails.class);
+
+		Assertions.assertEquals(new EsgNftDetails("0.0.1001", null, null), details);
+	}
+
+	@Test
+	void test_serialize_roundTrip() throws IOException {
+		EsgNftDetails details = EsgNftDetails.builder().tokenId("0.0.1001").serialNumber(1L)
+				.attributes(List.of(new EsgNftDetails.Attribute("Project Country", "India"))).build();
+
+		Assertions.assertEquals(details,
+				objectMapper.readValue(objectMapper.writeValueAsBytes(details), EsgNftDetails.class));
+	}
+
+}
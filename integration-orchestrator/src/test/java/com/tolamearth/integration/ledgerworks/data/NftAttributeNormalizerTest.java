@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+class NftAttributeNormalizerTest {
+
+	static NftAttributeNormalizer normalizer;
+
+	@BeforeAll
+	static void initNormalizer() throws IOException {
+		normalizer = new NftAttributeNormalizer(NftAttributeNormalizer.loadBundledDictionaries(new ObjectMapper()));
+	}
+
+	@Test
+	void test_normalize_esgResponse() throws IOException {
+		EsgNftDetails nftDetails;
+		try (InputStream response = getClass().getResourceAsStream("/EsgOffsetApiResponse.json")) {
+			nftDetails = new ObjectMapper().readValue(response, EsgNftDetails.class);
+		}
+
+		TokenDetails details = normalizer.normalize(nftDetails);
+
+		Assertions.assertEquals(2021, details.vintageYear());
+		Assertions.assertEquals("RENEW_ENERGY", details.projectCategory());
+		Assertions.assertEquals("WIND", details.projectType());
+		Assertions.assertEquals("IND", details.country());
+		Assertions.assertEquals("GJ", details.firstSubdivision());
+	}
+
+	@Test
+	void test_normalize_ignoresCaseAndWhitespace() {
+		TokenDetails details = normalizer.normalize(nftDetails(Map.of(" project CATEGORY", "  renewable energy ",
+				"PROJECT TYPE", "improved cookstove", "Project Country", "kenya", "Vintage", "2020")));
+
+		Assertions.assertEquals("RENEW_ENERGY", details.projectCategory());
+		Assertions.assertEquals("EMM_RED", details.projectType());
+		Assertions.assertEquals("KEN", details.country());
+		Assertions.assertEquals(2020, details.vintageYear());
+	}
+
+	@Test
+	void test_normalize_documentedCodes() {
+		for (String category : List.of("RENEW_ENERGY", "WASTE_MGMT", "FOREST_CONSERV", "COMM_ENRGY_EFF")) {
+			Assertions.assertEquals(category,
+					normalizer.normalize(nftDetails(Map.of("Project Category", category))).projectCategory());
+		}
+		for (String type : List.of("SOLAR", "WIND", "EMM_RED", "EFF_REFOR", "AGG_LAND_MGMT")) {
+			Assertions.assertEquals(type, normalizer.normalize(nftDetails(Map.of("Project Type", type))).projectType());
+		}
+	}
+
+	@Test
+	void test_normalize_everyIsoCountry() {
+		for (String alpha2 : Locale.getISOCountries()) {
+			Locale country = new Locale("", alpha2);
+			String alpha3 = country.getISO3Country();
+			for (String spelling : List.of(alpha2, alpha3, country.getDisplayCountry(Locale.ENGLISH))) {
+				Assertions.assertEquals(alpha3,
+						normalizer.normalize(nftDetails(Map.of("Project Country", spelling))).country(), spelling);
+			}
+		}
+		Assertions.assertEquals("USA",
+				normalizer.normalize(nftDetails(Map.of("Project Country", "United States of America"))).country());
+	}
+
+	@Test
+	void test_normalize_unknownValues() {
+		IllegalStateException exception = Assertions.assertThrows(IllegalStateException.class,
+				() -> normalizer.normalize(nftDetails(Map.of("Project Type", "Geothermal"))));
+		Assertions.assertEquals("Unexpected project type 'Geothermal'.", exception.getMessage());
+		Assertions.assertEquals("01",
+				normalizer.normalize(nftDetails(Map.of("State/Province", "Nairobi"))).firstSubdivision());
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> normalizer.normalize(EsgNftDetails.builder().tokenId("0.0.1").build()));
+	}
+
+	@Test
+	void test_compile_rejectsConflictingSpellings() {
+		NftAttributeDictionaries dictionaries = new NftAttributeDictionaries(Map.of(), Map.of(),
+				Map.of("SOLAR", List.of("Sun"), "WIND", List.of("sun")), Map.of(), Map.of(), "01");
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new NftAttributeNormalizer(dictionaries));
+	}
+
+	private static EsgNftDetails nftDetails(Map<String, String> attributes) {
+		return EsgNftDetails.builder().tokenId("0.0.1001").serialNumber(1L).attributes(attributes.entrySet().stream()
+				.map(attribute -> new EsgNftDetails.Attribute(attribute.getKey(), attribute.getValue())).toList())
+				.build();
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+public class TransactionsResponseTest {
+
+	@Test
+	void testProjection() throws IOException {
+		TransactionsResponse response;
+		try (InputStream testData = getClass().getResourceAsStream("/LedgerWorksTransactionsResponse.json")) {
+			response = new ObjectMapper().readValue(testData, TransactionsResponse.class);
+		}
+
+		Assertions.assertEquals(2, response.transactions().size());
+		Transaction transaction = response.transactions().get(0);
+		Assertions.assertEquals("0.0.48243542-1664465423-759231285", transaction.transactionId());
+		Assertions.assertEquals("1664465437.569780388", transaction.consensusTimestamp());
+		Assertions.assertEquals("TOKENMINT", transaction.name());
+		Assertions.assertEquals("", transaction.memoBase64());
+		Assertions.assertEquals(List.of(new NftTransfer("0.0.48243542", null, 3001, "0.0.48243577")),
+				transaction.nftTransfers());
+		Assertions.assertEquals(5, response.transactions().get(1).nftTransfers().size());
+		Assertions.assertEquals("1664465444.762686730", response.links().nextTimestamp().orElseThrow());
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.core.EventEmitter;
+import com.tolamearth.integration.core.discovery.BackfillShard;
+import com.tolamearth.integration.core.discovery.BackfillShardRepository;
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpointRepository;
+import com.tolamearth.integration.core.sharding.ShardAssignment;
+import com.tolamearth.integration.ledgerworks.data.Links;
+import com.tolamearth.integration.ledgerworks.data.NftTransfer;
+import com.tolamearth.integration.ledgerworks.data.TokenResponse;
+import com.tolamearth.integration.ledgerworks.data.Transaction;
+import com.tolamearth.integration.ledgerworks.data.TransactionsResponse;
+import com.tolamearth.integration.ledgerworks.http.LedgerWorksClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BackfillServiceTest {
+
+	private static final Instant START = Instant.ofEpochSecond(1660000000);
+
+	private static final Instant END = Instant.ofEpochSecond(1660000100);
+
+	LedgerWorksClient ledgerWorksClient;
+
+	BackfillShardRepository shardRepository;
+
+	PollingTokenDiscoveryService discoveryService;
+
+	BackfillService backfillService;
+
+	@BeforeEach
+	void initService() {
+		ledgerWorksClient = mock(LedgerWorksClient.class);
+		shardRepository = mock(BackfillShardRepository.class);
+		when(shardRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		when(shardRepository.update(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		TokenDiscoveryConfiguration configuration = new TokenDiscoveryConfiguration(100, 10, 4,
+				TokenDiscoveryConfiguration.TransferLookup.WHEN_MISSING, Duration.ofSeconds(2), Duration.ofSeconds(60),
+				2d, Duration.ofSeconds(60), 1024, EventEmitter.OverflowStrategy.BLOCK);
+		discoveryService = new PollingTokenDiscoveryService(ledgerWorksClient, configuration,
+				new DiscoveryMetrics(new SimpleMeterRegistry()), mock(DiscoveryCheckpointRepository.class),
+				mock(TreasuryAccountResolver.class), new SeenTransactions(100), mock(ShardAssignment.class));
+		backfillService = new BackfillService(ledgerWorksClient, discoveryService, shardRepository, configuration,
+				new BackfillConfiguration(2, 2, 2));
+	}
+
+	@Test
+	void test_backfill_mergesShardsInConsensusOrder() {
+		Transaction mint1 = mintTransaction("test-transaction-id-1", "1660000010.000000001");
+		Transaction mint2 = mintTransaction("test-transaction-id-2", "1660000060.000000001");
+
+		when(ledgerWorksClient.getToken(eq("0.0.1"))).thenReturn(Mono.just(new TokenResponse("test-account-id")));
+
+		// the first shard answers last, its mint must still come out first
+		when(ledgerWorksClient.getTransactionsInRange(eq("test-account-id"), any(), any(), anyInt(),
+				eq("1659999999.999999999"), eq("1660000050.000000000")))
+						.thenReturn(Mono.just(TransactionsResponse.builder().transactions(List.of(mint1)).build())
+								.delayElement(Duration.ofMillis(200)));
+		when(ledgerWorksClient.getTransactionsInRange(eq("test-account-id"), any(), any(), anyInt(),
+				eq("1660000049.999999999"), eq("1660000100.000000000")))
+						.thenReturn(Mono.just(TransactionsResponse.builder().transactions(List.of(mint2)).build()));
+
+		StepVerifier.create(discoveryService.getMintedTransactions())
+				.then(() -> backfillService.startBackfill("0.0.1", START, END, null).subscribe()).expectNext(mint1)
+				.expectNext(mint2).thenCancel().verify(Duration.ofSeconds(5));
+
+		ArgumentCaptor<BackfillShard> shards = ArgumentCaptor.forClass(BackfillShard.class);
+		verify(shardRepository, timeout(1000).times(4)).update(shards.capture());
+		Assertions.assertTrue(shards.getAllValues().stream().allMatch(BackfillShard::isCompleted));
+		Assertions.assertEquals("1660000060.000000001", shards.getAllValues().get(3).getCursor());
+		verify(ledgerWorksClient, never()).getTransaction(any());
+	}
+
+	@Test
+	void test_backfill_readsShardPagesAheadConcurrently() {
+		Transaction mint1 = mintTransaction("test-transaction-id-1", "1660000010.000000001");
+		Transaction mint2 = mintTransaction("test-transaction-id-2", "1660000020.000000001");
+		Transaction mint3 = mintTransaction("test-transaction-id-3", "1660000060.000000001");
+		Transaction mint4 = mintTransaction("test-transaction-id-4", "1660000070.000000001");
+		List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+		when(ledgerWorksClient.getToken(eq("0.0.1"))).thenReturn(Mono.just(new TokenResponse("test-account-id")));
+		stubDelayedPage(requests, "1659999999.999999999", "1660000050.000000000", mint1, "1660000010.000000001");
+		stubDelayedPage(requests, "1660000010.000000001", "1660000050.000000000", mint2, null);
+		stubDelayedPage(requests, "1660000049.999999999", "1660000100.000000000", mint3, "1660000060.000000001");
+		stubDelayedPage(requests, "1660000060.000000001", "1660000100.000000000", mint4, null);
+
+		StepVerifier.create(discoveryService.getMintedTransactions())
+				.then(() -> backfillService.startBackfill("0.0.1", START, END, null).subscribe()).expectNext(mint1)
+				.expectNext(mint2).expectNext(mint3).expectNext(mint4).thenCancel().verify(Duration.ofSeconds(5));
+
+		// the second shard fetches both of its pages while the first one is still paging
+		Assertions.assertTrue(
+				requests.indexOf("start 1660000060.000000001") < requests.indexOf("end 1660000010.000000001"),
+				requests::toString);
+	}
+
+	@Test
+	void test_backfill_boundsShardReadAhead() {
+		AtomicInteger secondShardRequests = new AtomicInteger();
+		AtomicInteger secondShardRequestsBeforeFirstShard = new AtomicInteger();
+
+		when(ledgerWorksClient.getToken(eq("0.0.1"))).thenReturn(Mono.just(new TokenResponse("test-account-id")));
+		when(ledgerWorksClient.getTransactionsInRange(eq("test-account-id"), any(), any(), anyInt(),
+				eq("1659999999.999999999"), eq("1660000050.000000000")))
+						.thenReturn(
+								Mono.defer(() -> Mono
+										.just(TransactionsResponse.builder()
+												.transactions(List.of(mintTransaction("test-transaction-id-0",
+														"1660000010.000000001")))
+												.build())
+										.delayElement(Duration.ofMillis(500))
+										.doOnNext(page -> secondShardRequestsBeforeFirstShard
+												.set(secondShardRequests.get()))));
+		// the second shard has far more pages than its read-ahead budget
+		when(ledgerWorksClient.getTransactionsInRange(eq("test-account-id"), any(), any(), anyInt(), any(),
+				eq("1660000100.000000000"))).thenAnswer(invocation -> Mono.fromSupplier(() -> {
+					int index = secondShardRequests.incrementAndGet();
+					String timestamp = "16600000" + (50 + index) + ".000000001";
+					return TransactionsResponse.builder()
+							.transactions(List.of(mintTransaction("test-transaction-id-" + index, timestamp)))
+							.links(index < 20 ? new Links("/api/v1/accounts/test-account-id?timestamp=gt:" + timestamp)
+									: null)
+							.build();
+				}));
+
+		StepVerifier.create(discoveryService.getMintedTransactions())
+				.then(() -> backfillService.startBackfill("0.0.1", START, END, null).subscribe()).expectNextCount(21)
+				.thenCancel().verify(Duration.ofSeconds(5));
+
+		Assertions.assertTrue(secondShardRequestsBeforeFirstShard.get() > 0);
+		// two buffered pages, the one being resolved, the one queued for it and the fetch
+		// in
+		// flight
+		Assertions.assertTrue(secondShardRequestsBeforeFirstShard.get() <= 5,
+				() -> secondShardRequestsBeforeFirstShard.get() + " pages read ahead");
+	}
+
+	@Test
+	void test_backfill_resumesFromShardCheckpoints() {
+		BackfillShard completedShard = BackfillShard.builder().id("test-backfill-0").backfillId("test-backfill")
+				.shardIndex(0).treasuryAccountId("test-account-id").rangeStart("1659999999.999999999")
+				.rangeEnd("1660000050.000000000").completed(true).build();
+		BackfillShard pendingShard = BackfillShard.builder().id("test-backfill-1").backfillId("test-backfill")
+				.shardIndex(1).treasuryAccountId("test-account-id").rangeStart("1660000049.999999999")
+				.rangeEnd("1660000100.000000000").cursor("1660000070.000000001").build();
+
+		when(shardRepository.findByBackfillIdOrderByShardIndex(eq("test-backfill")))
+				.thenReturn(Flux.just(completedShard, pendingShard));
+		when(ledgerWorksClient.getTransactionsInRange(any(), any(), any(), anyInt(), any(), any()))
+				.thenReturn(Mono.empty());
+
+		StepVerifier.create(backfillService.resumeBackfill("test-backfill")).expectNextCount(1).verifyComplete();
+
+		verify(ledgerWorksClient, timeout(1000)).getTransactionsInRange(eq("test-account-id"), any(), any(), anyInt(),
+				eq("1660000070.000000001"), eq("1660000100.000000000"));
+		verify(ledgerWorksClient, times(1)).getTransactionsInRange(any(), any(), any(), anyInt(), any(), any());
+		verify(shardRepository, timeout(1000)).update(pendingShard);
+		Assertions.assertTrue(pendingShard.isCompleted());
+	}
+
+	private void stubDelayedPage(List<String> requests, String after, String end, Transaction mint,
+			String nextTimestamp) {
+		TransactionsResponse page = TransactionsResponse.builder().transactions(List.of(mint))
+				.links(new Links(Objects.isNull(nextTimestamp) ? null
+						: "/api/v1/accounts/test-account-id?timestamp=gt:" + nextTimestamp))
+				.build();
+		when(ledgerWorksClient.getTransactionsInRange(eq("test-account-id"), any(), any(), anyInt(), eq(after),
+				eq(end))).thenReturn(Mono.defer(() -> {
+					requests.add("start " + after);
+					return Mono.just(page).delayElement(Duration.ofMillis(200))
+							.doOnNext(response -> requests.add("end " + after));
+				}));
+	}
+
+	private Transaction mintTransaction(String transactionId, String consensusTimestamp) {
+		return Transaction.builder().transactionId(transactionId).consensusTimestamp(consensusTimestamp)
+				.name("TOKENMINT").nftTransfers(List.of(NftTransfer.builder().tokenId("0.0.1").serialNumber(1).build()))
+				.build();
+	}
+
+}
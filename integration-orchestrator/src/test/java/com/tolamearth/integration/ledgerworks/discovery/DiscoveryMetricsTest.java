@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+class DiscoveryMetricsTest {
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	DiscoveryMetrics metrics = new DiscoveryMetrics(meterRegistry);
+
+	@Test
+	void test_recordAccountPolled_lagFollowsChainPosition() {
+		metrics.recordListedMint("0.0.1001", "1660000000.500000000");
+		metrics.recordAccountPolled("0.0.1001", Instant.now(), false, 100);
+
+		Assertions.assertEquals(1660000000.5, accountGauge("token.discovery.account.last.mint"));
+		Assertions
+				.assertTrue(accountGauge("token.discovery.account.lag") > Instant.now().getEpochSecond() - 1660000001);
+
+		metrics.recordAccountPolled("0.0.1001", Instant.now(), true, 0);
+
+		Assertions.assertTrue(accountGauge("token.discovery.account.lag") < 1);
+		Assertions.assertEquals(2,
+				meterRegistry.get("token.discovery.account.mints").tag("account", "0.0.1001").summary().count());
+		Assertions.assertEquals(100,
+				meterRegistry.get("token.discovery.account.mints").tag("account", "0.0.1001").summary().totalAmount());
+	}
+
+	@Test
+	void test_removeAccount_removesAccountMeters() {
+		metrics.recordListedMint("0.0.1001", "1660000000.500000000");
+		metrics.recordPagesFetched("0.0.1001", 2);
+		metrics.recordAccountPolled("0.0.1001", Instant.now(), true, 3);
+		metrics.recordAccountError("0.0.1001");
+		StepVerifier.create(Mono.just("page").transform(metrics.timeRequest("getTransactions", "0.0.1001")))
+				.expectNext("page").verifyComplete();
+		metrics.recordListedMint("0.0.1002", "1660000000.500000000");
+		metrics.recordPagesFetched("0.0.1002", 1);
+
+		metrics.removeAccount("0.0.1001");
+		metrics.removeAccount("0.0.1003");
+
+		Assertions.assertTrue(meterRegistry.getMeters().stream()
+				.noneMatch(meter -> "0.0.1001".equals(meter.getId().getTag("account"))));
+		Assertions.assertNotNull(meterRegistry.find("token.discovery.account.lag").tag("account", "0.0.1002").gauge());
+		Assertions.assertNotNull(meterRegistry.find("token.discovery.pages").tag("account", "0.0.1002").summary());
+
+		metrics.recordListedMint("0.0.1001", "1660000001.000000000");
+
+		Assertions.assertEquals(1660000001, accountGauge("token.discovery.account.last.mint"));
+	}
+
+	@Test
+	void test_timeRequest_tagsOutcome() {
+		StepVerifier.create(Mono.just("page").transform(metrics.timeRequest("getTransactions", "0.0.1001")))
+				.expectNext("page").verifyComplete();
+		StepVerifier.create(Mono.error(new RuntimeException("uh oh!"))
+				.transform(metrics.timeRequest("getTransactions", "0.0.1001"))).verifyError();
+
+		Assertions.assertEquals(1, meterRegistry.get("token.discovery.requests").tag("operation", "getTransactions")
+				.tag("account", "0.0.1001").tag("outcome", "success").timer().count());
+		Assertions.assertEquals(1, meterRegistry.get("token.discovery.requests").tag("operation", "getTransactions")
+				.tag("account", "0.0.1001").tag("outcome", "error").timer().count());
+	}
+
+	private double accountGauge(String name) {
+		return meterRegistry.get(name).tag("account", "0.0.1001").gauge().value();
+	}
+
+}
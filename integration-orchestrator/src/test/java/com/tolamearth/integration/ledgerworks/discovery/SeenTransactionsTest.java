@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.ledgerworks.data.Transaction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SeenTransactionsTest {
+
+	@Test
+	void test_isSeen_evictsLeastRecentlyUsed() {
+		SeenTransactions seenTransactions = new SeenTransactions(2);
+		Transaction transaction1 = transaction("test-transaction-id-1", null);
+		Transaction transaction2 = transaction("test-transaction-id-2", null);
+		Transaction transaction3 = transaction("test-transaction-id-3", null);
+
+		seenTransactions.markSeen("test-account-id", transaction1);
+		seenTransactions.markSeen("test-account-id", transaction2);
+		Assertions.assertTrue(seenTransactions.isSeen("test-account-id", transaction1));
+		seenTransactions.markSeen("test-account-id", transaction3);
+
+		Assertions.assertTrue(seenTransactions.isSeen("test-account-id", transaction1));
+		Assertions.assertFalse(seenTransactions.isSeen("test-account-id", transaction2));
+		Assertions.assertTrue(seenTransactions.isSeen("test-account-id", transaction3));
+	}
+
+	@Test
+	void test_isSeen_coversTransactionsBeforeWatermark() {
+		SeenTransactions seenTransactions = new SeenTransactions(1);
+		seenTransactions.markSeen("test-account-id", transaction("test-transaction-id-2", "1660000005.000000001"));
+		seenTransactions.markSeen("test-account-id", transaction("test-transaction-id-3", "1660000010.000000001"));
+
+		Assertions.assertTrue(seenTransactions.isSeen("test-account-id",
+				transaction("test-transaction-id-1", "1660000000.000000001")));
+		Assertions.assertTrue(seenTransactions.isSeen("test-account-id",
+				transaction("test-transaction-id-2", "1660000005.000000001")));
+		Assertions.assertFalse(seenTransactions.isSeen("test-account-id",
+				transaction("test-transaction-id-4", "1660000015.000000001")));
+		Assertions.assertFalse(seenTransactions.isSeen("other-account-id",
+				transaction("test-transaction-id-1", "1660000000.000000001")));
+	}
+
+	private static Transaction transaction(String transactionId, String consensusTimestamp) {
+		return Transaction.builder().transactionId(transactionId).consensusTimestamp(consensusTimestamp).build();
+	}
+
+}
@@ -16,10 +16,19 @@
 
 package com.tolamearth.integration.ledgerworks.discovery;
 
+import com.tolamearth.integration.core.EventEmitter;
+import com.tolamearth.integration.core.leadership.LeaderElection;
+import com.tolamearth.integration.core.sharding.ShardAssignment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.micronaut.test.annotation.MockBean;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.mockito.Mockito.*;
 
@@ -36,8 +45,113 @@ public class TokenDiscoverySchedulerTest {
 		verify(this.tokenDiscoveryService, timeout(5000)).discoverMintedTokens();
 	}
 
+	@Test
+	void discoverTokens_adaptiveInterval() throws InterruptedException {
+		PollingTokenDiscoveryService discoveryService = mock(PollingTokenDiscoveryService.class);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		TokenDiscoveryConfiguration configuration = new TokenDiscoveryConfiguration(100, 10, 4,
+				TokenDiscoveryConfiguration.TransferLookup.WHEN_MISSING, Duration.ofMillis(10), Duration.ofMillis(40),
+				2d, Duration.ofSeconds(5), 1024, EventEmitter.OverflowStrategy.BLOCK);
+		TokenDiscoveryScheduler scheduler = new TokenDiscoveryScheduler(discoveryService, configuration,
+				new DiscoveryMetrics(meterRegistry), leaderElection(true), shardAssignment(false));
+
+		when(discoveryService.discoverMintedTokens()).thenReturn(Mono.just(DiscoveryCycle.EMPTY));
+		Assertions.assertEquals(10, nextPollInterval(scheduler, meterRegistry));
+		Assertions.assertEquals(20, nextPollInterval(scheduler, meterRegistry));
+		Assertions.assertEquals(40, nextPollInterval(scheduler, meterRegistry));
+		Assertions.assertEquals(40, nextPollInterval(scheduler, meterRegistry));
+
+		when(discoveryService.discoverMintedTokens()).thenReturn(Mono.just(new DiscoveryCycle(100, 1)));
+		Assertions.assertEquals(0, nextPollInterval(scheduler, meterRegistry));
+
+		when(discoveryService.discoverMintedTokens()).thenReturn(Mono.just(new DiscoveryCycle(5, 0.05)));
+		Assertions.assertEquals(10, nextPollInterval(scheduler, meterRegistry));
+	}
+
+	@Test
+	void discoverTokens_skipsTickWhileCycleInFlight() throws InterruptedException {
+		PollingTokenDiscoveryService discoveryService = mock(PollingTokenDiscoveryService.class);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		TokenDiscoveryConfiguration configuration = new TokenDiscoveryConfiguration(100, 10, 4,
+				TokenDiscoveryConfiguration.TransferLookup.WHEN_MISSING, Duration.ofMillis(10), Duration.ofMillis(40),
+				2d, Duration.ofMillis(200), 1024, EventEmitter.OverflowStrategy.BLOCK);
+		TokenDiscoveryScheduler scheduler = new TokenDiscoveryScheduler(discoveryService, configuration,
+				new DiscoveryMetrics(meterRegistry), leaderElection(true), shardAssignment(false));
+		AtomicBoolean cancelled = new AtomicBoolean();
+
+		when(discoveryService.discoverMintedTokens())
+				.thenReturn(Mono.<DiscoveryCycle>never().doOnCancel(() -> cancelled.set(true)));
+		scheduler.discoverTokens();
+		Thread.sleep(50);
+		scheduler.discoverTokens();
+
+		verify(discoveryService, times(1)).discoverMintedTokens();
+		Assertions.assertEquals(1, meterRegistry.get("token.discovery.ticks.skipped").counter().count());
+
+		Thread.sleep(300);
+		Assertions.assertTrue(cancelled.get());
+		Assertions.assertEquals(1, meterRegistry.get("token.discovery.cycles.timed.out").counter().count());
+
+		when(discoveryService.discoverMintedTokens()).thenReturn(Mono.just(DiscoveryCycle.EMPTY));
+		scheduler.discoverTokens();
+		verify(discoveryService, times(2)).discoverMintedTokens();
+	}
+
+	@Test
+	void discoverTokens_onlyLeaderPolls() {
+		PollingTokenDiscoveryService discoveryService = mock(PollingTokenDiscoveryService.class);
+		TokenDiscoveryConfiguration configuration = new TokenDiscoveryConfiguration(100, 10, 4,
+				TokenDiscoveryConfiguration.TransferLookup.WHEN_MISSING, Duration.ofMillis(10), Duration.ofMillis(40),
+				2d, Duration.ofSeconds(5), 1024, EventEmitter.OverflowStrategy.BLOCK);
+		LeaderElection leaderElection = leaderElection(false);
+		TokenDiscoveryScheduler scheduler = new TokenDiscoveryScheduler(discoveryService, configuration,
+				new DiscoveryMetrics(new SimpleMeterRegistry()), leaderElection, shardAssignment(false));
+
+		when(discoveryService.discoverMintedTokens()).thenReturn(Mono.just(DiscoveryCycle.EMPTY));
+		scheduler.discoverTokens();
+		verify(discoveryService, never()).discoverMintedTokens();
+
+		when(leaderElection.isLeader()).thenReturn(true);
+		scheduler.discoverTokens();
+		verify(discoveryService, times(1)).discoverMintedTokens();
+	}
+
+	@Test
+	void discoverTokens_everyShardPolls() {
+		PollingTokenDiscoveryService discoveryService = mock(PollingTokenDiscoveryService.class);
+		TokenDiscoveryConfiguration configuration = new TokenDiscoveryConfiguration(100, 10, 4,
+				TokenDiscoveryConfiguration.TransferLookup.WHEN_MISSING, Duration.ofMillis(10), Duration.ofMillis(40),
+				2d, Duration.ofSeconds(5), 1024, EventEmitter.OverflowStrategy.BLOCK);
+		TokenDiscoveryScheduler scheduler = new TokenDiscoveryScheduler(discoveryService, configuration,
+				new DiscoveryMetrics(new SimpleMeterRegistry()), leaderElection(false), shardAssignment(true));
+
+		when(discoveryService.discoverMintedTokens()).thenReturn(Mono.just(DiscoveryCycle.EMPTY));
+		scheduler.discoverTokens();
+		verify(discoveryService, times(1)).discoverMintedTokens();
+	}
+
+	private LeaderElection leaderElection(boolean leader) {
+		LeaderElection leaderElection = mock(LeaderElection.class);
+		when(leaderElection.isLeader()).thenReturn(leader);
+		return leaderElection;
+	}
+
+	private ShardAssignment shardAssignment(boolean enabled) {
+		ShardAssignment shardAssignment = mock(ShardAssignment.class);
+		when(shardAssignment.isEnabled()).thenReturn(enabled);
+		return shardAssignment;
+	}
+
+	private double nextPollInterval(TokenDiscoveryScheduler scheduler, SimpleMeterRegistry meterRegistry)
+			throws InterruptedException {
+		Thread.sleep(50);
+		scheduler.discoverTokens();
+		return meterRegistry.get("token.discovery.poll.interval").gauge().value();
+	}
+
 	@MockBean(PollingTokenDiscoveryService.class)
 	public PollingTokenDiscoveryService tokenDiscoveryService() {
+		when(this.tokenDiscoveryService.discoverMintedTokens()).thenReturn(Mono.just(DiscoveryCycle.EMPTY));
 		return this.tokenDiscoveryService;
 	}
 
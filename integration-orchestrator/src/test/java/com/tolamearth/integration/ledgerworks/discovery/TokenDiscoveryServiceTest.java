@@ -16,29 +16,41 @@
 
 package com.tolamearth.integration.ledgerworks.discovery;
 
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpoint;
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpointRepository;
+import com.tolamearth.integration.core.sharding.ShardAssignment;
 import com.tolamearth.integration.ledgerworks.http.LedgerWorksClient;
+import com.tolamearth.integration.ledgerworks.data.Links;
 import com.tolamearth.integration.ledgerworks.data.TokenResponse;
 import com.tolamearth.integration.ledgerworks.data.Transaction;
 import com.tolamearth.integration.ledgerworks.data.TransactionsResponse;
+import io.micronaut.context.annotation.Property;
 import io.micronaut.test.annotation.MockBean;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import reactor.test.publisher.TestPublisher;
 
+import java.time.Duration;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @Slf4j
 @MicronautTest(rebuildContext = true)
 public class TokenDiscoveryServiceTest {
 
+	private static final String NEXT_LINK = "/api/v1/transactions?account.id=test-account-id&limit=100&order=asc"
+			+ "&timestamp=gt:1660000000.000000001&transactiontype=TOKENMINT";
+
 	@Inject
 	PollingTokenDiscoveryService tokenDiscoveryService;
 
@@ -50,6 +62,16 @@ public class TokenDiscoveryServiceTest {
 		return mock(LedgerWorksClient.class);
 	}
 
+	@Inject
+	DiscoveryCheckpointRepository checkpointRepository;
+
+	@MockBean(DiscoveryCheckpointRepository.class)
+	DiscoveryCheckpointRepository checkpointRepository() {
+		DiscoveryCheckpointRepository checkpointRepository = mock(DiscoveryCheckpointRepository.class);
+		when(checkpointRepository.findByTokenIdIn(any())).thenReturn(Flux.empty());
+		return checkpointRepository;
+	}
+
 	@Inject
 	TokenDiscoveryScheduler tokenDiscoveryScheduler;
 
@@ -58,6 +80,16 @@ public class TokenDiscoveryServiceTest {
 		return mock(TokenDiscoveryScheduler.class);
 	}
 
+	@Inject
+	ShardAssignment shardAssignment;
+
+	@MockBean(ShardAssignment.class)
+	ShardAssignment shardAssignment() {
+		ShardAssignment shardAssignment = mock(ShardAssignment.class);
+		when(shardAssignment.owns(anyString())).thenReturn(true);
+		return shardAssignment;
+	}
+
 	@Test
 	void test_discoverTokens() {
 
@@ -68,10 +100,11 @@ public class TokenDiscoveryServiceTest {
 
 		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
 
-		when(ledgerWorksClient.getTransactions(any(), any(), any(), any())).thenReturn(Mono.just(TransactionsResponse
-				.builder().transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build(),
-						Transaction.builder().transactionId("test-transaction-id-2").build()))
-				.build()));
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build(),
+								Transaction.builder().transactionId("test-transaction-id-2").build()))
+						.build()));
 
 		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-1"))).thenReturn(
 				Mono.just(TransactionsResponse.builder().transactions(List.of(expectedTransaction1)).build()));
@@ -79,19 +112,18 @@ public class TokenDiscoveryServiceTest {
 		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-2"))).thenReturn(
 				Mono.just(TransactionsResponse.builder().transactions(List.of(expectedTransaction2)).build()));
 
-		StepVerifier.create(tokenDiscoveryService.getMintedTransactions())
-				.then(tokenDiscoveryService::discoverMintedTokens).expectNext(expectedTransaction1)
-				.expectNext(expectedTransaction2).thenCancel().verify();
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNext(expectedTransaction1).expectNext(expectedTransaction2).thenCancel().verify();
 	}
 
 	@Test
 	void test_discoverTokens_emptyTransactionsResponse() {
 		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
 
-		when(ledgerWorksClient.getTransactions(any(), any(), any(), any())).thenReturn(Mono.empty());
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any())).thenReturn(Mono.empty());
 
-		StepVerifier.create(tokenDiscoveryService.getMintedTransactions())
-				.then(tokenDiscoveryService::discoverMintedTokens).expectNextCount(0).thenCancel().verify();
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNextCount(0).thenCancel().verify();
 
 		verify(ledgerWorksClient, never()).getTransaction(anyString());
 	}
@@ -100,15 +132,16 @@ public class TokenDiscoveryServiceTest {
 	void test_discoverTokens_emptyTransactionResponse() {
 		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
 
-		when(ledgerWorksClient.getTransactions(any(), any(), any(), any())).thenReturn(Mono.just(TransactionsResponse
-				.builder().transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build(),
-						Transaction.builder().transactionId("test-transaction-id-2").build()))
-				.build()));
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build(),
+								Transaction.builder().transactionId("test-transaction-id-2").build()))
+						.build()));
 
 		when(ledgerWorksClient.getTransaction(anyString())).thenReturn(Mono.empty());
 
-		StepVerifier.create(tokenDiscoveryService.getMintedTransactions())
-				.then(tokenDiscoveryService::discoverMintedTokens).expectNextCount(0).thenCancel().verify();
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNextCount(0).thenCancel().verify();
 	}
 
 	@Test
@@ -118,10 +151,10 @@ public class TokenDiscoveryServiceTest {
 
 		when(ledgerWorksClient.getToken(anyString())).thenReturn(exceptionPublisher.mono());
 
-		StepVerifier.create(tokenDiscoveryService.getMintedTransactions())
-				.then(tokenDiscoveryService::discoverMintedTokens).expectNextCount(0).thenCancel().verify();
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNextCount(0).thenCancel().verify();
 
-		verify(ledgerWorksClient, never()).getTransactions(any(), any(), any(), any());
+		verify(ledgerWorksClient, never()).getTransactions(any(), any(), any(), anyInt(), any());
 		verify(ledgerWorksClient, never()).getTransaction(anyString());
 	}
 
@@ -135,10 +168,11 @@ public class TokenDiscoveryServiceTest {
 
 		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
 
-		when(ledgerWorksClient.getTransactions(any(), any(), any(), any())).thenReturn(exceptionPublisher.mono());
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any()))
+				.thenReturn(exceptionPublisher.mono());
 
-		StepVerifier.create(tokenDiscoveryService.getMintedTransactions())
-				.then(tokenDiscoveryService::discoverMintedTokens).expectNextCount(0).thenCancel().verify();
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNextCount(0).thenCancel().verify();
 
 		verify(ledgerWorksClient, never()).getTransaction(anyString());
 	}
@@ -153,15 +187,207 @@ public class TokenDiscoveryServiceTest {
 
 		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
 
-		when(ledgerWorksClient.getTransactions(any(), any(), any(), any())).thenReturn(Mono.just(TransactionsResponse
-				.builder().transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build(),
-						Transaction.builder().transactionId("test-transaction-id-2").build()))
-				.build()));
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build(),
+								Transaction.builder().transactionId("test-transaction-id-2").build()))
+						.build()));
 
 		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-1"))).thenReturn(exceptionPublisher.mono());
 
-		StepVerifier.create(tokenDiscoveryService.getMintedTransactions())
-				.then(tokenDiscoveryService::discoverMintedTokens).expectNextCount(0).thenCancel().verify();
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNextCount(0).thenCancel().verify();
+	}
+
+	@Test
+	void test_discoverTokens_followsNextLink() {
+		Transaction expectedTransaction1 = Transaction.builder().transactionId("test-transaction-id-1")
+				.name("TOKENMINT").build();
+		Transaction expectedTransaction2 = Transaction.builder().transactionId("test-transaction-id-2")
+				.name("TOKENMINT").build();
+
+		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), isNull()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build()))
+						.links(new Links(NEXT_LINK)).build()));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), eq("1660000000.000000001")))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-2").build()))
+						.build()));
+
+		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-1"))).thenReturn(
+				Mono.just(TransactionsResponse.builder().transactions(List.of(expectedTransaction1)).build()));
+
+		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-2"))).thenReturn(
+				Mono.just(TransactionsResponse.builder().transactions(List.of(expectedTransaction2)).build()));
+
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNext(expectedTransaction1).expectNext(expectedTransaction2).thenCancel().verify();
+
+		verify(ledgerWorksClient, times(2)).getTransactions(any(), any(), any(), anyInt(), any());
+	}
+
+	@Test
+	@Property(name = "token-discovery.page-budget", value = "1")
+	void test_discoverTokens_pageBudget() {
+		Transaction expectedTransaction1 = Transaction.builder().transactionId("test-transaction-id-1")
+				.name("TOKENMINT").build();
+
+		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build()))
+						.links(new Links(NEXT_LINK)).build()));
+
+		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-1"))).thenReturn(
+				Mono.just(TransactionsResponse.builder().transactions(List.of(expectedTransaction1)).build()));
+
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNext(expectedTransaction1).thenCancel().verify();
+
+		verify(ledgerWorksClient, times(1)).getTransactions(any(), any(), any(), anyInt(), any());
+	}
+
+	@Test
+	@Property(name = "token-discovery.token-ids", value = "0.0.1,0.0.2")
+	void test_discoverTokens_perAccountCursor() {
+		Transaction expectedTransaction1 = Transaction.builder().transactionId("test-transaction-id-1")
+				.consensusTimestamp("1660000000.000000001").name("TOKENMINT").build();
+		Transaction expectedTransaction2 = Transaction.builder().transactionId("test-transaction-id-2")
+				.consensusTimestamp("1660000005.000000001").name("TOKENMINT").build();
+
+		when(ledgerWorksClient.getToken(eq("0.0.1"))).thenReturn(Mono.just(new TokenResponse("test-account-id-1")));
+		when(ledgerWorksClient.getToken(eq("0.0.2"))).thenReturn(Mono.just(new TokenResponse("test-account-id-2")));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), notNull())).thenReturn(Mono.empty());
+
+		when(ledgerWorksClient.getTransactions(eq("test-account-id-1"), any(), any(), anyInt(), isNull()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build()))
+						.build()));
+
+		when(ledgerWorksClient.getTransactions(eq("test-account-id-2"), any(), any(), anyInt(), isNull()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-2").build()))
+						.build()));
+
+		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-1"))).thenReturn(
+				Mono.just(TransactionsResponse.builder().transactions(List.of(expectedTransaction1)).build()));
+
+		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-2"))).thenReturn(
+				Mono.just(TransactionsResponse.builder().transactions(List.of(expectedTransaction2)).build()));
+
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNextCount(2).then(this::discoverMintedTokens).thenCancel().verify();
+
+		verify(ledgerWorksClient, timeout(1000)).getTransactions(eq("test-account-id-1"), any(), any(), anyInt(),
+				eq("1660000000.000000001"));
+		verify(ledgerWorksClient, timeout(1000)).getTransactions(eq("test-account-id-2"), any(), any(), anyInt(),
+				eq("1660000005.000000001"));
+	}
+
+	@Test
+	@Property(name = "token-discovery.token-ids", value = "0.0.1,0.0.2")
+	void test_discoverTokens_resumesFromCheckpoint() {
+		when(checkpointRepository.findByTokenIdIn(any()))
+				.thenReturn(Flux.just(new DiscoveryCheckpoint("0.0.1", "1660000005.000000001"),
+						new DiscoveryCheckpoint("0.0.2", "1660000000.000000001")));
+
+		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any())).thenReturn(Mono.empty());
+
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNextCount(0).thenCancel().verify();
+
+		verify(ledgerWorksClient, timeout(1000)).getTransactions(eq("test-account-id"), any(), any(), anyInt(),
+				eq("1660000000.000000001"));
+		verify(ledgerWorksClient, never()).getTransactions(any(), any(), any(), anyInt(), isNull());
+	}
+
+	@Test
+	@Property(name = "token-discovery.page-limit", value = "2")
+	void test_discoverTokens_reportsFullPage() {
+		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build(),
+								Transaction.builder().transactionId("test-transaction-id-2").build()))
+						.build()));
+
+		when(ledgerWorksClient.getTransaction(anyString())).thenReturn(Mono.just(TransactionsResponse.builder()
+				.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build())).build()));
+
+		StepVerifier.create(tokenDiscoveryService.discoverMintedTokens()).assertNext(cycle -> {
+			Assertions.assertEquals(2, cycle.mintsDiscovered());
+			Assertions.assertTrue(cycle.isBacklogged());
+		}).verifyComplete();
+	}
+
+	@Test
+	@Property(name = "token-discovery.token-ids", value = "0.0.1,0.0.2")
+	void test_discoverTokens_awaitsTreasuryAccounts() {
+		// forget the lookups made on startup, before the client was stubbed
+		clearInvocations(ledgerWorksClient);
+
+		when(ledgerWorksClient.getToken(anyString()))
+				.thenReturn(Mono.just(new TokenResponse("test-account-id")).delayElement(Duration.ofMillis(100)));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any())).thenReturn(Mono.empty());
+
+		StepVerifier.create(tokenDiscoveryService.discoverMintedTokens()).expectNextCount(1).verifyComplete();
+		StepVerifier.create(tokenDiscoveryService.discoverMintedTokens()).expectNextCount(1).verifyComplete();
+
+		verify(ledgerWorksClient, times(1)).getToken("0.0.1");
+		verify(ledgerWorksClient, times(1)).getToken("0.0.2");
+		verify(ledgerWorksClient, times(2)).getTransactions(eq("test-account-id"), any(), any(), anyInt(), any());
+	}
+
+	@Test
+	void test_discoverTokens_skipsSeenTransactions() {
+		Transaction expectedTransaction = Transaction.builder().transactionId("test-transaction-id-1").name("TOKENMINT")
+				.build();
+
+		when(ledgerWorksClient.getToken(anyString())).thenReturn(Mono.just(new TokenResponse("test-account-id")));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any()))
+				.thenReturn(Mono.just(TransactionsResponse.builder()
+						.transactions(List.of(Transaction.builder().transactionId("test-transaction-id-1").build()))
+						.build()));
+
+		when(ledgerWorksClient.getTransaction(eq("test-transaction-id-1"))).thenReturn(
+				Mono.just(TransactionsResponse.builder().transactions(List.of(expectedTransaction)).build()));
+
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions()).then(this::discoverMintedTokens)
+				.expectNext(expectedTransaction).then(this::discoverMintedTokens).expectNoEvent(Duration.ofMillis(500))
+				.thenCancel().verify();
+
+		verify(ledgerWorksClient, times(1)).getTransaction("test-transaction-id-1");
+	}
+
+	@Test
+	@Property(name = "token-discovery.token-ids", value = "0.0.1,0.0.2")
+	void test_discoverTokens_onlyPollsOwnShard() {
+		when(shardAssignment.owns("test-account-id-2")).thenReturn(false);
+
+		when(ledgerWorksClient.getToken(eq("0.0.1"))).thenReturn(Mono.just(new TokenResponse("test-account-id-1")));
+		when(ledgerWorksClient.getToken(eq("0.0.2"))).thenReturn(Mono.just(new TokenResponse("test-account-id-2")));
+
+		when(ledgerWorksClient.getTransactions(any(), any(), any(), anyInt(), any())).thenReturn(Mono.empty());
+
+		StepVerifier.create(tokenDiscoveryService.discoverMintedTokens()).expectNextCount(1).verifyComplete();
+
+		verify(ledgerWorksClient, times(1)).getTransactions(eq("test-account-id-1"), any(), any(), anyInt(), any());
+		verify(ledgerWorksClient, never()).getTransactions(eq("test-account-id-2"), any(), any(), anyInt(), any());
+	}
+
+	private void discoverMintedTokens() {
+		tokenDiscoveryService.discoverMintedTokens().subscribe();
 	}
 
 }
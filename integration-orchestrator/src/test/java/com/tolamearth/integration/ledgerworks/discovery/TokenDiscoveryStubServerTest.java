@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpointRepository;
+import com.tolamearth.integration.ledgerworks.data.NftTransfer;
+import com.tolamearth.integration.ledgerworks.data.TokenResponse;
+import com.tolamearth.integration.ledgerworks.data.Transaction;
+import com.tolamearth.integration.ledgerworks.data.TransactionsResponse;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.runtime.server.EmbeddedServer;
+import io.micronaut.test.annotation.MockBean;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.micronaut.test.support.TestPropertyProvider;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts the LedgerWorks requests a discovery cycle makes against a stubbed mirror node.
+ */
+@MicronautTest(startApplication = false, rebuildContext = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class TokenDiscoveryStubServerTest implements TestPropertyProvider {
+
+	private static final int MINTS_PER_PAGE = 3;
+
+	@Inject
+	PollingTokenDiscoveryService tokenDiscoveryService;
+
+	@MockBean(TokenDiscoveryScheduler.class)
+	TokenDiscoveryScheduler tokenDiscoveryScheduler() {
+		return mock(TokenDiscoveryScheduler.class);
+	}
+
+	@MockBean(DiscoveryCheckpointRepository.class)
+	DiscoveryCheckpointRepository checkpointRepository() {
+		DiscoveryCheckpointRepository checkpointRepository = mock(DiscoveryCheckpointRepository.class);
+		when(checkpointRepository.findByTokenIdIn(any())).thenReturn(Flux.empty());
+		return checkpointRepository;
+	}
+
+	EmbeddedServer ledgerWorksApi;
+
+	@Override
+	public Map<String, String> getProperties() {
+		return Map.of("ledger-works-url", ledgerWorksUrl(), "ledger-works-api-key", "test-api-key");
+	}
+
+	@BeforeEach
+	void resetCounters() {
+		MirrorNodeController.tokenRequests.set(0);
+		MirrorNodeController.listRequests.set(0);
+		MirrorNodeController.lookupRequests.set(0);
+		MirrorNodeController.listNftTransfers = true;
+	}
+
+	@Test
+	void test_discoveryCycle_usesListedNftTransfers() {
+		runDiscoveryCycle();
+
+		Assertions.assertEquals(1, MirrorNodeController.listRequests.get());
+		Assertions.assertEquals(0, MirrorNodeController.lookupRequests.get());
+	}
+
+	@Test
+	void test_discoveryCycle_looksUpIncompleteListing() {
+		MirrorNodeController.listNftTransfers = false;
+
+		runDiscoveryCycle();
+
+		Assertions.assertEquals(1, MirrorNodeController.listRequests.get());
+		Assertions.assertEquals(MINTS_PER_PAGE, MirrorNodeController.lookupRequests.get());
+	}
+
+	@Test
+	@Property(name = "token-discovery.transfer-lookup", value = "ALWAYS")
+	void test_discoveryCycle_alwaysLookUp() {
+		runDiscoveryCycle();
+
+		Assertions.assertEquals(1, MirrorNodeController.listRequests.get());
+		Assertions.assertEquals(MINTS_PER_PAGE, MirrorNodeController.lookupRequests.get());
+	}
+
+	private void runDiscoveryCycle() {
+		StepVerifier.create(tokenDiscoveryService.getMintedTransactions())
+				.then(() -> tokenDiscoveryService.discoverMintedTokens().subscribe()).expectNextCount(MINTS_PER_PAGE)
+				.thenCancel().verify(Duration.ofSeconds(10));
+
+		Assertions.assertEquals(1, MirrorNodeController.tokenRequests.get());
+	}
+
+	@AfterAll
+	public void teardown() {
+		ledgerWorksApi.close();
+	}
+
+	private String ledgerWorksUrl() {
+		if (ledgerWorksApi == null) {
+			ledgerWorksApi = ApplicationContext.run(EmbeddedServer.class, Map.of("test.name",
+					"TokenDiscoveryStubServerTestLedgerWorksApi", "ledger-works-api-key", "test-api-key"), "test");
+		}
+		return "http://localhost:" + ledgerWorksApi.getPort() + "/api/v1";
+	}
+
+	@Requires(property = "test.name", value = "TokenDiscoveryStubServerTestLedgerWorksApi")
+	@Controller("/api/v1")
+	public static class MirrorNodeController {
+
+		static final AtomicInteger tokenRequests = new AtomicInteger();
+
+		static final AtomicInteger listRequests = new AtomicInteger();
+
+		static final AtomicInteger lookupRequests = new AtomicInteger();
+
+		static volatile boolean listNftTransfers = true;
+
+		@Get("/tokens/{tokenId}")
+		public TokenResponse getToken(String tokenId) {
+			tokenRequests.incrementAndGet();
+			return new TokenResponse("0.0.1001");
+		}
+
+		@Get("/transactions")
+		public TransactionsResponse getTransactions() {
+			listRequests.incrementAndGet();
+			List<Transaction> transactions = IntStream.rangeClosed(1, MINTS_PER_PAGE)
+					.mapToObj(serial -> mintTransaction(serial, listNftTransfers)).collect(Collectors.toList());
+			return TransactionsResponse.builder().transactions(transactions).build();
+		}
+
+		@Get("/transactions/{transactionId}")
+		public TransactionsResponse getTransaction(String transactionId) {
+			lookupRequests.incrementAndGet();
+			int serial = Integer.parseInt(transactionId.substring(transactionId.lastIndexOf('-') + 1));
+			return TransactionsResponse.builder().transactions(List.of(mintTransaction(serial, true))).build();
+		}
+
+		private static Transaction mintTransaction(int serial, boolean withNftTransfers) {
+			return Transaction.builder().transactionId("0.0.1001-1660000000-" + serial)
+					.consensusTimestamp("166000000" + serial + ".000000001").name("TOKENMINT")
+					.nftTransfers(withNftTransfers ? List.of(new NftTransfer("0.0.1001", null, serial, "0.0.48243577"))
+							: null)
+					.build();
+		}
+
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.discovery;
+
+import com.tolamearth.integration.core.discovery.RegisteredToken;
+import com.tolamearth.integration.core.discovery.RegisteredTokenRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenRegistryTest {
+
+	RegisteredTokenRepository repository;
+
+	TokenRegistry tokenRegistry;
+
+	@BeforeEach
+	void initRegistry() {
+		repository = mock(RegisteredTokenRepository.class);
+		when(repository.existsById("0.0.1")).thenReturn(Mono.just(true));
+		when(repository.findById("0.0.1")).thenAnswer(invocation -> Mono.just(token("0.0.1")));
+		when(repository.findById("0.0.2")).thenReturn(Mono.empty());
+		when(repository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		when(repository.update(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		tokenRegistry = new TokenRegistry(repository, List.of("0.0.1"));
+	}
+
+	@Test
+	void test_registerAndDeregister_swapTokenIds() {
+		Set<String> seeded = tokenRegistry.getTokenIds();
+
+		StepVerifier.create(tokenRegistry.register("0.0.2")).expectNext(true).verifyComplete();
+		StepVerifier.create(tokenRegistry.register("0.0.1")).expectNext(false).verifyComplete();
+		Assertions.assertEquals(Set.of("0.0.1", "0.0.2"), tokenRegistry.getTokenIds());
+		Assertions.assertEquals(Set.of("0.0.1"), seeded);
+
+		StepVerifier.create(tokenRegistry.deregister("0.0.1")).expectNext(true).verifyComplete();
+		StepVerifier.create(tokenRegistry.deregister("0.0.2")).expectNext(false).verifyComplete();
+		Assertions.assertEquals(Set.of(), tokenRegistry.getTokenIds());
+
+		verify(repository, times(1)).save(any());
+		verify(repository, times(1)).update(argThat(registered -> "0.0.1".equals(registered.getTokenId())
+				&& Objects.nonNull(registered.getDeregisteredAt())));
+		verify(repository, never()).deleteById(any(String.class));
+	}
+
+	@Test
+	void test_deregisteredSeedToken_staysRemovedAfterRestart() {
+		Map<String, RegisteredToken> table = new ConcurrentHashMap<>();
+		doAnswer(invocation -> Mono.just(table.containsKey(invocation.<String>getArgument(0)))).when(repository)
+				.existsById(any(String.class));
+		doAnswer(invocation -> Mono.justOrEmpty(table.get(invocation.<String>getArgument(0)))).when(repository)
+				.findById(any(String.class));
+		doAnswer(invocation -> {
+			RegisteredToken registered = invocation.getArgument(0);
+			table.put(registered.getTokenId(), registered);
+			return Mono.just(registered);
+		}).when(repository).save(any());
+		doAnswer(invocation -> Flux.fromIterable(table.values())
+				.filter(registered -> Objects.isNull(registered.getDeregisteredAt()))).when(repository)
+						.findByDeregisteredAtIsNull();
+
+		tokenRegistry.onStartupEvent(null);
+		Assertions.assertEquals(Set.of("0.0.1"), tokenRegistry.getTokenIds());
+		StepVerifier.create(tokenRegistry.deregister("0.0.1")).expectNext(true).verifyComplete();
+
+		TokenRegistry restarted = new TokenRegistry(repository, List.of("0.0.1", "0.0.2"));
+		restarted.onStartupEvent(null);
+		Assertions.assertEquals(Set.of("0.0.2"), restarted.getTokenIds());
+
+		StepVerifier.create(restarted.register("0.0.1")).expectNext(true).verifyComplete();
+		restarted.refresh();
+		Assertions.assertEquals(Set.of("0.0.1", "0.0.2"), restarted.getTokenIds());
+	}
+
+	@Test
+	void test_refresh_picksUpChangesFromOtherReplicas() {
+		when(repository.findByDeregisteredAtIsNull()).thenReturn(Flux.just(token("0.0.1")));
+		tokenRegistry.onStartupEvent(null);
+		Assertions.assertEquals(Set.of("0.0.1"), tokenRegistry.getTokenIds());
+
+		when(repository.findByDeregisteredAtIsNull()).thenReturn(Flux.just(token("0.0.1"), token("0.0.3")));
+		tokenRegistry.refresh();
+		Assertions.assertEquals(Set.of("0.0.1", "0.0.3"), tokenRegistry.getTokenIds());
+
+		when(repository.findByDeregisteredAtIsNull()).thenReturn(Flux.error(new RuntimeException("uh oh!")));
+		tokenRegistry.refresh();
+		Assertions.assertEquals(Set.of("0.0.1", "0.0.3"), tokenRegistry.getTokenIds());
+	}
+
+	@Test
+	void test_refresh_retriesFailedStartup() {
+		when(repository.existsById("0.0.1")).thenReturn(Mono.error(new RuntimeException("uh oh!")))
+				.thenReturn(Mono.just(false));
+		when(repository.findByDeregisteredAtIsNull()).thenReturn(Flux.just(token("0.0.1"), token("0.0.3")));
+
+		tokenRegistry.onStartupEvent(null);
+		Assertions.assertEquals(Set.of("0.0.1"), tokenRegistry.getTokenIds());
+		verify(repository, never()).findByDeregisteredAtIsNull();
+
+		tokenRegistry.refresh();
+		Assertions.assertEquals(Set.of("0.0.1", "0.0.3"), tokenRegistry.getTokenIds());
+		verify(repository).save(argThat(registered -> "0.0.1".equals(registered.getTokenId())));
+
+		tokenRegistry.refresh();
+		verify(repository, times(2)).existsById("0.0.1");
+		verify(repository, times(2)).findByDeregisteredAtIsNull();
+	}
+
+	private static RegisteredToken token(String tokenId) {
+		return new RegisteredToken(tokenId, Instant.now(), null);
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EsgCircuitBreakerTest {
+
+	AtomicLong clock;
+
+	SimpleMeterRegistry meterRegistry;
+
+	EsgCircuitBreaker circuitBreaker;
+
+	@BeforeEach
+	void initCircuitBreaker() {
+		clock = new AtomicLong();
+		meterRegistry = new SimpleMeterRegistry();
+		circuitBreaker = new EsgCircuitBreaker(new EsgResilienceConfiguration(true, 0.95, Duration.ofMillis(50),
+				Duration.ofSeconds(1), 100, 0.5, 4, Duration.ofSeconds(30), 3, Duration.ofMillis(100)), meterRegistry,
+				clock::get);
+	}
+
+	@Test
+	void test_record_opensOnFailureRate() {
+		circuitBreaker.recordFailure(permit());
+		circuitBreaker.recordSuccess(permit());
+		circuitBreaker.recordFailure(permit());
+		Assertions.assertEquals(EsgCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+		circuitBreaker.recordSuccess(permit());
+
+		Assertions.assertEquals(EsgCircuitBreaker.State.OPEN, circuitBreaker.getState());
+		Assertions.assertTrue(circuitBreaker.reserve().isPresent());
+		Assertions.assertEquals(2, meterRegistry.get("esg.circuit.state").gauge().value());
+		Assertions.assertEquals(1, meterRegistry.get("esg.circuit.transitions").tag("state", "open").counter().count());
+	}
+
+	@Test
+	void test_record_toleratesOccasionalFailures() {
+		for (int i = 0; i < 10; i++) {
+			circuitBreaker.recordFailure(permit());
+			circuitBreaker.recordSuccess(permit());
+			circuitBreaker.recordSuccess(permit());
+			circuitBreaker.recordSuccess(permit());
+		}
+
+		Assertions.assertEquals(EsgCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		Assertions.assertTrue(circuitBreaker.reserve().isEmpty());
+	}
+
+	@Test
+	void test_reserve_letsOneTrialThroughAfterOpenDuration() {
+		open();
+		clock.addAndGet(Duration.ofSeconds(30).toNanos());
+
+		long trial = permit();
+		Assertions.assertEquals(EsgCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		StepVerifier waiter = StepVerifier.create(circuitBreaker.reserve().orElseThrow()).expectComplete()
+				.verifyLater();
+
+		circuitBreaker.recordSuccess(trial);
+
+		waiter.verify(Duration.ofSeconds(1));
+		Assertions.assertEquals(EsgCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		Assertions.assertTrue(circuitBreaker.reserve().isEmpty());
+	}
+
+	@Test
+	void test_record_failedTrialOpensAgain() {
+		open();
+		clock.addAndGet(Duration.ofSeconds(30).toNanos());
+		long trial = permit();
+
+		circuitBreaker.recordFailure(trial);
+
+		Assertions.assertEquals(EsgCircuitBreaker.State.OPEN, circuitBreaker.getState());
+		clock.addAndGet(Duration.ofSeconds(29).toNanos());
+		Assertions.assertTrue(circuitBreaker.reserve().isPresent());
+		Assertions.assertEquals(2, meterRegistry.get("esg.circuit.transitions").tag("state", "open").counter().count());
+	}
+
+	@Test
+	void test_release_letsAnotherTrialThrough() {
+		open();
+		clock.addAndGet(Duration.ofSeconds(30).toNanos());
+		long trial = permit();
+
+		circuitBreaker.release(trial);
+
+		Assertions.assertTrue(circuitBreaker.reserve().isEmpty());
+		Assertions.assertEquals(EsgCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	void test_record_ignoresOutcomesOfEarlierGenerations() {
+		long closedPermit = permit();
+		open();
+		clock.addAndGet(Duration.ofSeconds(30).toNanos());
+		long trial = permit();
+
+		// a request sent before the circuit opened fails late, while the trial is in
+		// flight
+		circuitBreaker.recordFailure(closedPermit);
+		circuitBreaker.recordSuccess(closedPermit);
+		circuitBreaker.release(closedPermit);
+
+		Assertions.assertEquals(EsgCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		Assertions.assertTrue(circuitBreaker.reserve().isPresent());
+
+		circuitBreaker.recordSuccess(trial);
+		for (int i = 0; i < 4; i++) {
+			circuitBreaker.recordFailure(closedPermit);
+		}
+
+		Assertions.assertEquals(EsgCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	private long permit() {
+		return circuitBreaker.acquire().block(Duration.ofSeconds(1));
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++) {
+			circuitBreaker.recordFailure(permit());
+		}
+		Assertions.assertEquals(EsgCircuitBreaker.State.OPEN, circuitBreaker.getState());
+	}
+
+}
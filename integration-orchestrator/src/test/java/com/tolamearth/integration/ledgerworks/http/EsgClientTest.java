@@ -16,6 +16,7 @@
 
 package com.tolamearth.integration.ledgerworks.http;
 
+import com.tolamearth.integration.ledgerworks.data.EsgNftDetails;
 import io.micronaut.context.ApplicationContext;
 import io.micronaut.context.annotation.Requires;
 import io.micronaut.core.io.scan.DefaultClassPathResourceLoader;
@@ -53,9 +54,14 @@ public class EsgClientTest implements TestPropertyProvider {
 
 	@Test
 	void testResource() {
-		Map result = client.getNftDetails("0.0.48243577", 3031).block();
+		EsgNftDetails result = client.getNftDetails("0.0.48243577", 3031).block();
 		Assertions.assertNotNull(result);
-		Assertions.assertEquals(3, result.size());
+		Assertions.assertEquals("0.0.48243577", result.tokenId());
+		Assertions.assertEquals(3031, result.serialNumber());
+		Assertions.assertEquals(34, result.attributes().size());
+		Assertions.assertTrue(
+				result.attributes().contains(new EsgNftDetails.Attribute("Project Type", "Grid Connected Wind")));
+		Assertions.assertTrue(result.attributes().stream().noneMatch(attribute -> attribute.value() == null));
 	}
 
 	@AfterAll
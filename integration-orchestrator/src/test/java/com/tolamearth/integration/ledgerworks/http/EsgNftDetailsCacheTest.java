@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tolamearth.integration.ledgerworks.data.EsgNftDetails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class EsgNftDetailsCacheTest {
+
+	private static final EsgNftDetails NFT_DETAILS = EsgNftDetails.builder().tokenId("0.0.1001").serialNumber(1L)
+			.attributes(List.of(new EsgNftDetails.Attribute("Project Type", "Solar"))).build();
+
+	EsgClient esgClient;
+
+	SimpleMeterRegistry meterRegistry;
+
+	@BeforeEach
+	void initClient() {
+		esgClient = mock(EsgClient.class);
+		meterRegistry = new SimpleMeterRegistry();
+	}
+
+	@Test
+	void test_getNftDetails_fetchesOnce() {
+		when(esgClient.getNftDetails("0.0.1001", 1)).thenReturn(Mono.just(NFT_DETAILS));
+		EsgNftDetailsCache cache = cache(Duration.ofMinutes(1), null);
+
+		StepVerifier.create(cache.getNftDetails("0.0.1001", 1)).expectNext(NFT_DETAILS).verifyComplete();
+		StepVerifier.create(cache.getNftDetails("0.0.1001", 1)).expectNext(NFT_DETAILS).verifyComplete();
+
+		verify(esgClient, times(1)).getNftDetails("0.0.1001", 1);
+		Assertions.assertEquals(1, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+		Assertions.assertEquals(1, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+	}
+
+	@Test
+	void test_getNftDetails_remembersNotFound() throws InterruptedException {
+		when(esgClient.getNftDetails("0.0.1001", 1))
+				.thenReturn(Mono.error(new HttpClientResponseException("Not Found", HttpResponse.notFound())));
+		EsgNftDetailsCache cache = cache(Duration.ofMillis(200), null);
+
+		StepVerifier.create(cache.getNftDetails("0.0.1001", 1)).verifyError(HttpClientResponseException.class);
+		StepVerifier.create(cache.getNftDetails("0.0.1001", 1)).verifyError(HttpClientResponseException.class);
+		verify(esgClient, times(1)).getNftDetails("0.0.1001", 1);
+
+		Thread.sleep(300);
+		when(esgClient.getNftDetails("0.0.1001", 1)).thenReturn(Mono.just(NFT_DETAILS));
+		StepVerifier.create(cache.getNftDetails("0.0.1001", 1)).expectNext(NFT_DETAILS).verifyComplete();
+		verify(esgClient, times(2)).getNftDetails("0.0.1001", 1);
+	}
+
+	@Test
+	void test_getNftDetails_doesNotCacheFailures() {
+		when(esgClient.getNftDetails("0.0.1001", 1))
+				.thenReturn(Mono.error(new HttpClientResponseException("Bad Gateway", HttpResponse.serverError())))
+				.thenReturn(Mono.just(NFT_DETAILS));
+		EsgNftDetailsCache cache = cache(Duration.ofMinutes(1), null);
+
+		StepVerifier.create(cache.getNftDetails("0.0.1001", 1)).verifyError(HttpClientResponseException.class);
+		StepVerifier.create(cache.getNftDetails("0.0.1001", 1)).expectNext(NFT_DETAILS).verifyComplete();
+	}
+
+	@Test
+	void test_snapshot_survivesRestart(@TempDir Path snapshotDirectory) {
+		String snapshotFile = snapshotDirectory.resolve("esg-cache.json").toString();
+		when(esgClient.getNftDetails("0.0.1001", 1)).thenReturn(Mono.just(NFT_DETAILS));
+		EsgNftDetailsCache cache = cache(Duration.ofMinutes(1), snapshotFile);
+		cache.getNftDetails("0.0.1001", 1).block();
+		cache.saveSnapshot();
+
+		EsgNftDetailsCache restartedCache = cache(Duration.ofMinutes(1), snapshotFile);
+		restartedCache.loadSnapshot();
+
+		StepVerifier.create(restartedCache.getNftDetails("0.0.1001", 1)).expectNext(NFT_DETAILS).verifyComplete();
+		verify(esgClient, times(1)).getNftDetails("0.0.1001", 1);
+	}
+
+	private EsgNftDetailsCache cache(Duration notFoundTtl, String snapshotFile) {
+		EsgResilienceConfiguration resilienceConfiguration = new EsgResilienceConfiguration(false, 0.95,
+				Duration.ofMillis(50), Duration.ofSeconds(1), 100, 0.5, 20, Duration.ofSeconds(30), 0,
+				Duration.ofMillis(100));
+		ResilientEsgClient resilientEsgClient = new ResilientEsgClient(esgClient,
+				new EsgCircuitBreaker(resilienceConfiguration, meterRegistry), resilienceConfiguration, meterRegistry);
+		return new EsgNftDetailsCache(resilientEsgClient,
+				new EsgCacheConfiguration(100L, Duration.ofHours(1), notFoundTtl, snapshotFile), new ObjectMapper(),
+				meterRegistry);
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import com.tolamearth.integration.ledgerworks.data.TokenResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.runtime.server.EmbeddedServer;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.micronaut.test.support.TestPropertyProvider;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@MicronautTest(startApplication = false)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class LedgerWorksClientFilterTest implements TestPropertyProvider {
+
+	@Inject
+	LedgerWorksClient client;
+
+	@Inject
+	MeterRegistry meterRegistry;
+
+	EmbeddedServer ledgerWorksApi;
+
+	@Override
+	public Map<String, String> getProperties() {
+		return Map.of("ledger-works-url", ledgerWorksUrl(), "ledger-works-api-key", "test-api-key",
+				"ledger-works-rate-limit.retry-backoff", "50ms", "ledger-works-rate-limit.max-retries", "2");
+	}
+
+	@BeforeEach
+	void resetController() {
+		TokensController.requests.set(0);
+	}
+
+	@Test
+	void test_tooManyRequests_retriedAfterRetryAfter() {
+		TokensController.rejectedRequests = 1;
+		long start = System.nanoTime();
+
+		TokenResponse token = client.getToken("0.0.48243577").block();
+
+		Assertions.assertEquals("0.0.1001", token.treasuryAccountId());
+		Assertions.assertEquals(2, TokensController.requests.get());
+		Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) >= 0);
+		Assertions.assertTrue(meterRegistry.get("ledgerworks.rate.limit.retries").counter().count() >= 1);
+	}
+
+	@Test
+	void test_tooManyRequests_retriesExhausted() {
+		TokensController.rejectedRequests = Integer.MAX_VALUE;
+
+		HttpClientResponseException exception = Assertions.assertThrows(HttpClientResponseException.class,
+				() -> client.getToken("0.0.48243577").block());
+
+		Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getStatus());
+		Assertions.assertEquals(3, TokensController.requests.get());
+	}
+
+	@Test
+	void test_getRetryAfter() {
+		Assertions.assertEquals(Duration.ofSeconds(5),
+				LedgerWorksClientFilter.getRetryAfter(HttpResponse.ok().header("Retry-After", "5")).orElseThrow());
+		Assertions.assertEquals(Duration.ZERO, LedgerWorksClientFilter
+				.getRetryAfter(HttpResponse.ok().header("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT")).orElseThrow());
+		Assertions.assertTrue(LedgerWorksClientFilter.getRetryAfter(HttpResponse.ok()).isEmpty());
+	}
+
+	@AfterAll
+	public void teardown() {
+		ledgerWorksApi.close();
+	}
+
+	private String ledgerWorksUrl() {
+		if (ledgerWorksApi == null) {
+			ledgerWorksApi = ApplicationContext.run(EmbeddedServer.class, Map.of("test.name",
+					"LedgerWorksClientFilterTestLedgerWorksApi", "ledger-works-api-key", "test-api-key"), "test");
+		}
+		return "http://localhost:" + ledgerWorksApi.getPort() + "/api/v1";
+	}
+
+	@Requires(property = "test.name", value = "LedgerWorksClientFilterTestLedgerWorksApi")
+	@Controller("/api/v1")
+	public static class TokensController {
+
+		static final AtomicInteger requests = new AtomicInteger();
+
+		static volatile int rejectedRequests;
+
+		@Get("/tokens/{tokenId}")
+		public HttpResponse<?> getToken(String tokenId, @Header("Authorization") String apiKey) {
+			Assertions.assertEquals("test-api-key", apiKey);
+			if (requests.incrementAndGet() <= rejectedRequests) {
+				return HttpResponse.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1");
+			}
+			return HttpResponse.ok(new TokenResponse("0.0.1001"));
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LedgerWorksRateLimiterTest {
+
+	AtomicLong clock;
+
+	SimpleMeterRegistry meterRegistry;
+
+	LedgerWorksRateLimiter rateLimiter;
+
+	@BeforeEach
+	void initRateLimiter() {
+		clock = new AtomicLong();
+		meterRegistry = new SimpleMeterRegistry();
+		rateLimiter = new LedgerWorksRateLimiter(
+				new LedgerWorksRateLimitConfiguration(10d, 3, 3, Duration.ofSeconds(1), 0.5), meterRegistry,
+				clock::get);
+	}
+
+	@Test
+	void test_reserve_spacesRequestsAfterBurst() {
+		Assertions.assertEquals(Duration.ZERO, rateLimiter.reserve());
+		Assertions.assertEquals(Duration.ZERO, rateLimiter.reserve());
+		Assertions.assertEquals(Duration.ZERO, rateLimiter.reserve());
+		Assertions.assertEquals(Duration.ofMillis(100), rateLimiter.reserve());
+		Assertions.assertEquals(Duration.ofMillis(200), rateLimiter.reserve());
+
+		clock.addAndGet(Duration.ofSeconds(1).toNanos());
+
+		Assertions.assertEquals(Duration.ZERO, rateLimiter.reserve());
+	}
+
+	@Test
+	void test_pause_holdsRequestsUntilRetryAfter() {
+		rateLimiter.pause(Duration.ofSeconds(2));
+
+		Assertions.assertEquals(Duration.ofSeconds(2), rateLimiter.reserve());
+		Assertions.assertEquals(Duration.ofMillis(2100), rateLimiter.reserve());
+		Assertions.assertEquals(1, meterRegistry.get("ledgerworks.rate.limit.throttled").counter().count());
+	}
+
+}
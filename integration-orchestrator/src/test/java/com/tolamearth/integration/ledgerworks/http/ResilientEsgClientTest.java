@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.ledgerworks.http;
+
+import com.tolamearth.integration.ledgerworks.data.EsgNftDetails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.mockito.Mockito.*;
+
+class ResilientEsgClientTest {
+
+	private static final EsgNftDetails NFT_DETAILS = EsgNftDetails.builder().tokenId("0.0.1001").serialNumber(1L)
+			.attributes(List.of(new EsgNftDetails.Attribute("Project Type", "Solar"))).build();
+
+	EsgClient esgClient;
+
+	SimpleMeterRegistry meterRegistry;
+
+	@BeforeEach
+	void initClient() {
+		esgClient = mock(EsgClient.class);
+		meterRegistry = new SimpleMeterRegistry();
+	}
+
+	@Test
+	void test_getNftDetails_hedgesSlowRequest() {
+		ResilientEsgClient client = client(configuration(true, 2, Duration.ofMillis(200), 0));
+		when(esgClient.getNftDetails("0.0.1001", 1)).thenReturn(
+				Mono.<EsgNftDetails>just(NFT_DETAILS).delayElement(Duration.ofSeconds(5)), Mono.just(NFT_DETAILS));
+
+		Duration elapsed = StepVerifier.create(client.getNftDetails("0.0.1001", 1)).expectNext(NFT_DETAILS)
+				.verifyComplete();
+
+		Assertions.assertTrue(elapsed.compareTo(Duration.ofSeconds(1)) < 0, "Hedge wasn't used, took " + elapsed);
+		verify(esgClient, times(2)).getNftDetails("0.0.1001", 1);
+		Assertions.assertEquals(1, meterRegistry.get("esg.hedge.requests").counter().count());
+		Assertions.assertEquals(1, meterRegistry.get("esg.hedge.wins").counter().count());
+	}
+
+	@Test
+	void test_getNftDetails_doesNotHedgeFastRequest() throws InterruptedException {
+		ResilientEsgClient client = client(configuration(true, 2, Duration.ofMillis(200), 0));
+		when(esgClient.getNftDetails("0.0.1001", 1)).thenReturn(Mono.just(NFT_DETAILS));
+
+		StepVerifier.create(client.getNftDetails("0.0.1001", 1)).expectNext(NFT_DETAILS).verifyComplete();
+		Thread.sleep(300);
+
+		verify(esgClient, times(1)).getNftDetails("0.0.1001", 1);
+		Assertions.assertEquals(0, meterRegistry.get("esg.hedge.requests").counter().count());
+	}
+
+	@Test
+	void test_getHedgeDelay_followsLatencyQuantile() {
+		ResilientEsgClient.LatencyWindow latencies = new ResilientEsgClient.LatencyWindow(20);
+		LongStream.rangeClosed(1, 19).forEach(millis -> latencies.record(Duration.ofMillis(millis).toNanos()));
+		Assertions.assertTrue(latencies.quantile(0.95).isEmpty());
+
+		latencies.record(Duration.ofMillis(20).toNanos());
+
+		Assertions.assertEquals(Duration.ofMillis(19), latencies.quantile(0.95).orElseThrow());
+		Assertions.assertEquals(Duration.ofMillis(10), latencies.quantile(0.5).orElseThrow());
+	}
+
+	@Test
+	void test_getNftDetails_pausesWhileCircuitIsOpen() {
+		EsgResilienceConfiguration configuration = configuration(false, 2, Duration.ofMillis(300), 2);
+		EsgCircuitBreaker circuitBreaker = new EsgCircuitBreaker(configuration, meterRegistry);
+		ResilientEsgClient client = new ResilientEsgClient(esgClient, circuitBreaker, configuration, meterRegistry);
+		HttpClientResponseException unavailable = new HttpClientResponseException("Service Unavailable",
+				HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE));
+		when(esgClient.getNftDetails("0.0.1001", 1)).thenReturn(Mono.<EsgNftDetails>error(unavailable),
+				Mono.error(unavailable), Mono.just(NFT_DETAILS));
+
+		Duration elapsed = StepVerifier.create(client.getNftDetails("0.0.1001", 1)).expectNext(NFT_DETAILS)
+				.verifyComplete();
+
+		Assertions.assertTrue(elapsed.compareTo(Duration.ofMillis(300)) >= 0, "Circuit didn't pause, took " + elapsed);
+		Assertions.assertEquals(EsgCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		Assertions.assertEquals(1, meterRegistry.get("esg.circuit.transitions").tag("state", "open").counter().count());
+		Assertions.assertEquals(1,
+				meterRegistry.get("esg.circuit.transitions").tag("state", "closed").counter().count());
+	}
+
+	@Test
+	void test_getNftDetails_doesNotRetryClientErrors() {
+		ResilientEsgClient client = client(configuration(false, 2, Duration.ofMillis(300), 2));
+		when(esgClient.getNftDetails("0.0.1001", 1))
+				.thenReturn(Mono.error(new HttpClientResponseException("Not Found", HttpResponse.notFound())));
+
+		StepVerifier.create(client.getNftDetails("0.0.1001", 1)).verifyError(HttpClientResponseException.class);
+
+		verify(esgClient, times(1)).getNftDetails("0.0.1001", 1);
+	}
+
+	private ResilientEsgClient client(EsgResilienceConfiguration configuration) {
+		return new ResilientEsgClient(esgClient, new EsgCircuitBreaker(configuration, meterRegistry), configuration,
+				meterRegistry);
+	}
+
+	private EsgResilienceConfiguration configuration(boolean hedgingEnabled, int failureWindow, Duration openDuration,
+			int maxRetries) {
+		return new EsgResilienceConfiguration(hedgingEnabled, 0.95, Duration.ofMillis(20), Duration.ofMillis(50), 100,
+				0.5, failureWindow, openDuration, maxRetries, Duration.ofMillis(10));
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.orchestrator;
+
+import com.tolamearth.integration.core.assets.NftId;
+import com.tolamearth.integration.core.assets.ParkedToken;
+import com.tolamearth.integration.core.leadership.LeaderElection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.*;
+
+class ParkedTokenRedriverTest {
+
+	TokenParkingLot parkingLot;
+
+	TokenPublisherService publisherService;
+
+	LeaderElection leaderElection;
+
+	SimpleMeterRegistry meterRegistry;
+
+	ParkedTokenRedriver redriver;
+
+	@BeforeEach
+	void initRedriver() {
+		parkingLot = mock(TokenParkingLot.class);
+		publisherService = mock(TokenPublisherService.class);
+		leaderElection = mock(LeaderElection.class);
+		meterRegistry = new SimpleMeterRegistry();
+		redriver = new ParkedTokenRedriver(
+				parkingLot, publisherService, new ParkedTokenConfiguration(Duration.ofSeconds(30),
+						Duration.ofMinutes(1), Duration.ofHours(1), 10, 4, 100, Duration.ofMinutes(5)),
+				leaderElection, meterRegistry);
+		when(leaderElection.isLeader()).thenReturn(true);
+		when(parkingLot.release(any())).thenReturn(Mono.empty());
+	}
+
+	@Test
+	void test_redrive_releasesRedrivenToken() {
+		ParkedToken parked = parkedToken("7");
+		when(publisherService.redriveToken(parked.toToken())).thenReturn(Mono.just(parked.toToken()));
+
+		StepVerifier.create(redriver.redrive(parked)).verifyComplete();
+
+		verify(parkingLot).release(parked);
+		verify(parkingLot, never()).park(any(), any());
+		Assertions.assertEquals(1,
+				meterRegistry.get("token.parking.redrives").tag("outcome", "success").counter().count());
+	}
+
+	@Test
+	void test_redrive_republishesStoredToken() {
+		ParkedToken parked = parkedToken("7");
+		parked.setStored(true);
+		when(publisherService.republishToken(parked.toToken())).thenReturn(Mono.just(parked.toToken()));
+
+		StepVerifier.create(redriver.redrive(parked)).verifyComplete();
+
+		verify(publisherService, never()).redriveToken(any());
+		verify(parkingLot).release(parked);
+	}
+
+	@Test
+	void test_redrive_parksTokenAgainOnFailure() {
+		ParkedToken parked = parkedToken("7");
+		ParkedToken reparked = parkedToken("7");
+		reparked.setAttempts(2);
+		RuntimeException failure = new RuntimeException("ESG unavailable");
+		when(publisherService.redriveToken(parked.toToken())).thenReturn(Mono.error(failure));
+		when(parkingLot.park(parked.toToken(), failure)).thenReturn(Mono.just(reparked));
+
+		StepVerifier.create(redriver.redrive(parked)).expectNext(reparked).verifyComplete();
+
+		verify(parkingLot, never()).release(any());
+		Assertions.assertEquals(1,
+				meterRegistry.get("token.parking.redrives").tag("outcome", "failure").counter().count());
+	}
+
+	@Test
+	void test_redriveDueTokens_redrivesEveryDueToken() {
+		ParkedToken first = parkedToken("7");
+		ParkedToken second = parkedToken("8");
+		when(parkingLot.claimDueTokens()).thenReturn(Flux.just(first, second));
+		when(publisherService.redriveToken(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		redriver.redriveDueTokens();
+
+		verify(parkingLot, timeout(1000)).release(first);
+		verify(parkingLot, timeout(1000)).release(second);
+	}
+
+	@Test
+	void test_redriveDueTokens_onlyLeaderRedrives() {
+		when(leaderElection.isLeader()).thenReturn(false);
+
+		redriver.redriveDueTokens();
+
+		verifyNoInteractions(parkingLot, publisherService);
+	}
+
+	private ParkedToken parkedToken(String serialNumber) {
+		return ParkedToken.builder().nftId(new NftId("0.0.1001", serialNumber))
+				.transactionId("0.0.1001-1660000000-000000000").transactionTime("1660000000.000000001")
+				.owner("0.0.2002").reason("ESG unavailable").attempts(1).build();
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 Tolam Earth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.tolamearth.integration.orchestrator;
+
+import com.tolamearth.integration.core.assets.EventType;
+import com.tolamearth.integration.core.assets.NftId;
+import com.tolamearth.integration.core.assets.ParkedToken;
+import com.tolamearth.integration.core.assets.ParkedTokenRepository;
+import com.tolamearth.integration.core.assets.Token;
+import com.tolamearth.integration.core.assets.TokenTransaction;
+import com.tolamearth.integration.core.assets.TokenTransactionId;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.mockito.Mockito.*;
+
+class TokenParkingLotTest {
+
+	private static final NftId NFT_ID = new NftId("0.0.1001", "7");
+
+	ParkedTokenRepository repository;
+
+	SimpleMeterRegistry meterRegistry;
+
+	TokenParkingLot parkingLot;
+
+	@BeforeEach
+	void initParkingLot() {
+		repository = mock(ParkedTokenRepository.class);
+		meterRegistry = new SimpleMeterRegistry();
+		parkingLot = new TokenParkingLot(repository, new ParkedTokenConfiguration(Duration.ofSeconds(30),
+				Duration.ofMinutes(1), Duration.ofMinutes(10), 10, 4, 100, Duration.ofMinutes(5)), meterRegistry);
+		when(repository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		when(repository.update(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+	}
+
+	@Test
+	void test_park_keepsMintedTransaction() {
+		when(repository.findById(NFT_ID)).thenReturn(Mono.empty());
+
+		ParkedToken parked = parkingLot.park(mintedToken(), new RuntimeException("ESG unavailable")).block();
+
+		Assertions.assertEquals("0.0.1001-1660000000-000000000", parked.getTransactionId());
+		Assertions.assertEquals("ESG unavailable", parked.getReason());
+		Assertions.assertEquals(1, parked.getAttempts());
+		Assertions.assertEquals(Duration.ofMinutes(1),
+				Duration.between(parked.getParkedAt(), parked.getNextAttemptAt()));
+		Assertions.assertEquals(mintedToken(), parked.toToken());
+		Assertions.assertEquals(1, meterRegistry.get("token.parking.parked").counter().count());
+	}
+
+	@Test
+	void test_park_backsOffAgainAfterFailedAttempt() {
+		ParkedToken parked = ParkedToken.builder().nftId(NFT_ID).attempts(3).reason("ESG unavailable")
+				.parkedAt(Instant.now()).build();
+		when(repository.findById(NFT_ID)).thenReturn(Mono.just(parked));
+
+		StepVerifier.create(parkingLot.park(mintedToken(), new IllegalStateException())).assertNext(reparked -> {
+			Assertions.assertEquals(4, reparked.getAttempts());
+			Assertions.assertEquals(IllegalStateException.class.getName(), reparked.getReason());
+			Assertions.assertTrue(reparked.getNextAttemptAt().isAfter(Instant.now().plus(Duration.ofMinutes(7))));
+		}).verifyComplete();
+		verify(repository, never()).save(any());
+	}
+
+	@Test
+	void test_parkUnpublished_marksTokenStored() {
+		ParkedToken parked = ParkedToken.builder().nftId(NFT_ID).attempts(1).reason("ESG unavailable")
+				.parkedAt(Instant.now()).build();
+		when(repository.findById(NFT_ID)).thenReturn(Mono.empty()).thenReturn(Mono.just(parked));
+
+		Assertions.assertTrue(parkingLot.parkUnpublished(mintedToken(), new RuntimeException()).block().isStored());
+		Assertions.assertTrue(parkingLot.parkUnpublished(mintedToken(), new RuntimeException()).block().isStored());
+		Assertions.assertEquals(2, parked.getAttempts());
+	}
+
+	@Test
+	void test_park_keepsTokenStored() {
+		ParkedToken parked = ParkedToken.builder().nftId(NFT_ID).attempts(1).reason("Pub/Sub unavailable")
+				.parkedAt(Instant.now()).stored(true).build();
+		when(repository.findById(NFT_ID)).thenReturn(Mono.just(parked));
+
+		StepVerifier.create(parkingLot.park(mintedToken(), new RuntimeException()))
+				.assertNext(reparked -> Assertions.assertTrue(reparked.isStored())).verifyComplete();
+	}
+
+	@Test
+	void test_claimDueTokens_claimsBatchUntilTimeout() {
+		ParkedToken parked = ParkedToken.builder().nftId(NFT_ID).attempts(1).build();
+		when(repository.claimDue(any(), eq(10), eq(100), any())).thenReturn(Flux.just(parked));
+
+		StepVerifier.create(parkingLot.claimDueTokens()).expectNext(parked).verifyComplete();
+
+		ArgumentCaptor<Instant> now = ArgumentCaptor.forClass(Instant.class);
+		ArgumentCaptor<Instant> claimedUntil = ArgumentCaptor.forClass(Instant.class);
+		verify(repository).claimDue(now.capture(), eq(10), eq(100), claimedUntil.capture());
+		Assertions.assertEquals(Duration.ofMinutes(5), Duration.between(now.getValue(), claimedUntil.getValue()));
+	}
+
+	@Test
+	void test_getBackoff_doublesUpToMaximum() {
+		Assertions.assertEquals(Duration.ofMinutes(1), parkingLot.getBackoff(1));
+		Assertions.assertEquals(Duration.ofMinutes(2), parkingLot.getBackoff(2));
+		Assertions.assertEquals(Duration.ofMinutes(8), parkingLot.getBackoff(4));
+		Assertions.assertEquals(Duration.ofMinutes(10), parkingLot.getBackoff(5));
+		Assertions.assertEquals(Duration.ofMinutes(10), parkingLot.getBackoff(100));
+	}
+
+	private Token mintedToken() {
+		TokenTransaction minted = TokenTransaction.builder()
+				.id(new TokenTransactionId(NFT_ID, "0.0.1001-1660000000-000000000")).eventType(EventType.MINTED)
+				.transactionTime("1660000000.000000001").owner("0.0.2002").build();
+		return Token.builder().nftId(NFT_ID).memo("bWVtbw==").build().addTransaction(minted);
+	}
+
+}
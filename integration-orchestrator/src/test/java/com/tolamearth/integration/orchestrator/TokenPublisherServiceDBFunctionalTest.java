@@ -21,6 +21,7 @@ import com.tolamearth.integration.armm.ArmmEvent;
 import com.tolamearth.integration.core.assets.NftId;
 import com.tolamearth.integration.core.assets.Token;
 import com.tolamearth.integration.core.assets.TokenRepository;
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpointRepository;
 import com.tolamearth.integration.ledgerworks.data.LedgerWorksMapper;
 import com.tolamearth.integration.ledgerworks.data.NftTransfer;
 import com.tolamearth.integration.ledgerworks.data.Transaction;
@@ -33,8 +34,11 @@ import io.micronaut.test.annotation.MockBean;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
@@ -42,12 +46,14 @@ import reactor.test.StepVerifier;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 @MicronautTest
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 @Property(name = "token-discovery.token-ids", value = "0.0.48243577")
 @Property(name = "esg-url", value = "https://testnet.esg.api.lworks.io/api/v1")
 public class TokenPublisherServiceDBFunctionalTest {
@@ -60,6 +66,9 @@ public class TokenPublisherServiceDBFunctionalTest {
 	@Inject
 	TokenRepository tokenRepository;
 
+	@Inject
+	DiscoveryCheckpointRepository checkpointRepository;
+
 	@Inject
 	TestMessageListener listener;
 
@@ -83,6 +92,7 @@ public class TokenPublisherServiceDBFunctionalTest {
 	private Flux<Transaction> testFlux;
 
 	@Test
+	@Order(1)
 	void testPublisherService() {
 		Token[] tokens = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction1, TOKEN_IDS).stream()
 				.toArray(Token[]::new);
@@ -104,7 +114,43 @@ public class TokenPublisherServiceDBFunctionalTest {
 		Assertions.assertEquals(3, tokenCount);
 		Assertions.assertEquals(3, tokenPublisherService.getRepeatedTokenCount());
 
-		Assertions.assertEquals(3, listener.events.size());
+		Assertions.assertEquals(3, listener.events.stream().mapToInt(ArmmEvent::getTransactionsCount).sum());
+	}
+
+	@Test
+	@Order(2)
+	void testInsertMintedSkipsStoredTokens() {
+		// 3031 and 3033 were stored by testPublisherService
+		NftTransfer transfer4 = NftTransfer.builder().tokenId("0.0.48243577").serialNumber(3034).build();
+		NftTransfer transfer5 = NftTransfer.builder().tokenId("0.0.48243577").serialNumber(3035).build();
+		Transaction transaction2 = Transaction.builder().transactionId("0.1.3")
+				.consensusTimestamp("1660000000.000000002")
+				.nftTransfers(List.of(transfer1, transfer4, transfer3, transfer5)).build();
+		List<Token> tokens = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction2, TOKEN_IDS);
+		tokens.forEach(this::setTestData);
+
+		StepVerifier.create(tokenRepository.insertMinted(tokens).map(Token::getNftId))
+				.expectNext(tokens.get(1).getNftId(), tokens.get(3).getNftId()).verifyComplete();
+
+		Assertions.assertEquals(5, tokenRepository.findAll().count().block());
+		Assertions.assertEquals(1, tokenRepository.findById(nftId1).block().getTransactions().size());
+		Assertions.assertEquals(1, tokenRepository.findById(nftId3).block().getTransactions().size());
+		Token storedToken4 = tokenRepository.findById(tokens.get(1).getNftId()).block();
+		Assertions.assertEquals(tokens.get(1), storedToken4);
+		Assertions.assertEquals("0.1.3", storedToken4.getTransactions().get(0).getId().getTransactionId());
+		Assertions.assertEquals(1, tokenRepository.findById(tokens.get(3).getNftId()).block().getTransactions().size());
+	}
+
+	@Test
+	@Order(3)
+	void testAdvanceCheckpointNeverMovesBackwards() {
+		StepVerifier.create(checkpointRepository.advance(Map.of("0.0.48243577", "1660000000.000000002")))
+				.verifyComplete();
+		StepVerifier.create(checkpointRepository.advance(Map.of("0.0.48243577", "999999999.999999999")))
+				.verifyComplete();
+
+		Assertions.assertEquals("1660000000.000000002",
+				checkpointRepository.findById("0.0.48243577").block().getConsensusTimestamp());
 	}
 
 	@MockBean(PollingTokenDiscoveryService.class)
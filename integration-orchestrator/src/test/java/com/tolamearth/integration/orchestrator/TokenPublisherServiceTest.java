@@ -17,30 +17,54 @@
 package com.tolamearth.integration.orchestrator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.tolamearth.integration.armm.ArmmEvent;
+import com.tolamearth.integration.armm.ArmmEventPublisher;
 import com.tolamearth.integration.armm.ArmmMessageChannels;
+import com.tolamearth.integration.armm.ArmmPublisherConfiguration;
 import com.tolamearth.integration.core.assets.NftId;
+import com.tolamearth.integration.core.assets.ParkedToken;
+import com.tolamearth.integration.core.assets.ProcessedNftIndex;
+import com.tolamearth.integration.core.assets.ProcessedNftIndexConfiguration;
 import com.tolamearth.integration.core.assets.Token;
 import com.tolamearth.integration.core.assets.TokenRepository;
+import com.tolamearth.integration.core.discovery.DiscoveryCheckpointRepository;
+import com.tolamearth.integration.ledgerworks.data.EsgNftDetails;
 import com.tolamearth.integration.ledgerworks.data.LedgerWorksMapper;
+import com.tolamearth.integration.ledgerworks.data.NftAttributeNormalizer;
 import com.tolamearth.integration.ledgerworks.data.NftTransfer;
 import com.tolamearth.integration.ledgerworks.data.Transaction;
 import com.tolamearth.integration.ledgerworks.discovery.PollingTokenDiscoveryService;
 import com.tolamearth.integration.ledgerworks.discovery.TokenDiscoveryService;
+import com.tolamearth.integration.ledgerworks.discovery.TokenRegistry;
+import com.tolamearth.integration.ledgerworks.http.EsgCacheConfiguration;
+import com.tolamearth.integration.ledgerworks.http.EsgCircuitBreaker;
 import com.tolamearth.integration.ledgerworks.http.EsgClient;
+import com.tolamearth.integration.ledgerworks.http.EsgNftDetailsCache;
+import com.tolamearth.integration.ledgerworks.http.EsgResilienceConfiguration;
+import com.tolamearth.integration.ledgerworks.http.ResilientEsgClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.micronaut.core.io.scan.DefaultClassPathResourceLoader;
 import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.mockito.Mockito.*;
 
@@ -55,13 +79,21 @@ class TokenPublisherServiceTest {
 
 	TokenRepository tokenRepository;
 
+	DiscoveryCheckpointRepository checkpointRepository;
+
 	EsgClient esgClient;
 
 	ArmmMessageChannels messageChannels;
 
+	TokenParkingLot parkingLot;
+
+	ProcessedNftIndex processedNftIndex;
+
 	private Flux<Transaction> testFlux;
 
-	private Map testNftDetails;
+	private EsgNftDetails testNftDetails;
+
+	private NftAttributeNormalizer attributeNormalizer;
 
 	List<String> TOKEN_IDS = List.of("0.1.2");
 
@@ -73,8 +105,10 @@ class TokenPublisherServiceTest {
 		try (InputStream testData = testResource.get()) {
 			String testResponse = new String(testData.readAllBytes(), StandardCharsets.UTF_8);
 			ObjectMapper mapper = new ObjectMapper();
-			this.testNftDetails = mapper.reader().readValue(testResponse, Map.class);
+			this.testNftDetails = mapper.readValue(testResponse, EsgNftDetails.class);
 			Assertions.assertNotNull(this.testNftDetails);
+			this.attributeNormalizer = new NftAttributeNormalizer(
+					NftAttributeNormalizer.loadBundledDictionaries(mapper));
 		}
 		catch (IOException e) {
 			throw new RuntimeException(e);
@@ -84,14 +118,33 @@ class TokenPublisherServiceTest {
 	@BeforeEach
 	void initMocks() {
 		this.tokenRepository = tokenRepository();
+		this.checkpointRepository = mock(DiscoveryCheckpointRepository.class);
+		when(this.checkpointRepository.advance(anyMap())).thenReturn(Mono.empty());
 		this.discoveryService = tokenDiscoveryService();
 		this.messageChannels = armmMessageChannels();
 		this.esgClient = esgClient();
+		this.parkingLot = tokenParkingLot();
+		this.processedNftIndex = new ProcessedNftIndex(this.tokenRepository,
+				new ProcessedNftIndexConfiguration(100, null), new SimpleMeterRegistry());
+	}
+
+	private TokenRegistry tokenRegistry() {
+		TokenRegistry tokenRegistry = mock(TokenRegistry.class);
+		when(tokenRegistry.getTokenIds()).thenReturn(Set.copyOf(TOKEN_IDS));
+		return tokenRegistry;
 	}
 
 	private void startPublisher() {
-		this.publisherService = new TokenPublisherService(this.discoveryService, this.esgClient, this.tokenRepository,
-				this.messageChannels, TOKEN_IDS);
+		startPublisher(new TokenPublisherConfiguration(16, 32, 4, 8, 100, Duration.ofMillis(50)));
+	}
+
+	private void startPublisher(TokenPublisherConfiguration configuration) {
+		this.publisherService = new TokenPublisherService(this.discoveryService, esgNftDetailsCache(),
+				this.tokenRepository, this.checkpointRepository, this.messageChannels, tokenRegistry(), configuration,
+				this.parkingLot, this.attributeNormalizer, this.processedNftIndex,
+				new ArmmEventPublisher(this.messageChannels,
+						new ArmmPublisherConfiguration(100, Duration.ofSeconds(5), 1_000_000, 0, Duration.ofMillis(10)),
+						new SimpleMeterRegistry()));
 		this.publisherService.initMintedTokenStream();
 	}
 
@@ -106,10 +159,8 @@ class TokenPublisherServiceTest {
 		setTestData(token);
 		Token storedToken = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS).get(0);
 		setTestData(storedToken);
-		when(tokenRepository.findById(nftId)).thenReturn(Mono.empty());
 		when(esgClient.getNftDetails(nftId.getTokenId(), Long.valueOf(nftId.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.save(token)).thenReturn(Mono.just(storedToken));
 		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId1"));
 
 		testFlux = Flux.just(transaction);
@@ -119,8 +170,7 @@ class TokenPublisherServiceTest {
 
 		StepVerifier.create(this.publisherService.getMintedTokenStream()).expectNext(token).verifyComplete();
 
-		verify(tokenRepository).findById(nftId);
-		verify(tokenRepository).save(token);
+		verify(tokenRepository).insertMinted(List.of(token));
 		verify(messageChannels).sendNftDetails(notNull());
 		verifyNoMoreInteractions(tokenRepository);
 		verifyNoMoreInteractions(messageChannels);
@@ -135,7 +185,7 @@ class TokenPublisherServiceTest {
 		Token storedToken = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS).get(0);
 		when(esgClient.getNftDetails(nftId.getTokenId(), Long.valueOf(nftId.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId)).thenReturn(Mono.just(storedToken));
+		when(tokenRepository.insertMinted(anyList())).thenReturn(Flux.empty());
 
 		testFlux = Flux.just(transaction);
 		when(discoveryService.getMintedTransactions()).thenReturn(testFlux);
@@ -145,7 +195,7 @@ class TokenPublisherServiceTest {
 		StepVerifier.create(this.publisherService.getMintedTokenStream()).verifyComplete();
 
 		Assertions.assertEquals(1, publisherService.getRepeatedTokenCount());
-		verify(tokenRepository).findById(nftId);
+		verify(tokenRepository).insertMinted(batchOf(storedToken.getNftId()));
 		verifyNoMoreInteractions(tokenRepository);
 		verifyNoInteractions(messageChannels);
 	}
@@ -175,17 +225,13 @@ class TokenPublisherServiceTest {
 
 		when(esgClient.getNftDetails(nftId1.getTokenId(), Long.valueOf(nftId1.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId1)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token1)).thenReturn(Mono.just(expectedTokens.get(0)));
 
 		when(esgClient.getNftDetails(nftId2.getTokenId(), Long.valueOf(nftId2.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId2)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token2)).thenReturn(Mono.just(expectedTokens.get(1)));
 
 		when(esgClient.getNftDetails(nftId3.getTokenId(), Long.valueOf(nftId3.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId3)).thenReturn(Mono.just(expectedTokens.get(2)));
+		storesNewTokens(nftId1, nftId2);
 
 		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId1"));
 
@@ -196,12 +242,9 @@ class TokenPublisherServiceTest {
 
 		StepVerifier.create(this.publisherService.getMintedTokenStream()).expectNext(token1, token2).verifyComplete();
 
-		verify(tokenRepository).findById(nftId1);
-		verify(tokenRepository).save(token1);
-		verify(tokenRepository).findById(nftId2);
-		verify(tokenRepository).save(token2);
-		verify(tokenRepository).findById(nftId3);
-		verify(messageChannels, times(2)).sendNftDetails(any());
+		Assertions.assertEquals(1, publisherService.getRepeatedTokenCount());
+		verify(tokenRepository).insertMinted(batchOf(nftId1, nftId2, nftId3));
+		verify(messageChannels).sendNftDetails(eventWith(2));
 		verifyNoMoreInteractions(tokenRepository);
 		verifyNoMoreInteractions(messageChannels);
 	}
@@ -240,18 +283,12 @@ class TokenPublisherServiceTest {
 
 		when(esgClient.getNftDetails(nftId1.getTokenId(), Long.valueOf(nftId1.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId1)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token1)).thenReturn(Mono.just(expectedTokens.get(0)));
 
 		when(esgClient.getNftDetails(nftId2.getTokenId(), Long.valueOf(nftId2.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId2)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token2)).thenReturn(Mono.just(expectedTokens.get(1)));
 
 		when(esgClient.getNftDetails(nftId3.getTokenId(), Long.valueOf(nftId3.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId3)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token3)).thenReturn(Mono.just(expectedTokens.get(2)));
 
 		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId1"));
 
@@ -263,13 +300,8 @@ class TokenPublisherServiceTest {
 		StepVerifier.create(this.publisherService.getMintedTokenStream()).expectNext(token1, token2, token3)
 				.verifyComplete();
 
-		verify(tokenRepository).findById(nftId1);
-		verify(tokenRepository).save(token1);
-		verify(tokenRepository).findById(nftId2);
-		verify(tokenRepository).save(token2);
-		verify(tokenRepository).findById(nftId3);
-		verify(tokenRepository).save(token3);
-		verify(messageChannels, times(3)).sendNftDetails(any());
+		verify(tokenRepository, atLeastOnce()).insertMinted(anyList());
+		verify(messageChannels).sendNftDetails(eventWith(3));
 		verifyNoMoreInteractions(tokenRepository);
 		verifyNoMoreInteractions(messageChannels);
 	}
@@ -301,33 +333,31 @@ class TokenPublisherServiceTest {
 
 		when(esgClient.getNftDetails(nftId1.getTokenId(), Long.valueOf(nftId1.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId1)).thenThrow(new RuntimeException("DB Error finding token."));
+		when(tokenRepository.insertMinted(List.of(token1))).thenThrow(new RuntimeException("DB Error storing token."));
 
 		when(esgClient.getNftDetails(nftId2.getTokenId(), Long.valueOf(nftId2.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId2)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token2)).thenThrow(new RuntimeException("DB Error saving token."));
+		when(tokenRepository.insertMinted(List.of(token2)))
+				.thenReturn(Flux.error(new RuntimeException("DB Error storing token.")));
 
 		when(esgClient.getNftDetails(nftId3.getTokenId(), Long.valueOf(nftId3.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId3)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token3)).thenReturn(Mono.just(expectedTokens.get(2)));
 
 		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId1"));
 
 		testFlux = Flux.just(transaction1);
 		when(discoveryService.getMintedTransactions()).thenReturn(testFlux);
 
-		this.startPublisher();
+		this.startPublisher(new TokenPublisherConfiguration(16, 32, 4, 8, 1, Duration.ofMillis(50)));
 
 		StepVerifier.create(this.publisherService.getMintedTokenStream()).expectNext(token3).verifyComplete();
 
-		verify(tokenRepository).findById(nftId1);
-		verify(tokenRepository).findById(nftId2);
-		verify(tokenRepository).save(token2);
-		verify(tokenRepository).findById(nftId3);
-		verify(tokenRepository).save(token3);
-		verify(messageChannels, times(1)).sendNftDetails(any());
+		verify(tokenRepository).insertMinted(List.of(token1));
+		verify(tokenRepository).insertMinted(List.of(token2));
+		verify(tokenRepository).insertMinted(List.of(token3));
+		verify(parkingLot).park(eq(token1), any(RuntimeException.class));
+		verify(parkingLot).park(eq(token2), any(RuntimeException.class));
+		verify(messageChannels).sendNftDetails(eventWith(1));
 		verifyNoMoreInteractions(tokenRepository);
 		verifyNoMoreInteractions(messageChannels);
 	}
@@ -359,16 +389,12 @@ class TokenPublisherServiceTest {
 
 		when(esgClient.getNftDetails(nftId1.getTokenId(), Long.valueOf(nftId1.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId1)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token1)).thenReturn(Mono.just(expectedTokens.get(0)));
 
 		when(esgClient.getNftDetails(nftId2.getTokenId(), Long.valueOf(nftId2.getSerialNumber())))
 				.thenReturn(Mono.error(new RuntimeException("Error calling ESG Details service.")));
 
 		when(esgClient.getNftDetails(nftId3.getTokenId(), Long.valueOf(nftId3.getSerialNumber())))
 				.thenReturn(Mono.just(this.testNftDetails));
-		when(tokenRepository.findById(nftId3)).thenReturn(Mono.empty());
-		when(tokenRepository.save(token3)).thenReturn(Mono.just(expectedTokens.get(2)));
 
 		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId1"));
 
@@ -379,32 +405,295 @@ class TokenPublisherServiceTest {
 
 		StepVerifier.create(this.publisherService.getMintedTokenStream()).expectNext(token1, token3).verifyComplete();
 
-		verify(tokenRepository).findById(nftId1);
-		verify(tokenRepository).save(token1);
-		verify(tokenRepository).findById(nftId3);
-		verify(tokenRepository).save(token3);
-		verify(messageChannels, times(2)).sendNftDetails(any());
+		verify(parkingLot).park(argThat(parked -> nftId2.equals(parked.getNftId())), any(RuntimeException.class));
+		verify(tokenRepository, atLeastOnce()).insertMinted(anyList());
+		verify(messageChannels).sendNftDetails(eventWith(2));
 		verifyNoMoreInteractions(tokenRepository);
 		verifyNoMoreInteractions(messageChannels);
 	}
 
+	@Test
+	void testParksUnpublishedTokens() {
+		NftTransfer transfer = NftTransfer.builder().tokenId("0.1.2").serialNumber(3).build();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5").nftTransfers(List.of(transfer))
+				.build();
+		NftId nftId = new NftId("0.1.2", "3");
+		RuntimeException failure = new RuntimeException("Pub/Sub error");
+		when(esgClient.getNftDetails("0.1.2", 3)).thenReturn(Mono.just(this.testNftDetails));
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.error(failure));
+		when(parkingLot.parkUnpublished(any(), any())).thenReturn(Mono.just(new ParkedToken()));
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.just(transaction));
+
+		this.startPublisher();
+
+		StepVerifier.create(this.publisherService.getMintedTokenStream()).verifyComplete();
+
+		verify(tokenRepository).insertMinted(batchOf(nftId));
+		verify(parkingLot).parkUnpublished(argThat(parked -> nftId.equals(parked.getNftId())), eq(failure));
+		verify(parkingLot, never()).park(any(), any());
+	}
+
+	@Test
+	void testRedriveToken() {
+		NftTransfer transfer = NftTransfer.builder().tokenId("0.1.2").serialNumber(3).build();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5").nftTransfers(List.of(transfer))
+				.build();
+		Token token = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS).get(0);
+		NftId nftId = new NftId("0.1.2", "3");
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.empty());
+		when(esgClient.getNftDetails("0.1.2", 3)).thenReturn(Mono.just(this.testNftDetails));
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId1"));
+
+		this.startPublisher();
+
+		StepVerifier.create(this.publisherService.redriveToken(token)).expectNext(token).verifyComplete();
+		Assertions.assertEquals(2021, token.getVintageYear());
+		verify(messageChannels).sendNftDetails(notNull());
+		verifyNoInteractions(parkingLot);
+	}
+
+	@Test
+	void testRedriveTokenFailsWithoutParking() {
+		NftTransfer transfer = NftTransfer.builder().tokenId("0.1.2").serialNumber(3).build();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5").nftTransfers(List.of(transfer))
+				.build();
+		Token token = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS).get(0);
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.empty());
+		when(esgClient.getNftDetails("0.1.2", 3))
+				.thenReturn(Mono.error(new RuntimeException("Error calling ESG Details service.")));
+
+		this.startPublisher();
+
+		StepVerifier.create(this.publisherService.redriveToken(token)).verifyError(RuntimeException.class);
+		verifyNoInteractions(parkingLot);
+		verifyNoInteractions(messageChannels);
+	}
+
+	@Test
+	void testRedriveTokenMarksStoredTokenThatFailsToPublish() {
+		NftTransfer transfer = NftTransfer.builder().tokenId("0.1.2").serialNumber(3).build();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5").nftTransfers(List.of(transfer))
+				.build();
+		Token token = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS).get(0);
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.empty());
+		when(esgClient.getNftDetails("0.1.2", 3)).thenReturn(Mono.just(this.testNftDetails));
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.error(new RuntimeException("Pub/Sub error")));
+		when(parkingLot.markStored(any())).thenReturn(Mono.just(new ParkedToken()));
+
+		this.startPublisher();
+
+		StepVerifier.create(this.publisherService.redriveToken(token)).verifyErrorMessage("Pub/Sub error");
+		verify(parkingLot).markStored(token.getNftId());
+	}
+
+	@Test
+	void testRepublishToken() {
+		NftTransfer transfer = NftTransfer.builder().tokenId("0.1.2").serialNumber(3).build();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5").nftTransfers(List.of(transfer))
+				.build();
+		Token token = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS).get(0);
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.empty());
+		when(esgClient.getNftDetails("0.1.2", 3)).thenReturn(Mono.just(this.testNftDetails));
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId1"));
+
+		this.startPublisher();
+
+		StepVerifier.create(this.publisherService.republishToken(token)).expectNext(token).verifyComplete();
+		verify(messageChannels).sendNftDetails(eventWith(1));
+		verifyNoInteractions(tokenRepository);
+	}
+
+	@Test
+	void testStoresTokensInBatches() {
+		List<NftTransfer> transfers = IntStream.rangeClosed(1, 10)
+				.mapToObj(serial -> NftTransfer.builder().tokenId("0.1.2").serialNumber(serial).build()).toList();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5").nftTransfers(transfers).build();
+		List<Token> tokens = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS);
+		storesNewTokens(tokens.stream().map(Token::getNftId).filter(nftId -> !"5".equals(nftId.getSerialNumber()))
+				.toArray(NftId[]::new));
+		when(esgClient.getNftDetails(eq("0.1.2"), anyLong())).thenReturn(Mono.just(this.testNftDetails));
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId"));
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.just(transaction));
+
+		this.startPublisher(new TokenPublisherConfiguration(16, 32, 4, 8, 4, Duration.ofSeconds(5)));
+
+		StepVerifier.create(this.publisherService.getMintedTokenStream()).expectNextCount(9).verifyComplete();
+
+		NftId[] nftIds = tokens.stream().map(Token::getNftId).toArray(NftId[]::new);
+		verify(tokenRepository).insertMinted(batchOf(Arrays.copyOfRange(nftIds, 0, 4)));
+		verify(tokenRepository).insertMinted(batchOf(Arrays.copyOfRange(nftIds, 4, 8)));
+		verify(tokenRepository).insertMinted(batchOf(Arrays.copyOfRange(nftIds, 8, 10)));
+		verify(messageChannels).sendNftDetails(eventWith(9));
+		Assertions.assertEquals(1, publisherService.getRepeatedTokenCount());
+		Assertions.assertEquals(10, processedNftIndex.size());
+	}
+
+	@Test
+	void testAdvancesCheckpointsInBatchOrder() {
+		NftTransfer transfer1 = NftTransfer.builder().tokenId("0.1.2").serialNumber(3).build();
+		NftTransfer transfer2 = NftTransfer.builder().tokenId("0.1.2").serialNumber(4).build();
+		Transaction transaction1 = Transaction.builder().transactionId("1.2.3-4-5")
+				.consensusTimestamp("1660000000.000000001").nftTransfers(List.of(transfer1)).build();
+		Transaction transaction2 = Transaction.builder().transactionId("1.2.3-4-6")
+				.consensusTimestamp("1660000000.000000002").nftTransfers(List.of(transfer2)).build();
+		NftId nftId2 = new NftId("0.1.2", "4");
+		// the first batch commits only after the second one has
+		Sinks.Empty<Void> firstCommit = Sinks.empty();
+		when(tokenRepository.insertMinted(anyList())).thenAnswer(invocation -> {
+			List<Token> batch = invocation.getArgument(0);
+			Flux<Token> stored = Flux.fromIterable(batch);
+			return "3".equals(batch.get(0).getNftId().getSerialNumber()) ? firstCommit.asMono().thenMany(stored)
+					: stored;
+		});
+		when(esgClient.getNftDetails(eq("0.1.2"), anyLong())).thenReturn(Mono.just(this.testNftDetails));
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId"));
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.just(transaction1, transaction2));
+
+		this.startPublisher(new TokenPublisherConfiguration(16, 32, 4, 8, 1, Duration.ofMillis(50)));
+
+		StepVerifier.create(this.publisherService.getMintedTokenStream()).then(() -> {
+			verify(tokenRepository, timeout(1000)).insertMinted(batchOf(nftId2));
+			verify(checkpointRepository, after(200).never()).advance(anyMap());
+			firstCommit.tryEmitEmpty();
+		}).expectNextCount(2).verifyComplete();
+
+		InOrder inOrder = inOrder(checkpointRepository);
+		inOrder.verify(checkpointRepository).advance(Map.of("0.1.2", "1660000000.000000001"));
+		inOrder.verify(checkpointRepository).advance(Map.of("0.1.2", "1660000000.000000002"));
+	}
+
+	@Test
+	void testSkipsIndexedTokens() {
+		NftTransfer transfer1 = NftTransfer.builder().tokenId("0.1.2").serialNumber(3).build();
+		NftTransfer transfer2 = NftTransfer.builder().tokenId("0.1.2").serialNumber(4).build();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5")
+				.nftTransfers(List.of(transfer1, transfer2)).build();
+		NftId nftId2 = new NftId("0.1.2", "4");
+		processedNftIndex.add(new NftId("0.1.2", "3"));
+		when(esgClient.getNftDetails("0.1.2", 4)).thenReturn(Mono.just(this.testNftDetails));
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId"));
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.just(transaction));
+
+		this.startPublisher();
+
+		StepVerifier.create(this.publisherService.getMintedTokenStream().map(Token::getNftId)).expectNext(nftId2)
+				.verifyComplete();
+
+		Assertions.assertEquals(1, publisherService.getRepeatedTokenCount());
+		verify(esgClient, never()).getNftDetails("0.1.2", 3);
+		verify(tokenRepository).insertMinted(batchOf(nftId2));
+		Assertions.assertTrue(processedNftIndex.contains(nftId2));
+	}
+
+	@Test
+	void testRedriveStoredToken() {
+		NftTransfer transfer = NftTransfer.builder().tokenId("0.1.2").serialNumber(3).build();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5").nftTransfers(List.of(transfer))
+				.build();
+		Token token = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS).get(0);
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.empty());
+		when(esgClient.getNftDetails("0.1.2", 3)).thenReturn(Mono.just(this.testNftDetails));
+		storesNewTokens();
+
+		this.startPublisher();
+
+		StepVerifier.create(this.publisherService.redriveToken(token)).verifyComplete();
+		verify(tokenRepository).insertMinted(batchOf(token.getNftId()));
+		verifyNoInteractions(messageChannels);
+	}
+
+	@Test
+	void testConcurrentEnrichmentKeepsConsensusOrder() {
+		int tokenCount = 40;
+		Duration esgLatency = Duration.ofMillis(50);
+		List<NftTransfer> transfers = IntStream.rangeClosed(1, tokenCount)
+				.mapToObj(serial -> NftTransfer.builder().tokenId("0.1.2").serialNumber(serial).build()).toList();
+		Transaction transaction = Transaction.builder().transactionId("1.2.3-4-5").nftTransfers(transfers).build();
+		List<Token> tokens = LedgerWorksMapper.fromLedgerWorksMintedTransaction(transaction, TOKEN_IDS);
+
+		// later serials answer sooner, so an unordered pipeline would reorder them
+		when(esgClient.getNftDetails(eq("0.1.2"), anyLong())).thenAnswer(invocation -> Mono.just(this.testNftDetails)
+				.delayElement(esgLatency.plusMillis(tokenCount - invocation.getArgument(1, Long.class))));
+		when(messageChannels.sendNftDetails(any())).thenReturn(Mono.just("messageId"));
+		when(discoveryService.getMintedTransactions()).thenReturn(Flux.just(transaction));
+
+		this.startPublisher();
+
+		Duration elapsed = StepVerifier
+				.create(this.publisherService.getMintedTokenStream().map(token -> token.getNftId().getSerialNumber()))
+				.expectNextSequence(tokens.stream().map(token -> token.getNftId().getSerialNumber()).toList())
+				.verifyComplete();
+
+		log.info("Published {} tokens with {} ESG latency in {}", tokenCount, esgLatency, elapsed);
+		Assertions.assertTrue(elapsed.compareTo(esgLatency.multipliedBy(tokenCount / 2)) < 0,
+				"Expected concurrent enrichment but took " + elapsed);
+		ArgumentCaptor<List<Token>> batches = ArgumentCaptor.forClass(List.class);
+		verify(tokenRepository, atLeastOnce()).insertMinted(batches.capture());
+		Assertions.assertEquals(tokens.stream().map(Token::getNftId).toList(),
+				batches.getAllValues().stream().flatMap(List::stream).map(Token::getNftId).toList());
+	}
+
 	private void setTestData(Token token) {
 		// Set the NFT Details to match the ESG Api Mock Response
-		LedgerWorksMapper.mergeNftDetails(token, this.testNftDetails).thenReturn(token);
+		LedgerWorksMapper.mergeNftDetails(token, this.attributeNormalizer.normalize(this.testNftDetails))
+				.thenReturn(token);
 	}
 
 	TokenDiscoveryService tokenDiscoveryService() {
 		return mock(PollingTokenDiscoveryService.class);
 	}
 
+	private static byte[] eventWith(int transactions) {
+		return argThat(message -> {
+			try {
+				return ArmmEvent.parseFrom(message).getTransactionsCount() == transactions;
+			}
+			catch (InvalidProtocolBufferException e) {
+				return false;
+			}
+		});
+	}
+
+	private static List<Token> batchOf(NftId... nftIds) {
+		return argThat(tokens -> tokens.stream().map(Token::getNftId).toList().equals(List.of(nftIds)));
+	}
+
+	private void storesNewTokens(NftId... newNftIds) {
+		Set<NftId> newTokens = Set.of(newNftIds);
+		when(tokenRepository.insertMinted(anyList()))
+				.thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Token>>getArgument(0))
+						.filter(token -> newTokens.contains(token.getNftId())));
+	}
+
 	TokenRepository tokenRepository() {
-		return mock(TokenRepository.class);
+		TokenRepository tokenRepository = mock(TokenRepository.class);
+		when(tokenRepository.insertMinted(anyList()))
+				.thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Token>>getArgument(0)));
+		return tokenRepository;
+	}
+
+	TokenParkingLot tokenParkingLot() {
+		TokenParkingLot parkingLot = mock(TokenParkingLot.class);
+		when(parkingLot.park(any(), any())).thenReturn(Mono.just(new ParkedToken()));
+		return parkingLot;
 	}
 
 	ArmmMessageChannels armmMessageChannels() {
 		return mock(ArmmMessageChannels.class);
 	}
 
+	EsgNftDetailsCache esgNftDetailsCache() {
+		EsgResilienceConfiguration resilienceConfiguration = new EsgResilienceConfiguration(false, 0.95,
+				Duration.ofMillis(50), Duration.ofSeconds(1), 100, 0.5, 20, Duration.ofSeconds(30), 0,
+				Duration.ofMillis(100));
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ResilientEsgClient resilientEsgClient = new ResilientEsgClient(this.esgClient,
+				new EsgCircuitBreaker(resilienceConfiguration, meterRegistry), resilienceConfiguration, meterRegistry);
+		return new EsgNftDetailsCache(resilientEsgClient,
+				new EsgCacheConfiguration(100L, Duration.ofHours(1), Duration.ofMinutes(1), null), new ObjectMapper(),
+				meterRegistry);
+	}
+
 	EsgClient esgClient() {
 		return mock(EsgClient.class);
 	}
@@ -16,19 +16,26 @@
 
 package com.tolamearth.integration.orchestrator;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.tolamearth.integration.armm.ArmmEvent;
+import com.tolamearth.integration.armm.ArmmEventPublisher;
 import com.tolamearth.integration.armm.ArmmMessageChannels;
+import com.tolamearth.integration.armm.ArmmPublisherConfiguration;
 import com.tolamearth.integration.core.assets.Token;
 import com.tolamearth.integration.core.assets.TokenRepository;
 import com.tolamearth.integration.marketplace.MarketplaceEvent;
 import com.tolamearth.integration.marketplace.events.EventService;
 import com.tolamearth.integration.marketplace.events.MarketplaceEventService;
 import com.tolamearth.integration.marketplace.events.MarketplaceProtobufMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+
 import static org.mockito.Mockito.*;
 
 public class TransactionPublisherServiceTest {
@@ -140,7 +147,7 @@ public class TransactionPublisherServiceTest {
 
 		verify(this.tokenRepository).saveOrUpdate(expectedListed);
 		verify(this.tokenRepository).saveOrUpdate(expectedPurchased);
-		verify(this.messageChannels, times(2)).sendNftDetails(notNull());
+		verify(this.messageChannels).sendNftDetails(eventWith(2));
 		verifyNoMoreInteractions(this.tokenRepository);
 		verifyNoMoreInteractions(this.messageChannels);
 	}
@@ -180,7 +187,7 @@ public class TransactionPublisherServiceTest {
 		verify(this.tokenRepository).saveOrUpdate(expectedListed);
 		verify(this.tokenRepository).saveOrUpdate(expectedError);
 		verify(this.tokenRepository).saveOrUpdate(expectedPurchased);
-		verify(this.messageChannels, times(2)).sendNftDetails(notNull());
+		verify(this.messageChannels).sendNftDetails(eventWith(2));
 		verifyNoMoreInteractions(this.tokenRepository);
 		verifyNoMoreInteractions(this.messageChannels);
 	}
@@ -216,7 +223,7 @@ public class TransactionPublisherServiceTest {
 
 		verify(this.tokenRepository).saveOrUpdate(expectedListed);
 		verify(this.tokenRepository).saveOrUpdate(expectedPurchased);
-		verify(this.messageChannels, times(2)).sendNftDetails(notNull());
+		verify(this.messageChannels).sendNftDetails(eventWith(2));
 		verifyNoMoreInteractions(this.tokenRepository);
 		verifyNoMoreInteractions(this.messageChannels);
 	}
@@ -257,11 +264,22 @@ public class TransactionPublisherServiceTest {
 		verify(this.tokenRepository).saveOrUpdate(expectedListed);
 		verify(this.tokenRepository).saveOrUpdate(expectedError);
 		verify(this.tokenRepository).saveOrUpdate(expectedPurchased);
-		verify(this.messageChannels, times(2)).sendNftDetails(notNull());
+		verify(this.messageChannels).sendNftDetails(eventWith(2));
 		verifyNoMoreInteractions(this.tokenRepository);
 		verifyNoMoreInteractions(this.messageChannels);
 	}
 
+	private static byte[] eventWith(int transactions) {
+		return argThat(message -> {
+			try {
+				return ArmmEvent.parseFrom(message).getTransactionsCount() == transactions;
+			}
+			catch (InvalidProtocolBufferException e) {
+				return false;
+			}
+		});
+	}
+
 	private TokenRepository tokenRepository() {
 		return mock(TokenRepository.class);
 	}
@@ -276,7 +294,9 @@ public class TransactionPublisherServiceTest {
 
 	private void startPublisher() {
 		this.publisherService = new TransactionPublisherService(this.subscriberService, this.tokenRepository,
-				this.messageChannels);
+				new ArmmEventPublisher(this.messageChannels,
+						new ArmmPublisherConfiguration(100, Duration.ofSeconds(5), 1_000_000, 0, Duration.ofMillis(10)),
+						new SimpleMeterRegistry()));
 		this.publisherService.initTransactionStream();
 	}
 